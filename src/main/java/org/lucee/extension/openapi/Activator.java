@@ -0,0 +1,20 @@
+package org.lucee.extension.openapi;
+
+import org.osgi.framework.BundleActivator;
+import org.osgi.framework.BundleContext;
+
+/**
+ * Ties the extension lifecycle to its OSGi bundle, so a reload or uninstall releases background resources
+ */
+public class Activator implements BundleActivator {
+
+	@Override
+	public void start(BundleContext context) {
+		OpenAPIExtension.init();
+	}
+
+	@Override
+	public void stop(BundleContext context) {
+		OpenAPIExtension.destroy();
+	}
+}
@@ -1,19 +1,52 @@
 package org.lucee.extension.openapi;
 
+import lucee.loader.engine.CFMLEngine;
+import lucee.loader.engine.CFMLEngineFactory;
+import lucee.runtime.Component;
+import lucee.runtime.Mapping;
 import lucee.runtime.PageContext;
-import io.swagger.v3.oas.models.OpenAPI;
+import lucee.runtime.PageSource;
+import lucee.runtime.config.Config;
+import lucee.runtime.listener.ApplicationListener;
+
+import org.lucee.extension.openapi.spec.SpecDescriptor;
+import org.lucee.extension.openapi.util.PrivateFiles;
+
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
 
 /**
- * Generates dynamic CFC proxy code for OpenAPI specifications
+ * Generates a CFC per OpenAPI specification with one concrete function per operation.
+ * Each function declares the operation's parameters as named arguments and is bound directly
+ * to its compiled OpenAPIMethod, so calls skip onMissingMethod and the name lookup.
  */
 public class CFCProxyGenerator {
 	
-	private final OpenAPI openAPI;
+	private static final String VIRTUAL_PATH = "/lucee-openapi-proxies";
+	private static final String CLIENT_VAR = "__openapiClient";
+	private static final String OPERATION_VAR_PREFIX = "__op_";
+	private static final String BIND_FUNCTION = "__bind";
+	
+	// The mapping references its config, so it is held weakly or the config key would never be collected
+	private static final Map<Config, WeakReference<Mapping>> MAPPINGS = new WeakHashMap<>();
+	
+	private final SpecDescriptor spec;
 	private final String specUrl;
 	private final Object options;
 	
-	public CFCProxyGenerator(OpenAPI openAPI, String specUrl, Object options) {
-		this.openAPI = openAPI;
+	public CFCProxyGenerator(SpecDescriptor spec, String specUrl, Object options) {
+		this.spec = spec;
 		this.specUrl = specUrl;
 		this.options = options;
 	}
@@ -23,9 +56,203 @@ public class CFCProxyGenerator {
 	 */
 	public Object generateCFCProxy(PageContext pc) throws Exception {
 		// Create the underlying Java client
-		OpenAPIClient javaClient = new OpenAPIClient(pc, openAPI, specUrl, options);
+		OpenAPIClient javaClient = new OpenAPIClient(pc, spec, specUrl, options);
+		return generateCFCProxy(pc, javaClient);
+	}
+	
+	/**
+	 * Generates a CFC proxy for an existing client and returns an instance bound to it
+	 */
+	public static Component generateCFCProxy(PageContext pc, OpenAPIClient javaClient) throws Exception {
+		String source = generateSource(javaClient);
+		String name = "OpenAPIProxy_" + hash(source);
+		
+		// Same spec content, same file: Lucee compiles it only once. The file is never trusted as found,
+		// it is used only if it holds exactly the generated source, in a directory only Lucee can write to
+		File directory = PrivateFiles.directory(new File(pc.getConfig().getConfigDir().getAbsolutePath(), "openapi-proxies"));
+		File file = new File(directory, name + ".cfc");
+		byte[] content = source.getBytes(StandardCharsets.UTF_8);
+		if (!file.isFile() || !Arrays.equals(Files.readAllBytes(file.toPath()), content)) {
+			PrivateFiles.write(file, content);
+		}
+		
+		CFMLEngine engine = CFMLEngineFactory.getInstance();
+		Mapping mapping = mapping(engine, pc.getConfig(), directory);
+		PageSource pageSource = mapping.getPageSource("/" + file.getName());
+		Component component = engine.getTemplateUtil().loadComponent(pc, pageSource, name, false, false, false);
+		component.call(pc, BIND_FUNCTION, new Object[] { javaClient });
+		return component;
+	}
+	
+	/**
+	 * The hidden mapping of the proxy directory, shared per Lucee context while proxies loaded from it are in use
+	 */
+	private static Mapping mapping(CFMLEngine engine, Config config, File directory) {
+		synchronized (MAPPINGS) {
+			WeakReference<Mapping> reference = MAPPINGS.get(config);
+			Mapping mapping = reference != null ? reference.get() : null;
+			if (mapping == null) {
+				mapping = engine.getCreationUtil().createMapping(config, VIRTUAL_PATH, 
+					directory.getAbsolutePath(), null, Config.INSPECT_ONCE, true, true, true, false, false, false, 
+					null, ApplicationListener.MODE_CURRENT2ROOT, ApplicationListener.TYPE_MODERN);
+				MAPPINGS.put(config, new WeakReference<>(mapping));
+			}
+			return mapping;
+		}
+	}
+	
+	/**
+	 * CFML source of the proxy component for a client
+	 */
+	public static String generateSource(OpenAPIClient javaClient) throws Exception {
+		// Sorted for a stable source, and therefore a stable file name, per spec
+		Map<String, OpenAPIMethod> operations = new TreeMap<>(javaClient.getOperations());
 		
-		// Return a dynamic proxy that implements method calling
-		return new CFMLProxy(javaClient);
+		StringBuilder cfc = new StringBuilder();
+		cfc.append("component accessors=false hint=\"Generated OpenAPI proxy for ")
+		   .append(escape(String.valueOf(javaClient.getProperty("_spec")))).append("\" {\n\n");
+		
+		// Binds the Java client and resolves every operation once
+		cfc.append("\tpublic void function ").append(BIND_FUNCTION).append("(required any client) {\n");
+		cfc.append("\t\tvariables.").append(CLIENT_VAR).append(" = arguments.client;\n");
+		cfc.append("\t\tthis._spec = arguments.client.getProperty(\"_spec\");\n");
+		cfc.append("\t\tthis._baseurl = arguments.client.getProperty(\"_baseurl\");\n");
+		cfc.append("\t\tthis._methods = arguments.client.getProperty(\"_methods\");\n");
+		int index = 0;
+		List<String> variableNames = new ArrayList<>();
+		for (Map.Entry<String, OpenAPIMethod> entry : operations.entrySet()) {
+			String variableName = OPERATION_VAR_PREFIX + (index++);
+			variableNames.add(variableName);
+			cfc.append("\t\tvariables.").append(variableName).append(" = arguments.client.getOperation(\"")
+			   .append(escape(entry.getKey())).append("\");\n");
+		}
+		cfc.append("\t}\n");
+		
+		Set<String> functionNames = new HashSet<>();
+		functionNames.add(BIND_FUNCTION.toLowerCase());
+		functionNames.add("tostring");
+		functionNames.add("onmissingmethod");
+		functionNames.add("getmethodnames");
+		functionNames.add("hasmethod");
+		index = 0;
+		for (OpenAPIMethod method : operations.values()) {
+			String variableName = variableNames.get(index++);
+			Map<String, Object> info = method.getInfo();
+			String functionName = toIdentifier(method.getOperationId());
+			if (!functionNames.add(functionName.toLowerCase())) {
+				// Clashes after sanitizing stay reachable through onMissingMethod
+				continue;
+			}
+			
+			cfc.append("\n\tpublic any function ").append(functionName).append("(");
+			List<String> arguments = new ArrayList<>();
+			Set<String> argumentNames = new HashSet<>();
+			Object parameters = info.get("parameters");
+			if (parameters instanceof List) {
+				for (Object p : (List<?>) parameters) {
+					Map<?, ?> param = (Map<?, ?>) p;
+					String paramName = String.valueOf(param.get("name"));
+					// Names that are not valid identifiers (X-Request-ID) are declared sanitized (X_Request_ID),
+					// OpenAPIMethod maps them back; a sanitized name starting with the reserved _ is not declared
+					// and can still be passed by its original name via argumentCollection
+					if (!isIdentifier(paramName)) {
+						paramName = toIdentifier(paramName);
+						if (paramName.startsWith("_")) continue;
+					}
+					if (!argumentNames.add(paramName.toLowerCase())) continue;
+					boolean required = Boolean.TRUE.equals(param.get("required"));
+					arguments.add((required ? "required " : "") + toCFMLType(String.valueOf(param.get("type"))) + " " + paramName
+						+ " hint=\"" + escape(String.valueOf(param.get("description"))) + "\"");
+				}
+			}
+			if (Boolean.TRUE.equals(info.get("hasBody")) && argumentNames.add("body")) {
+				arguments.add((Boolean.TRUE.equals(info.get("bodyRequired")) ? "required " : "") + "any body");
+			}
+			// Reserved _ arguments are not declared, so a stray positional argument never becomes one;
+			// passed by name they still reach the method through the arguments scope
+			cfc.append(String.join(", ", arguments));
+			cfc.append(") hint=\"").append(escape(String.valueOf(info.get("summary")))).append("\" {\n");
+			cfc.append("\t\treturn variables.").append(CLIENT_VAR).append(".invoke(variables.").append(variableName)
+			   .append(", arguments);\n");
+			cfc.append("\t}\n");
+		}
+		
+		// Fallback for names without a generated function
+		cfc.append("\n\tpublic any function onMissingMethod(required string missingMethodName, struct missingMethodArguments) {\n");
+		cfc.append("\t\treturn variables.").append(CLIENT_VAR)
+		   .append(".callMethodWithNamedArgs(arguments.missingMethodName, arguments.missingMethodArguments ?: {});\n");
+		cfc.append("\t}\n");
+		
+		// Introspection of the Java client
+		cfc.append("\n\tpublic array function getMethodNames() {\n");
+		cfc.append("\t\treturn variables.").append(CLIENT_VAR).append(".getMethodNames();\n");
+		cfc.append("\t}\n");
+		cfc.append("\n\tpublic boolean function hasMethod(required string methodName) {\n");
+		cfc.append("\t\treturn variables.").append(CLIENT_VAR).append(".hasMethod(arguments.methodName);\n");
+		cfc.append("\t}\n");
+		
+		cfc.append("\n\tpublic string function toString() {\n");
+		cfc.append("\t\treturn variables.").append(CLIENT_VAR).append(".getDisplayName();\n");
+		cfc.append("\t}\n");
+		cfc.append("}\n");
+		return cfc.toString();
+	}
+	
+	private static String toCFMLType(String schemaType) {
+		switch (schemaType) {
+			case "integer":
+			case "number":
+				return "numeric";
+			case "boolean":
+				return "boolean";
+			case "string":
+				return "string";
+			case "array":
+				return "array";
+			case "object":
+				return "struct";
+			default:
+				return "any";
+		}
+	}
+	
+	static boolean isIdentifier(String name) {
+		if (name == null || name.isEmpty() || !Character.isLetter(name.charAt(0)) && name.charAt(0) != '_') {
+			return false;
+		}
+		for (int i = 1; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if (!Character.isLetterOrDigit(c) && c != '_') return false;
+		}
+		return true;
+	}
+	
+	static String toIdentifier(String name) {
+		StringBuilder sb = new StringBuilder(name.length());
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			sb.append(Character.isLetterOrDigit(c) || c == '_' ? c : '_');
+		}
+		if (sb.length() == 0 || Character.isDigit(sb.charAt(0))) {
+			sb.insert(0, '_');
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * Escapes a value for a double-quoted CFML attribute or string
+	 */
+	private static String escape(String value) {
+		if (value == null) return "";
+		return value.replace("\"", "\"\"").replace("#", "##").replace("\r", " ").replace("\n", " ");
+	}
+	
+	private static String hash(String source) throws Exception {
+		byte[] digest = MessageDigest.getInstance("SHA-256").digest(source.getBytes(StandardCharsets.UTF_8));
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 8; i++) {
+			sb.append(Character.forDigit((digest[i] >> 4) & 0xF, 16)).append(Character.forDigit(digest[i] & 0xF, 16));
+		}
+		return sb.toString();
 	}
 }
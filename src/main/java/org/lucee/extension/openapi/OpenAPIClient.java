@@ -3,82 +3,176 @@ package org.lucee.extension.openapi;
 import lucee.loader.engine.CFMLEngine;
 import lucee.loader.engine.CFMLEngineFactory;
 
-import io.swagger.v3.oas.models.OpenAPI;
-import io.swagger.v3.oas.models.Operation;
-import io.swagger.v3.oas.models.PathItem;
-import io.swagger.v3.oas.models.servers.Server;
-
+import org.lucee.extension.openapi.auth.SecurityResolver;
+import org.lucee.extension.openapi.spec.OperationDescriptor;
+import org.lucee.extension.openapi.spec.SpecDescriptor;
+import org.lucee.extension.openapi.trace.Tracer;
+import org.lucee.extension.openapi.transport.Transport;
+import org.lucee.extension.openapi.util.BackgroundScheduler;
+import org.lucee.extension.openapi.util.DnsCache;
 import org.lucee.extension.openapi.util.HttpUtil;
+import org.lucee.extension.openapi.util.JsonProjection;
+import org.lucee.extension.openapi.util.OptionUtil;
+import org.lucee.extension.openapi.util.ResponseBuffer;
 
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * OpenAPI client that uses only Lucee loader interfaces
  */
 public class OpenAPIClient {
 	
-	private final OpenAPI openAPI;
+	private static final int DEFAULT_WARMUP_TIMEOUT = 5000;
+	
+	private final SpecDescriptor spec;
 	private final String specUrl;
 	private final Object options;
 	private final Map<String, OpenAPIMethod> methods;
 	private final HttpUtil httpUtil;
+	private final Tracer tracer;
+	private final SecurityResolver securityResolver;
+	private KeepWarmTask keepWarmTask;
 	
-	public OpenAPIClient(Object pageContext, OpenAPI openAPI, String specUrl, Object options) 
+	/**
+	 * Creates a client for an already compiled spec; the descriptors are shared, only credentials,
+	 * tracing and transport are per client
+	 */
+	public OpenAPIClient(Object pageContext, SpecDescriptor spec, String specUrl, Object options) 
 			throws Exception {
 		
-		this.openAPI = openAPI;
+		this.spec = spec;
 		this.specUrl = specUrl;
 		this.options = options;
 		this.methods = new HashMap<>();
-		this.httpUtil = new HttpUtil();
+		this.httpUtil = new HttpUtil(Transport.fromOptions(options));
+		initializeBodyLimits();
+		this.tracer = Tracer.fromOptions(options);
+		this.securityResolver = new SecurityResolver(spec, options, getBaseUrl(), httpUtil.getTransport(), tracer);
 		
 		initializeMethods();
+		initializeConnections();
 	}
 	
-	private void initializeMethods() throws Exception {
-		if (openAPI.getPaths() == null) return;
-		
-		// Parse all paths and operations
-		for (Map.Entry<String, PathItem> pathEntry : openAPI.getPaths().entrySet()) {
-			String path = pathEntry.getKey();
-			PathItem pathItem = pathEntry.getValue();
-			
-			// Handle different HTTP methods
-			addOperation("GET", path, pathItem.getGet());
-			addOperation("POST", path, pathItem.getPost());
-			addOperation("PUT", path, pathItem.getPut());
-			addOperation("DELETE", path, pathItem.getDelete());
-			addOperation("PATCH", path, pathItem.getPatch());
-			addOperation("HEAD", path, pathItem.getHead());
-			addOperation("OPTIONS", path, pathItem.getOptions());
-		}
-	}
-	
-	private void addOperation(String httpMethod, String path, Operation operation) 
-			throws Exception {
-		if (operation == null) return;
-		
-		String operationId = operation.getOperationId();
-		if (operationId == null || operationId.isEmpty()) {
-			// Generate operation ID if not provided
-			operationId = generateOperationId(httpMethod, path);
+	/**
+	 * Applies "maxBodySize" (bytes kept in memory per response), "bodyOverflow" ("spill" to a temp file,
+	 * or "error") and "maxInFlightBytes" (limit of response bytes this client holds in memory at once)
+	 */
+	private void initializeBodyLimits() throws Exception {
+		String overflow = OptionUtil.getString(options, "bodyOverflow", "spill");
+		if (!"spill".equalsIgnoreCase(overflow) && !"error".equalsIgnoreCase(overflow)) {
+			throw CFMLEngineFactory.getInstance().getExceptionUtil().createApplicationException(
+				"Invalid bodyOverflow option [" + overflow + "], valid values are [spill, error]");
+		}
+		httpUtil.setBodyLimit(OptionUtil.getLong(options, "maxBodySize", ResponseBuffer.DEFAULT_MAX_BODY_SIZE),
+			"spill".equalsIgnoreCase(overflow), OptionUtil.getLong(options, "maxInFlightBytes", 0));
+	}
+	
+	/**
+	 * Applies the opt-in connection options: "dnsTtl" (ms), "warmup" (true for the base URL, "all" for every
+	 * declared server) and "keepWarm" (ms between background warm-ups, keeping idle connections pooled).
+	 * Warm-ups run in the background, creating the client never waits for the network.
+	 */
+	private void initializeConnections() {
+		long dnsTtl = OptionUtil.getLong(options, "dnsTtl", 0);
+		if (dnsTtl > 0) {
+			for (String url : getWarmUpUrls(true)) {
+				try {
+					DnsCache.getInstance().setTtl(new java.net.URL(url).getHost(), dnsTtl);
+				} catch (java.net.MalformedURLException e) {
+					// not a server we can connect to
+				}
+			}
 		}
 		
-		OpenAPIMethod method = new OpenAPIMethod(
-			operationId, httpMethod, path, operation, openAPI, httpUtil
-		);
+		String warmup = OptionUtil.getString(options, "warmup", "");
+		if ("all".equalsIgnoreCase(warmup) || OptionUtil.getBoolean(options, "warmup", false)) {
+			BackgroundScheduler.get().execute(this::warmUp);
+		}
 		
-		methods.put(operationId.toLowerCase(), method);
+		long keepWarm = OptionUtil.getLong(options, "keepWarm", 0);
+		if (keepWarm > 0) {
+			keepWarmTask = KeepWarmTask.schedule(this, keepWarm);
+		}
 	}
 	
-	private String generateOperationId(String httpMethod, String path) {
-		// Convert /users/{id} to getUsersById
-		String cleanPath = path.replaceAll("\\{([^}]+)\\}", "By$1")
-							  .replaceAll("[^a-zA-Z0-9]", "");
-		return httpMethod.toLowerCase() + 
-			   cleanPath.substring(0, 1).toUpperCase() + 
-			   cleanPath.substring(1);
+	/**
+	 * Resolves and connects to the servers of this client ahead of the first call, so DNS lookup,
+	 * TCP connect and TLS handshake are not paid inside a user request. The probe is a HEAD request
+	 * to the server URL, or to the "warmupPath" option resolved against it. Failures are only logged.
+	 *
+	 * @return one entry per server with timings, or the error
+	 */
+	public List<Map<String, Object>> warmUp() {
+		List<Map<String, Object>> results = new ArrayList<>();
+		int timeout = (int) OptionUtil.getLong(options, "warmupTimeout", DEFAULT_WARMUP_TIMEOUT);
+		boolean all = "all".equalsIgnoreCase(OptionUtil.getString(options, "warmup", ""));
+		String path = OptionUtil.getString(options, "warmupPath", null);
+		for (String url : getWarmUpUrls(all)) {
+			try {
+				if (path != null) {
+					url = new java.net.URL(new java.net.URL(url), path).toString();
+				}
+				results.add(httpUtil.warmUp(url, timeout));
+			} catch (Exception e) {
+				System.err.println("Warning: Failed to warm up connection to " + url + ": " + e.getMessage());
+				Map<String, Object> failed = new HashMap<>();
+				failed.put("url", url);
+				failed.put("error", e.getMessage());
+				results.add(failed);
+			}
+		}
+		return results;
+	}
+	
+	/**
+	 * The base URL, plus the other absolute server URLs of the spec if requested; one URL per origin
+	 */
+	private List<String> getWarmUpUrls(boolean allServers) {
+		Map<String, String> byOrigin = new LinkedHashMap<>();
+		List<String> candidates = new ArrayList<>();
+		candidates.add(getBaseUrl());
+		if (allServers) {
+			candidates.addAll(spec.getServerUrls());
+		}
+		for (String url : candidates) {
+			try {
+				java.net.URL parsed = new java.net.URL(url);
+				if (!parsed.getProtocol().startsWith("http")) continue;
+				byOrigin.putIfAbsent(parsed.getProtocol() + "://" + parsed.getHost() + ":" + parsed.getPort(), url);
+			} catch (java.net.MalformedURLException e) {
+				// relative server URL, nothing to connect to
+			}
+		}
+		return new ArrayList<>(byOrigin.values());
+	}
+	
+	private void initializeMethods() throws Exception {
+		// Default response projections per operation: fields: { getPetById: "id,name" }
+		Object fields = OptionUtil.get(options, "fields");
+		if (fields instanceof Map) {
+			for (Object name : ((Map<?, ?>) fields).keySet()) {
+				if (spec.getOperation(String.valueOf(name)) == null) {
+					System.err.println("Warning: fields option [" + name + "] does not match any operation of the spec");
+				}
+			}
+		}
+		
+		for (Map.Entry<String, OperationDescriptor> entry : spec.getOperations().entrySet()) {
+			OperationDescriptor descriptor = entry.getValue();
+			OpenAPIMethod method = new OpenAPIMethod(
+				descriptor, httpUtil, tracer, securityResolver.resolve(descriptor.getSecurity()),
+				JsonProjection.compile(OptionUtil.get(fields, descriptor.getOperationId()))
+			);
+			methods.put(entry.getKey(), method);
+		}
 	}
 	
 	/**
@@ -117,11 +211,49 @@ public class OpenAPIClient {
 		}
 	}
 	
-	private String getBaseUrl() {
+	/**
+	 * Invoke an already resolved operation; used by generated proxies to skip the name lookup
+	 */
+	public Object invoke(OpenAPIMethod method, Object args) throws Exception {
+		try {
+			return method.invokeWithNamedArgs(null, args, getBaseUrl());
+		} catch (Exception e) {
+			CFMLEngine engine = CFMLEngineFactory.getInstance();
+			throw engine.getExceptionUtil().createApplicationException("Error calling OpenAPI method '" + method.getOperationId() + "': " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * Get the compiled operation for a method name, or null if there is none
+	 */
+	public OpenAPIMethod getOperation(String methodName) {
+		return methods.get(methodName.toLowerCase());
+	}
+	
+	/**
+	 * Compiled spec this client was built from
+	 */
+	public SpecDescriptor getSpec() {
+		return spec;
+	}
+	
+	/**
+	 * Get all compiled operations keyed by lowercased method name
+	 */
+	public Map<String, OpenAPIMethod> getOperations() {
+		return Collections.unmodifiableMap(methods);
+	}
+	
+	public String getBaseUrl() {
+		// An explicit baseUrl option wins, e.g. to point the client at another environment or a stub server
+		String override = OptionUtil.getString(options, "baseUrl", null);
+		if (override != null && !override.isEmpty()) {
+			return override.endsWith("/") ? override.substring(0, override.length() - 1) : override;
+		}
+		
 		// Get base URL from servers or construct from spec URL
-		if (openAPI.getServers() != null && !openAPI.getServers().isEmpty()) {
-			Server server = openAPI.getServers().get(0);
-			return server.getUrl();
+		if (spec.getServerUrl() != null) {
+			return spec.getServerUrl();
 		}
 		
 		// Fallback: extract base URL from spec URL
@@ -180,6 +312,11 @@ public class OpenAPIClient {
 	 * Cleanup resources when the client is no longer needed
 	 */
 	public void close() {
+		if (keepWarmTask != null) {
+			keepWarmTask.cancel();
+			keepWarmTask = null;
+		}
+		securityResolver.close();
 		try {
 			if (httpUtil != null) {
 				httpUtil.close();
@@ -189,4 +326,39 @@ public class OpenAPIClient {
 			System.err.println("Warning: Failed to close HttpUtil resources: " + e.getMessage());
 		}
 	}
+	
+	/**
+	 * Periodic warm-up that only holds the client weakly, so a forgotten client stops its own schedule
+	 */
+	private static class KeepWarmTask implements Runnable {
+		private final WeakReference<OpenAPIClient> client;
+		private volatile ScheduledFuture<?> future;
+		
+		private KeepWarmTask(OpenAPIClient client) {
+			this.client = new WeakReference<>(client);
+		}
+		
+		static KeepWarmTask schedule(OpenAPIClient client, long intervalMillis) {
+			KeepWarmTask task = new KeepWarmTask(client);
+			task.future = BackgroundScheduler.get().scheduleWithFixedDelay(task, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+			return task;
+		}
+		
+		@Override
+		public void run() {
+			OpenAPIClient target = client.get();
+			if (target == null) {
+				cancel();
+				return;
+			}
+			target.warmUp();
+		}
+		
+		void cancel() {
+			ScheduledFuture<?> scheduled = future;
+			if (scheduled != null) {
+				scheduled.cancel(false);
+			}
+		}
+	}
 }
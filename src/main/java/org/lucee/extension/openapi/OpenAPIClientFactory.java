@@ -2,10 +2,13 @@ package org.lucee.extension.openapi;
 
 import lucee.loader.engine.CFMLEngine;
 import lucee.loader.engine.CFMLEngineFactory;
+import lucee.runtime.PageContext;
 
-import io.swagger.v3.parser.OpenAPIV3Parser;
-import io.swagger.v3.oas.models.OpenAPI;
-import io.swagger.v3.parser.core.models.SwaggerParseResult;
+import org.lucee.extension.openapi.jfr.JfrEvents;
+import org.lucee.extension.openapi.jfr.OpenAPISpecLoadEvent;
+import org.lucee.extension.openapi.spec.SpecCache;
+import org.lucee.extension.openapi.spec.SpecDescriptor;
+import org.lucee.extension.openapi.util.OptionUtil;
 
 /**
  * Factory class for creating OpenAPI client objects
@@ -31,18 +34,51 @@ public class OpenAPIClientFactory {
 		}
 	}
 	
+	/**
+	 * Wraps the client in a generated CFC with one function per operation.
+	 * Falls back to the plain Java client outside of a request or when the "proxy" option is "java".
+	 */
+	private static Object createProxy(Object pc, OpenAPIClient client, Object options) {
+		if (!(pc instanceof PageContext) || "java".equalsIgnoreCase(OptionUtil.getString(options, "proxy", ""))) {
+			return client;
+		}
+		try {
+			return CFCProxyGenerator.generateCFCProxy((PageContext) pc, client);
+		} catch (Exception e) {
+			System.err.println("Warning: Failed to generate CFC proxy for " + client.getDisplayName() + ", using dynamic dispatch: " + e.getMessage());
+			return client;
+		}
+	}
+	
 	private static Object createOpenAPIClient(Object pc, String specUrl, Object options) throws Exception {
-		// Parse the OpenAPI specification
-		OpenAPIV3Parser parser = new OpenAPIV3Parser();
-		SwaggerParseResult result = parser.readLocation(specUrl, null, null);
-		
-		if (result.getOpenAPI() == null) {
-			throw new Exception("Failed to parse OpenAPI specification from: " + specUrl);
+		OpenAPISpecLoadEvent event = JfrEvents.AVAILABLE ? new OpenAPISpecLoadEvent() : null;
+		if (event != null && event.isEnabled()) {
+			event.begin();
+		} else {
+			event = null;
 		}
 		
-		OpenAPI openAPI = result.getOpenAPI();
-		
-		// Create and return the Java client (acts like a CFC proxy)
-		return new OpenAPIClient(pc, openAPI, specUrl, options);
+		try {
+			// Compiled once per spec content, the parser only runs if no index of the content exists
+			SpecDescriptor spec = SpecCache.load(specUrl);
+			
+			// Create the Java client
+			OpenAPIClient client = new OpenAPIClient(pc, spec, specUrl, options);
+			if (event != null) {
+				event.success = true;
+				event.operationCount = client.getMethodNames().length;
+			}
+			return createProxy(pc, client, options);
+		} catch (Exception e) {
+			if (event != null) {
+				event.error = e.getMessage();
+			}
+			throw e;
+		} finally {
+			if (event != null) {
+				event.specUrl = specUrl;
+				event.commit();
+			}
+		}
 	}
 }
@@ -1,5 +1,8 @@
 package org.lucee.extension.openapi;
 
+import org.lucee.extension.openapi.auth.TokenManager;
+import org.lucee.extension.openapi.util.BackgroundScheduler;
+
 /**
  * Main OpenAPI extension class for Lucee Server
  * For Lucee 7.x, extensions are primarily handled via OSGi bundles
@@ -20,6 +23,9 @@ public class OpenAPIExtension {
 	 * Extension cleanup - called when the extension is unloaded
 	 */
 	public static void destroy() {
+		// Background threads must not outlive the bundle, or every reload leaks a pool
+		BackgroundScheduler.shutdown();
+		TokenManager.clearAll();
 		System.out.println("OpenAPI Extension destroyed");
 	}
 	
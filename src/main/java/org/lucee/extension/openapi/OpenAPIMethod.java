@@ -1,11 +1,23 @@
 package org.lucee.extension.openapi;
 
-import io.swagger.v3.oas.models.OpenAPI;
-import io.swagger.v3.oas.models.Operation;
-import io.swagger.v3.oas.models.parameters.Parameter;
+import lucee.runtime.type.UDF;
 
+import org.lucee.extension.openapi.auth.Credential;
+import org.lucee.extension.openapi.jfr.JfrEvents;
+import org.lucee.extension.openapi.jfr.OpenAPICallEvent;
+import org.lucee.extension.openapi.spec.OperationDescriptor;
+import org.lucee.extension.openapi.spec.ParameterDescriptor;
+import org.lucee.extension.openapi.trace.Span;
+import org.lucee.extension.openapi.trace.TraceContext;
+import org.lucee.extension.openapi.trace.Tracer;
+import org.lucee.extension.openapi.util.CallStats;
 import org.lucee.extension.openapi.util.HttpUtil;
+import org.lucee.extension.openapi.util.JsonProjection;
+import org.lucee.extension.openapi.util.OptionUtil;
+import org.lucee.extension.openapi.util.RequestOptions;
+import org.lucee.extension.openapi.util.StreamHandler;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
@@ -16,21 +28,62 @@ import java.util.ArrayList;
  */
 public class OpenAPIMethod {
 	
+	/**
+	 * Reserved argument naming a file path or OutputStream the response body is streamed to
+	 */
+	public static final String ARG_SAVE_TO = "_saveTo";
+	
+	/**
+	 * Reserved argument with a closure (or StreamHandler) receiving SSE/NDJSON events as they arrive
+	 */
+	public static final String ARG_ON_EVENT = "_onEvent";
+	public static final String ARG_LAST_EVENT_ID = "_lastEventId";
+	public static final String ARG_STREAM_TIMEOUT = "_streamTimeout";
+	public static final String ARG_MAX_RECONNECTS = "_maxReconnects";
+	
+	/**
+	 * Reserved argument with the paths of the JSON response to keep (comma-separated list or array);
+	 * overrides the projection configured for the operation, an empty value returns the whole response
+	 */
+	public static final String ARG_FIELDS = "_fields";
+	
+	/**
+	 * Reserved argument with the largest response body (bytes) kept in memory for this call
+	 */
+	public static final String ARG_MAX_BODY_SIZE = "_maxBodySize";
+	
+	private final OperationDescriptor descriptor;
 	private final String operationId;
 	private final String httpMethod;
 	private final String path;
-	private final Operation operation;
-	private final OpenAPI openAPI;
 	private final HttpUtil httpUtil;
+	private final Tracer tracer;
+	private final List<Credential> credentials;
+	private final String binaryContentType;
+	private final JsonProjection projection;
 	
-	public OpenAPIMethod(String operationId, String httpMethod, String path, 
-						Operation operation, OpenAPI openAPI, HttpUtil httpUtil) {
-		this.operationId = operationId;
-		this.httpMethod = httpMethod;
-		this.path = path;
-		this.operation = operation;
-		this.openAPI = openAPI;
+	/**
+	 * @param descriptor compiled operation, shared with other clients of the same spec
+	 * @param credentials credentials of the security requirement chosen for this operation, applied to every call
+	 */
+	public OpenAPIMethod(OperationDescriptor descriptor, HttpUtil httpUtil, Tracer tracer, List<Credential> credentials) {
+		this(descriptor, httpUtil, tracer, credentials, null);
+	}
+	
+	/**
+	 * @param projection paths of the JSON response kept by default, null for the whole response
+	 */
+	public OpenAPIMethod(OperationDescriptor descriptor, HttpUtil httpUtil, Tracer tracer, List<Credential> credentials,
+			JsonProjection projection) {
+		this.descriptor = descriptor;
+		this.operationId = descriptor.getOperationId();
+		this.httpMethod = descriptor.getHttpMethod();
+		this.path = descriptor.getPath();
 		this.httpUtil = httpUtil;
+		this.tracer = tracer;
+		this.credentials = credentials != null ? credentials : Collections.emptyList();
+		this.binaryContentType = descriptor.getBinaryContentType();
+		this.projection = projection;
 	}
 	
 	public Object invoke(Object pc, Object[] args, String baseUrl) throws Exception {
@@ -40,6 +93,14 @@ public class OpenAPIMethod {
 	}
 	
 	public Object invokeWithNamedArgs(Object pc, Object args, String baseUrl) throws Exception {
+		// Flight recorder event, only materialized while a recording has it enabled
+		OpenAPICallEvent event = JfrEvents.AVAILABLE ? new OpenAPICallEvent() : null;
+		if (event != null && event.isEnabled()) {
+			event.begin();
+		} else {
+			event = null;
+		}
+		
 		// Convert args to Map if needed
 		Map<String, Object> argMap;
 		if (args instanceof Map) {
@@ -55,22 +116,151 @@ public class OpenAPIMethod {
 		Map<String, String> headers = extractHeaders(argMap);
 		Map<String, Object> queryParams = extractQueryParams(argMap);
 		Object requestBody = extractRequestBody(argMap);
+		RequestOptions requestOptions = extractRequestOptions(argMap);
+		
+		// Credentials never override an Authorization header or key the caller passed explicitly
+		for (Credential credential : credentials) {
+			credential.apply(headers, queryParams);
+		}
+		
+		if (requestOptions.isDownload()) {
+			headers.put("Accept", binaryContentType != null ? binaryContentType : "*/*");
+		} else if (requestOptions.getStreamHandler() != null) {
+			headers.put("Accept", "text/event-stream, application/x-ndjson, application/json");
+		}
+		
+		CallStats stats = null;
+		if (event != null) {
+			stats = new CallStats();
+			requestOptions.setStats(stats);
+		}
 		
-		// Make HTTP request
-		return httpUtil.makeRequest(httpMethod, url, headers, queryParams, requestBody);
+		// Traced call, continuing the trace of the current Lucee request if there is one
+		Span span = null;
+		if (tracer != null) {
+			span = tracer.startSpan("openapi " + operationId, TraceContext.fromCurrentRequest());
+			span.setAttribute("openapi.operation_id", operationId);
+			span.setAttribute("http.method", httpMethod);
+			span.setAttribute("openapi.path", path);
+			requestOptions.setSpan(span);
+		}
+		
+		try {
+			// Make HTTP request
+			Object result = httpUtil.makeRequest(httpMethod, url, headers, queryParams, requestBody, requestOptions);
+			if (span != null && result instanceof Map) {
+				span.setAttribute("http.status_code", ((Map<?, ?>) result).get("statusCode"));
+			}
+			return result;
+		} catch (Exception e) {
+			if (span != null) {
+				span.setAttribute("error", e.getClass().getName() + ": " + e.getMessage());
+			}
+			if (event != null) {
+				event.error = e.getClass().getName() + ": " + e.getMessage();
+			}
+			throw e;
+		} finally {
+			if (span != null) {
+				span.end();
+			}
+			if (event != null) {
+				commitEvent(event, stats);
+			}
+		}
 	}
 	
-	private Map<String, Object> convertPositionalArgs(Object[] args) throws Exception {
-		Map<String, Object> namedArgs = new HashMap<>();
+	private void commitEvent(OpenAPICallEvent event, CallStats stats) {
+		event.end();
+		if (!event.shouldCommit()) return;
+		event.operationId = operationId;
+		event.method = httpMethod;
+		event.host = stats.getHost();
+		event.statusCode = stats.getStatusCode();
+		event.requestBytes = stats.getRequestBytes();
+		event.responseBytes = stats.getResponseBytes();
+		event.serializeDuration = stats.getSerializeNanos();
+		event.commit();
+	}
+	
+	private RequestOptions extractRequestOptions(Map<String, Object> args) {
+		RequestOptions requestOptions = new RequestOptions();
+		requestOptions.setOperationId(operationId);
+		requestOptions.setBodySerializer(descriptor.getBodySerializer());
+		requestOptions.setDownload(binaryContentType != null);
+		
+		Object fields = getReservedArg(args, ARG_FIELDS);
+		requestOptions.setProjection(fields != null ? JsonProjection.compile(fields) : projection);
+		
+		requestOptions.setMaxBodySize(OptionUtil.getLong(args, ARG_MAX_BODY_SIZE, 0));
 		
-		if (operation.getParameters() == null) {
-			return namedArgs;
+		Object saveTo = getReservedArg(args, ARG_SAVE_TO);
+		if (saveTo != null && !"".equals(saveTo.toString())) {
+			requestOptions.setSaveTo(saveTo);
 		}
 		
-		List<Parameter> parameters = operation.getParameters();
+		Object onEvent = getReservedArg(args, ARG_ON_EVENT);
+		if (onEvent instanceof StreamHandler) {
+			requestOptions.setStreamHandler((StreamHandler) onEvent);
+		} else if (onEvent instanceof UDF) {
+			requestOptions.setStreamHandler(new UDFStreamHandler((UDF) onEvent));
+		}
+		if (requestOptions.getStreamHandler() != null) {
+			requestOptions.setLastEventId(OptionUtil.getString(args, ARG_LAST_EVENT_ID, null));
+			requestOptions.setStreamIdleTimeout((int) OptionUtil.getLong(args, ARG_STREAM_TIMEOUT, requestOptions.getStreamIdleTimeout()));
+			requestOptions.setMaxReconnects((int) OptionUtil.getLong(args, ARG_MAX_RECONNECTS, requestOptions.getMaxReconnects()));
+		}
+		return requestOptions;
+	}
+	
+	/**
+	 * Reserved arguments start with an underscore and are matched case-insensitively,
+	 * as CFML may change the case of argument names
+	 */
+	private static Object getReservedArg(Map<?, ?> args, String name) {
+		for (Map.Entry<?, ?> entry : args.entrySet()) {
+			if (name.equalsIgnoreCase(String.valueOf(entry.getKey()))) {
+				return entry.getValue();
+			}
+		}
+		return null;
+	}
+	
+	private static boolean isReservedArg(Object key) {
+		return key != null && key.toString().startsWith("_");
+	}
+	
+	/**
+	 * Value of a parameter; names that are not identifiers are also looked up in the sanitized form
+	 * under which the generated proxy declares them
+	 */
+	private Object getArg(Map<String, Object> args, ParameterDescriptor param) {
+		Object value = args.get(param.getName());
+		if (value == null && !CFCProxyGenerator.isIdentifier(param.getName())) {
+			String sanitized = CFCProxyGenerator.toIdentifier(param.getName());
+			if (!descriptor.hasParameter(sanitized)) {
+				value = args.get(sanitized);
+			}
+		}
+		return value;
+	}
+	
+	private boolean isSanitizedParameter(String key) {
+		for (ParameterDescriptor param : descriptor.getParameters()) {
+			if (!CFCProxyGenerator.isIdentifier(param.getName())
+				&& CFCProxyGenerator.toIdentifier(param.getName()).equalsIgnoreCase(key)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private Map<String, Object> convertPositionalArgs(Object[] args) throws Exception {
+		Map<String, Object> namedArgs = new HashMap<>();
+		
+		List<ParameterDescriptor> parameters = descriptor.getParameters();
 		for (int i = 0; i < Math.min(args.length, parameters.size()); i++) {
-			Parameter param = parameters.get(i);
-			namedArgs.put(param.getName(), args[i]);
+			namedArgs.put(parameters.get(i).getName(), args[i]);
 		}
 		
 		return namedArgs;
@@ -80,13 +270,10 @@ public class OpenAPIMethod {
 		String url = baseUrl + path;
 		
 		// Replace path parameters
-		if (operation.getParameters() != null) {
-			for (Parameter param : operation.getParameters()) {
-				if ("path".equals(param.getIn()) && args.containsKey(param.getName())) {
-					String placeholder = "{" + param.getName() + "}";
-					String value = args.get(param.getName()).toString();
-					url = url.replace(placeholder, value);
-				}
+		for (ParameterDescriptor param : descriptor.getPathParameters()) {
+			Object value = getArg(args, param);
+			if (value != null) {
+				url = url.replace("{" + param.getName() + "}", value.toString());
 			}
 		}
 		
@@ -98,11 +285,10 @@ public class OpenAPIMethod {
 		headers.put("Content-Type", "application/json");
 		headers.put("Accept", "application/json");
 		
-		if (operation.getParameters() != null) {
-			for (Parameter param : operation.getParameters()) {
-				if ("header".equals(param.getIn()) && args.containsKey(param.getName())) {
-					headers.put(param.getName(), args.get(param.getName()).toString());
-				}
+		for (ParameterDescriptor param : descriptor.getHeaderParameters()) {
+			Object value = getArg(args, param);
+			if (value != null) {
+				headers.put(param.getName(), value.toString());
 			}
 		}
 		
@@ -112,11 +298,10 @@ public class OpenAPIMethod {
 	private Map<String, Object> extractQueryParams(Map<String, Object> args) throws Exception {
 		Map<String, Object> queryParams = new HashMap<>();
 		
-		if (operation.getParameters() != null) {
-			for (Parameter param : operation.getParameters()) {
-				if ("query".equals(param.getIn()) && args.containsKey(param.getName())) {
-					queryParams.put(param.getName(), args.get(param.getName()));
-				}
+		for (ParameterDescriptor param : descriptor.getQueryParameters()) {
+			Object value = getArg(args, param);
+			if (value != null) {
+				queryParams.put(param.getName(), value);
 			}
 		}
 		
@@ -124,23 +309,23 @@ public class OpenAPIMethod {
 	}
 	
 	private Object extractRequestBody(Map<String, Object> args) throws Exception {
-		if (operation.getRequestBody() == null) {
+		if (!descriptor.hasBody()) {
 			return null;
 		}
 		
 		// Look for a 'body' argument or the first non-parameter argument
-		if (args.containsKey("body")) {
+		// (declared but omitted arguments of a generated proxy are present with a null value)
+		if (args.get("body") != null) {
 			return args.get("body");
 		}
 		
 		// Find the first argument that's not a parameter
-		if (operation.getParameters() != null) {
+		if (!descriptor.getParameters().isEmpty()) {
 			for (Object key : args.keySet()) {
+				if (isReservedArg(key) || args.get(key) == null) continue;
 				String keyStr = key.toString();
-				boolean isParameter = operation.getParameters().stream()
-					.anyMatch(p -> p.getName().equals(keyStr));
 				
-				if (!isParameter) {
+				if (!descriptor.hasParameter(keyStr) && !isSanitizedParameter(keyStr)) {
 					return args.get(keyStr);
 				}
 			}
@@ -149,24 +334,41 @@ public class OpenAPIMethod {
 		return null;
 	}
 	
+	public String getOperationId() {
+		return operationId;
+	}
+	
+	/**
+	 * Compiled operation this method invokes
+	 */
+	public OperationDescriptor getDescriptor() {
+		return descriptor;
+	}
+	
 	public Map<String, Object> getInfo() throws Exception {
 		Map<String, Object> info = new HashMap<>();
 		
 		info.put("operationId", operationId);
 		info.put("method", httpMethod);
 		info.put("path", path);
-		info.put("summary", operation.getSummary() != null ? operation.getSummary() : "");
-		info.put("description", operation.getDescription() != null ? operation.getDescription() : "");
+		info.put("summary", descriptor.getSummary());
+		info.put("description", descriptor.getDescription());
+		info.put("binaryResponse", binaryContentType != null);
+		info.put("hasBody", descriptor.hasBody());
+		info.put("authenticated", !credentials.isEmpty());
+		info.put("fields", projection != null ? projection.toString() : "");
+		info.put("bodyRequired", descriptor.isBodyRequired());
 		
 		// Add parameters info
-		if (operation.getParameters() != null) {
+		if (!descriptor.getParameters().isEmpty()) {
 			List<Map<String, Object>> params = new ArrayList<>();
-			for (Parameter param : operation.getParameters()) {
+			for (ParameterDescriptor param : descriptor.getParameters()) {
 				Map<String, Object> paramInfo = new HashMap<>();
 				paramInfo.put("name", param.getName());
 				paramInfo.put("in", param.getIn());
-				paramInfo.put("required", param.getRequired() != null ? param.getRequired() : false);
-				paramInfo.put("description", param.getDescription() != null ? param.getDescription() : "");
+				paramInfo.put("required", param.isRequired());
+				paramInfo.put("description", param.getDescription());
+				paramInfo.put("type", param.getType());
 				params.add(paramInfo);
 			}
 			info.put("parameters", params);
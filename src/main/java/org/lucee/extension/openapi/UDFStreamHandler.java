@@ -0,0 +1,37 @@
+package org.lucee.extension.openapi;
+
+import lucee.loader.engine.CFMLEngine;
+import lucee.loader.engine.CFMLEngineFactory;
+import lucee.runtime.PageContext;
+import lucee.runtime.type.Struct;
+import lucee.runtime.type.UDF;
+
+import org.lucee.extension.openapi.util.StreamHandler;
+
+import java.util.Map;
+
+/**
+ * Delivers streamed events to a CFML closure or function; returning false from it stops the stream
+ */
+public class UDFStreamHandler implements StreamHandler {
+	
+	private final UDF udf;
+	private final PageContext pc;
+	private final CFMLEngine engine;
+	
+	public UDFStreamHandler(UDF udf) {
+		this.udf = udf;
+		this.engine = CFMLEngineFactory.getInstance();
+		this.pc = engine.getThreadPageContext();
+	}
+	
+	@Override
+	public boolean onEvent(Map<String, Object> event) throws Exception {
+		Struct sct = engine.getCreationUtil().createStruct();
+		for (Map.Entry<String, Object> entry : event.entrySet()) {
+			sct.setEL(engine.getCreationUtil().createKey(entry.getKey()), entry.getValue());
+		}
+		Object result = udf.call(pc, new Object[] { sct }, true);
+		return !Boolean.FALSE.equals(result);
+	}
+}
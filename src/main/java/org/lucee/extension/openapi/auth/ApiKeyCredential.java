@@ -0,0 +1,40 @@
+package org.lucee.extension.openapi.auth;
+
+import java.util.Map;
+
+/**
+ * API key sent as header, query parameter or cookie
+ */
+public class ApiKeyCredential implements Credential {
+
+	private final String name;
+	private final String in;
+	private final String value;
+
+	public ApiKeyCredential(String name, String in, String value) {
+		this.name = name;
+		this.in = in != null ? in.toLowerCase() : "header";
+		this.value = value;
+	}
+
+	@Override
+	public void apply(Map<String, String> headers, Map<String, Object> queryParams) {
+		switch (in) {
+			case "query":
+				queryParams.putIfAbsent(name, value);
+				break;
+			case "cookie":
+				String cookie = name + "=" + value;
+				String existing = headers.get("Cookie");
+				if (existing == null) {
+					headers.put("Cookie", cookie);
+				} else if (!existing.contains(name + "=")) {
+					headers.put("Cookie", existing + "; " + cookie);
+				}
+				break;
+			default:
+				headers.putIfAbsent(name, value);
+				break;
+		}
+	}
+}
@@ -0,0 +1,16 @@
+package org.lucee.extension.openapi.auth;
+
+import java.util.Map;
+
+/**
+ * Small helpers shared by the credential implementations
+ */
+class AuthUtil {
+
+	static boolean hasHeader(Map<String, String> headers, String name) {
+		for (String key : headers.keySet()) {
+			if (name.equalsIgnoreCase(key)) return true;
+		}
+		return false;
+	}
+}
@@ -0,0 +1,14 @@
+package org.lucee.extension.openapi.auth;
+
+import java.util.Map;
+
+/**
+ * Credentials for one security scheme, applied to every request of the operations that require it
+ */
+public interface Credential {
+
+	/**
+	 * Adds the credentials to the request; values the caller passed explicitly are left untouched
+	 */
+	void apply(Map<String, String> headers, Map<String, Object> queryParams) throws Exception;
+}
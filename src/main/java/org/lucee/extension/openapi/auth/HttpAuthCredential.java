@@ -0,0 +1,33 @@
+package org.lucee.extension.openapi.auth;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+
+/**
+ * Static Authorization header for http security schemes (bearer or basic)
+ */
+public class HttpAuthCredential implements Credential {
+
+	private final String authorization;
+
+	public HttpAuthCredential(String authorization) {
+		this.authorization = authorization;
+	}
+
+	public static HttpAuthCredential bearer(String token) {
+		return new HttpAuthCredential("Bearer " + token);
+	}
+
+	public static HttpAuthCredential basic(String username, String password) {
+		String encoded = Base64.getEncoder().encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+		return new HttpAuthCredential("Basic " + encoded);
+	}
+
+	@Override
+	public void apply(Map<String, String> headers, Map<String, Object> queryParams) {
+		if (!AuthUtil.hasHeader(headers, "Authorization")) {
+			headers.put("Authorization", authorization);
+		}
+	}
+}
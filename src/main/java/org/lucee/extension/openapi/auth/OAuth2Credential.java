@@ -0,0 +1,42 @@
+package org.lucee.extension.openapi.auth;
+
+import org.lucee.extension.openapi.trace.Tracer;
+import org.lucee.extension.openapi.transport.Transport;
+import org.lucee.extension.openapi.transport.UrlConnectionTransport;
+
+import java.util.Map;
+
+/**
+ * OAuth2 access token from a shared TokenManager, sent as bearer token.
+ * Tokens are requested over the transport and with the tracer of the client.
+ */
+public class OAuth2Credential implements Credential {
+
+	private final TokenManager tokenManager;
+	private final Transport transport;
+	private final Tracer tracer;
+
+	public OAuth2Credential(TokenManager tokenManager) {
+		this(tokenManager, UrlConnectionTransport.getInstance(), null);
+	}
+
+	/**
+	 * @param tracer tracer of the client, null if it is not traced
+	 */
+	public OAuth2Credential(TokenManager tokenManager, Transport transport, Tracer tracer) {
+		this.tokenManager = tokenManager;
+		this.transport = transport;
+		this.tracer = tracer;
+	}
+
+	@Override
+	public void apply(Map<String, String> headers, Map<String, Object> queryParams) throws Exception {
+		if (!AuthUtil.hasHeader(headers, "Authorization")) {
+			headers.put("Authorization", "Bearer " + tokenManager.getAccessToken(transport, tracer));
+		}
+	}
+
+	public TokenManager getTokenManager() {
+		return tokenManager;
+	}
+}
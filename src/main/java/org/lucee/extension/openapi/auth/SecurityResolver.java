@@ -0,0 +1,226 @@
+package org.lucee.extension.openapi.auth;
+
+import lucee.loader.engine.CFMLEngineFactory;
+
+import org.lucee.extension.openapi.spec.SecuritySchemeDescriptor;
+import org.lucee.extension.openapi.spec.SpecDescriptor;
+import org.lucee.extension.openapi.trace.Tracer;
+import org.lucee.extension.openapi.transport.Transport;
+import org.lucee.extension.openapi.transport.UrlConnectionTransport;
+import org.lucee.extension.openapi.util.OptionUtil;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maps the security requirements of the spec to credentials configured in the "auth" option.
+ * The option is a struct keyed by security scheme name, e.g.
+ * auth: { api_key: "secret", oauth: { clientId: "...", clientSecret: "...", scopes: "read write" } }
+ */
+public class SecurityResolver {
+
+	private static final long DEFAULT_REFRESH_BEFORE = 60000;
+
+	private final Map<String, SecuritySchemeDescriptor> schemes;
+	private final List<Map<String, List<String>>> globalSecurity;
+	private final Object authOptions;
+	private final String baseUrl;
+	private final Transport transport;
+	private final Tracer tracer;
+	private final Map<String, Credential> cache = new HashMap<>();
+	private final List<TokenManager> tokenManagers = new ArrayList<>();
+
+	public SecurityResolver(SpecDescriptor spec, Object options, String baseUrl) {
+		this(spec, options, baseUrl, UrlConnectionTransport.getInstance(), null);
+	}
+
+	/**
+	 * @param transport transport of the client, token requests go over it too
+	 * @param tracer tracer of the client, null if it is not traced
+	 */
+	public SecurityResolver(SpecDescriptor spec, Object options, String baseUrl, Transport transport, Tracer tracer) {
+		this.schemes = spec.getSecuritySchemes();
+		this.globalSecurity = spec.getSecurity();
+		this.authOptions = OptionUtil.get(options, "auth");
+		this.baseUrl = baseUrl;
+		this.transport = transport;
+		this.tracer = tracer;
+
+		if (authOptions instanceof Map) {
+			for (Object name : ((Map<?, ?>) authOptions).keySet()) {
+				if (findScheme(String.valueOf(name)) == null) {
+					System.err.println("Warning: auth option [" + name + "] does not match any security scheme of the spec");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Whether any credentials are configured at all
+	 */
+	public boolean isEmpty() {
+		return !(authOptions instanceof Map) || ((Map<?, ?>) authOptions).isEmpty();
+	}
+
+	/**
+	 * Resolves the credentials for an operation. The operation's own security requirements override the global ones;
+	 * of the alternatives, the first one with credentials configured for all of its schemes is used.
+	 */
+	public List<Credential> resolve(List<Map<String, List<String>>> operationSecurity) throws Exception {
+		List<Map<String, List<String>>> requirements = operationSecurity != null ? operationSecurity : globalSecurity;
+		if (requirements == null || isEmpty()) return Collections.emptyList();
+
+		for (Map<String, List<String>> requirement : requirements) {
+			if (requirement.isEmpty()) continue;
+			List<Credential> credentials = new ArrayList<>();
+			for (Map.Entry<String, List<String>> entry : requirement.entrySet()) {
+				Credential credential = getCredential(entry.getKey(), entry.getValue());
+				if (credential == null) {
+					credentials = null;
+					break;
+				}
+				credentials.add(credential);
+			}
+			if (credentials != null) return credentials;
+		}
+		return Collections.emptyList();
+	}
+
+	private Credential getCredential(String schemeName, List<String> requiredScopes) throws Exception {
+		String key = schemeName + "|" + requiredScopes;
+		if (cache.containsKey(key)) return cache.get(key);
+
+		Credential credential = null;
+		SecuritySchemeDescriptor scheme = findScheme(schemeName);
+		Object config = OptionUtil.get(authOptions, schemeName);
+		if (config instanceof Credential) {
+			credential = (Credential) config;
+		} else if (scheme != null && config != null && scheme.getType() != null) {
+			credential = createCredential(schemeName, scheme, config, requiredScopes);
+		}
+		cache.put(key, credential);
+		return credential;
+	}
+
+	private Credential createCredential(String schemeName, SecuritySchemeDescriptor scheme, Object config,
+			List<String> requiredScopes) throws Exception {
+		switch (scheme.getType()) {
+			case SecuritySchemeDescriptor.TYPE_API_KEY:
+				String value = config instanceof Map ? OptionUtil.getString(config, "value", null) : config.toString();
+				if (value == null) throw invalid(schemeName, "a value");
+				String in = scheme.getIn() != null ? scheme.getIn() : "header";
+				return new ApiKeyCredential(scheme.getName(), in, value);
+
+			case SecuritySchemeDescriptor.TYPE_HTTP:
+				if ("basic".equalsIgnoreCase(scheme.getScheme())) {
+					String username = OptionUtil.getString(config, "username", null);
+					if (username == null) throw invalid(schemeName, "username and password");
+					return HttpAuthCredential.basic(username, OptionUtil.getString(config, "password", ""));
+				}
+				String token = config instanceof Map ? OptionUtil.getString(config, "token", null) : config.toString();
+				if (token == null) throw invalid(schemeName, "a token");
+				return HttpAuthCredential.bearer(token);
+
+			case SecuritySchemeDescriptor.TYPE_OAUTH2:
+			case SecuritySchemeDescriptor.TYPE_OPENID_CONNECT:
+				if (!(config instanceof Map)) {
+					// A plain string is a token obtained elsewhere
+					return HttpAuthCredential.bearer(config.toString());
+				}
+				return createOAuth2Credential(schemeName, scheme, config, requiredScopes);
+
+			default:
+				return null;
+		}
+	}
+
+	private Credential createOAuth2Credential(String schemeName, SecuritySchemeDescriptor scheme, Object config,
+			List<String> requiredScopes) throws Exception {
+		String clientId = OptionUtil.getString(config, "clientId", null);
+		String clientSecret = OptionUtil.getString(config, "clientSecret", null);
+		String refreshToken = OptionUtil.getString(config, "refreshToken", null);
+		String accessToken = OptionUtil.getString(config, "token", null);
+		if (clientId == null) {
+			if (accessToken != null) return HttpAuthCredential.bearer(accessToken);
+			throw invalid(schemeName, "a clientId");
+		}
+
+		String tokenUrl = OptionUtil.getString(config, "tokenUrl", null);
+		if (tokenUrl == null) {
+			tokenUrl = findTokenUrl(scheme, refreshToken != null);
+		}
+		if (tokenUrl == null) throw invalid(schemeName, "a tokenUrl (the spec declares none for this flow)");
+		if (baseUrl != null && !tokenUrl.contains("://")) {
+			tokenUrl = new URL(new URL(baseUrl.endsWith("/") ? baseUrl : baseUrl + "/"), tokenUrl).toString();
+		}
+
+		String scopes = joinScopes(OptionUtil.get(config, "scopes"), requiredScopes);
+		boolean basicAuth = !"body".equalsIgnoreCase(OptionUtil.getString(config, "clientAuth", "basic"));
+		long refreshBefore = OptionUtil.getLong(config, "refreshBefore", DEFAULT_REFRESH_BEFORE);
+
+		TokenManager tokenManager = TokenManager.getInstance(tokenUrl, clientId, clientSecret, scopes,
+			refreshToken, basicAuth, refreshBefore);
+		tokenManagers.add(tokenManager);
+		return new OAuth2Credential(tokenManager, transport, tracer);
+	}
+
+	/**
+	 * Releases the shared token managers this resolver acquired; called when the client is closed
+	 */
+	public void close() {
+		for (TokenManager tokenManager : tokenManagers) {
+			tokenManager.release();
+		}
+		tokenManagers.clear();
+		cache.clear();
+	}
+
+	private static String findTokenUrl(SecuritySchemeDescriptor scheme, boolean refresh) {
+		if (!refresh && scheme.getClientCredentialsTokenUrl() != null) {
+			return scheme.getClientCredentialsTokenUrl();
+		}
+		if (refresh && scheme.getRefreshUrl() != null) {
+			return scheme.getRefreshUrl();
+		}
+		return scheme.getTokenUrl();
+	}
+
+	/**
+	 * Scopes from the option win; otherwise the scopes the operation requires are requested
+	 */
+	private static String joinScopes(Object configured, List<String> required) {
+		Set<String> scopes = new LinkedHashSet<>();
+		if (configured instanceof Iterable) {
+			for (Object scope : (Iterable<?>) configured) {
+				scopes.add(String.valueOf(scope));
+			}
+		} else if (configured != null) {
+			for (String scope : configured.toString().trim().split("[\\s,]+")) {
+				if (!scope.isEmpty()) scopes.add(scope);
+			}
+		} else if (required != null) {
+			scopes.addAll(required);
+		}
+		return scopes.isEmpty() ? null : String.join(" ", scopes);
+	}
+
+	private SecuritySchemeDescriptor findScheme(String name) {
+		SecuritySchemeDescriptor scheme = schemes.get(name);
+		if (scheme != null) return scheme;
+		for (Map.Entry<String, SecuritySchemeDescriptor> entry : schemes.entrySet()) {
+			if (entry.getKey().equalsIgnoreCase(name)) return entry.getValue();
+		}
+		return null;
+	}
+
+	private static Exception invalid(String schemeName, String what) {
+		return CFMLEngineFactory.getInstance().getExceptionUtil().createApplicationException(
+			"auth option for security scheme [" + schemeName + "] requires " + what);
+	}
+}
@@ -0,0 +1,359 @@
+package org.lucee.extension.openapi.auth;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lucee.loader.engine.CFMLEngineFactory;
+
+import org.lucee.extension.openapi.trace.Span;
+import org.lucee.extension.openapi.trace.TraceContext;
+import org.lucee.extension.openapi.trace.Tracer;
+import org.lucee.extension.openapi.transport.Transport;
+import org.lucee.extension.openapi.transport.TransportRequest;
+import org.lucee.extension.openapi.transport.TransportResponse;
+import org.lucee.extension.openapi.transport.UrlConnectionTransport;
+import org.lucee.extension.openapi.util.BackgroundScheduler;
+import org.lucee.extension.openapi.util.LuceeHttpUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fetches and caches OAuth2 access tokens (client credentials or refresh token grant).
+ * Instances are shared between all clients and threads using the same token endpoint, client credentials,
+ * client authentication and scopes, so a token is fetched once per process. Tokens that are in use get refreshed
+ * in the background shortly before they expire; callers only block when no valid token is available at all.
+ * A token is no longer used in the last 10% of its lifetime (at most 30 seconds), so requests in flight do not
+ * arrive after it expired. Tokens are requested over the transport and with the tracer of the client asking for one.
+ * Every getInstance() must be paired with a release(); the instance is dropped with its last client.
+ */
+public class TokenManager {
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	private static final Map<String, TokenManager> INSTANCES = new ConcurrentHashMap<>();
+	private static final long DEFAULT_EXPIRES_IN = 3600;
+	private static final long RETRY_DELAY = 5000;
+	private static final long MAX_EXPIRY_MARGIN = 30000;
+
+	private final String key;
+	private final String tokenUrl;
+	private final String clientId;
+	private final String clientSecret;
+	private final String scopes;
+	private final boolean basicAuth;
+	private final long refreshBefore;
+
+	private volatile Token token;
+	private volatile String refreshToken;
+	private volatile boolean used;
+	private volatile boolean closed;
+	// Of the client that last asked for a token, used by the background refresh
+	private volatile Transport transport = UrlConnectionTransport.getInstance();
+	private volatile Tracer tracer;
+	private boolean refreshScheduled;
+	private int fetchCount;
+	private int clients;
+
+	private TokenManager(String key, String tokenUrl, String clientId, String clientSecret, String scopes,
+			String refreshToken, boolean basicAuth, long refreshBefore) {
+		this.key = key;
+		this.tokenUrl = tokenUrl;
+		this.clientId = clientId;
+		this.clientSecret = clientSecret;
+		this.scopes = scopes;
+		this.refreshToken = refreshToken;
+		this.basicAuth = basicAuth;
+		this.refreshBefore = refreshBefore;
+	}
+
+	/**
+	 * Returns the shared manager for the given endpoint, client and scopes, creating it on first use.
+	 * Secrets are only part of the key as hashes, so a client with another or a rotated secret never gets
+	 * the tokens of this one.
+	 *
+	 * @param refreshToken initial refresh token (e.g. from an authorization code flow), null for client credentials
+	 * @param basicAuth send the client credentials as Basic auth header instead of form fields
+	 * @param refreshBefore milliseconds before expiry at which the token is renewed in the background
+	 */
+	public static TokenManager getInstance(String tokenUrl, String clientId, String clientSecret, String scopes,
+			String refreshToken, boolean basicAuth, long refreshBefore) {
+		String key = tokenUrl + "|" + clientId + "|" + hash(clientSecret) + "|" + (basicAuth ? "basic" : "body") + "|"
+			+ refreshBefore + "|" + (scopes != null ? scopes : "") + "|" + hash(refreshToken);
+		return INSTANCES.compute(key, (k, existing) -> {
+			TokenManager manager = existing != null ? existing
+				: new TokenManager(k, tokenUrl, clientId, clientSecret, scopes, refreshToken, basicAuth, refreshBefore);
+			manager.clients++;
+			return manager;
+		});
+	}
+
+	/**
+	 * Gives up one reference taken by getInstance(); the last one drops the cached token and stops its refresh
+	 */
+	public void release() {
+		INSTANCES.computeIfPresent(key, (k, manager) -> {
+			if (manager != this || --manager.clients > 0) return manager;
+			closed = true;
+			return null;
+		});
+	}
+
+	/**
+	 * Number of managers currently shared, for diagnostics and tests
+	 */
+	public static int getInstanceCount() {
+		return INSTANCES.size();
+	}
+
+	/**
+	 * Drops all cached tokens, mainly for tests
+	 */
+	public static void clearAll() {
+		for (TokenManager manager : INSTANCES.values()) {
+			manager.closed = true;
+		}
+		INSTANCES.clear();
+	}
+
+	/**
+	 * Returns a valid access token, fetching one over the default transport if needed
+	 */
+	public String getAccessToken() throws Exception {
+		return getAccessToken(UrlConnectionTransport.getInstance(), null);
+	}
+
+	/**
+	 * Returns a valid access token, fetching one only if none is cached or the cached one has expired
+	 *
+	 * @param transport transport of the client, for the token request
+	 * @param tracer tracer of the client, null if it is not traced
+	 */
+	public String getAccessToken(Transport transport, Tracer tracer) throws Exception {
+		this.transport = transport;
+		this.tracer = tracer;
+		used = true;
+		Token current = token;
+		if (current != null && !current.isExpired()) {
+			return current.accessToken;
+		}
+		synchronized (this) {
+			current = token;
+			if (current == null || current.isExpired()) {
+				current = fetch();
+			}
+			return current.accessToken;
+		}
+	}
+
+	/**
+	 * Number of requests made to the token endpoint, for diagnostics and tests
+	 */
+	public synchronized int getFetchCount() {
+		return fetchCount;
+	}
+
+	private synchronized Token fetch() throws Exception {
+		Map<String, String> form = new LinkedHashMap<>();
+		String currentRefreshToken = refreshToken;
+		if (currentRefreshToken != null) {
+			form.put("grant_type", "refresh_token");
+			form.put("refresh_token", currentRefreshToken);
+		} else {
+			form.put("grant_type", "client_credentials");
+		}
+		if (scopes != null && !scopes.isEmpty()) {
+			form.put("scope", scopes);
+		}
+
+		Map<?, ?> response;
+		try {
+			response = post(form);
+		} catch (Exception e) {
+			if (currentRefreshToken == null || clientSecret == null) throw e;
+			// Refresh token was revoked or expired, fall back to the client credentials grant
+			refreshToken = null;
+			return fetch();
+		}
+
+		Object accessToken = response.get("access_token");
+		if (accessToken == null) {
+			throw CFMLEngineFactory.getInstance().getExceptionUtil().createApplicationException(
+				"Token endpoint [" + tokenUrl + "] returned no access_token");
+		}
+		long expiresIn = DEFAULT_EXPIRES_IN;
+		Object expires = response.get("expires_in");
+		if (expires instanceof Number) {
+			expiresIn = ((Number) expires).longValue();
+		} else if (expires != null) {
+			try {
+				expiresIn = Long.parseLong(expires.toString().trim());
+			} catch (NumberFormatException e) {
+				// keep default
+			}
+		}
+		Object newRefreshToken = response.get("refresh_token");
+		if (newRefreshToken != null) {
+			refreshToken = newRefreshToken.toString();
+		}
+
+		long now = System.currentTimeMillis();
+		Token fetched = new Token(accessToken.toString(), now + expiresIn * 1000, now + expiresIn * 1000 - expiryMargin(expiresIn * 1000));
+		token = fetched;
+		fetchCount++;
+		scheduleRefresh(fetched);
+		return fetched;
+	}
+
+	private Map<?, ?> post(Map<String, String> form) throws Exception {
+		StringBuilder body = new StringBuilder();
+		if (!basicAuth || clientSecret == null) {
+			form.put("client_id", clientId);
+			if (clientSecret != null) form.put("client_secret", clientSecret);
+		}
+		for (Map.Entry<String, String> entry : form.entrySet()) {
+			if (body.length() > 0) body.append('&');
+			body.append(URLEncoder.encode(entry.getKey(), "UTF-8")).append('=')
+				.append(URLEncoder.encode(entry.getValue(), "UTF-8"));
+		}
+
+		Map<String, String> headers = new HashMap<>();
+		headers.put("Content-Type", "application/x-www-form-urlencoded");
+		headers.put("Accept", "application/json");
+		if (basicAuth && clientSecret != null) {
+			String credentials = URLEncoder.encode(clientId, "UTF-8") + ":" + URLEncoder.encode(clientSecret, "UTF-8");
+			headers.put("Authorization", "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8)));
+		}
+
+		Tracer currentTracer = tracer;
+		Span span = currentTracer != null ? currentTracer.startSpan("oauth2 token", TraceContext.fromCurrentRequest()) : null;
+		try {
+			if (span != null) {
+				span.setAttribute("http.method", "POST");
+				span.setAttribute("http.url", tokenUrl);
+				headers.put("traceparent", span.getContext().toTraceparent());
+			}
+			TransportResponse response = transport.send(new TransportRequest("POST", new URL(tokenUrl), headers,
+				body.toString().getBytes(StandardCharsets.UTF_8), LuceeHttpUtil.CONNECT_TIMEOUT, LuceeHttpUtil.READ_TIMEOUT, span));
+			boolean consumed = false;
+			String text;
+			try {
+				InputStream is = response.getBody();
+				text = is != null ? read(is) : "";
+				consumed = true;
+			} finally {
+				response.release(consumed);
+			}
+			int status = response.getStatusCode();
+			if (span != null) {
+				span.setAttribute("http.status_code", status);
+			}
+			if (status >= 400) {
+				throw CFMLEngineFactory.getInstance().getExceptionUtil().createApplicationException(
+					"Token request to [" + tokenUrl + "] failed with HTTP " + status + ": " + text);
+			}
+			return MAPPER.readValue(text, Map.class);
+		} catch (Exception e) {
+			if (span != null) {
+				span.setAttribute("error", e.getClass().getName() + ": " + e.getMessage());
+			}
+			throw e;
+		} finally {
+			if (span != null) {
+				span.end();
+			}
+		}
+	}
+
+	/**
+	 * Time before expiry from which a token is no longer handed out: 10% of its lifetime, at most 30 seconds
+	 */
+	static long expiryMargin(long lifetimeMillis) {
+		return Math.min(MAX_EXPIRY_MARGIN, Math.max(lifetimeMillis, 0) / 10);
+	}
+
+	private static String read(InputStream is) throws IOException {
+		try (InputStream in = is) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+			return new String(out.toByteArray(), StandardCharsets.UTF_8);
+		}
+	}
+
+	private synchronized void scheduleRefresh(Token fetched) {
+		if (refreshScheduled) return;
+		long lifetime = fetched.expiresAt - System.currentTimeMillis();
+		// Never wait less than half the lifetime, so short-lived tokens are not refreshed constantly
+		long delay = Math.max(lifetime - refreshBefore, lifetime / 2);
+		refreshScheduled = true;
+		BackgroundScheduler.get().schedule(this::backgroundRefresh, Math.max(delay, 0), TimeUnit.MILLISECONDS);
+	}
+
+	private void backgroundRefresh() {
+		synchronized (this) {
+			refreshScheduled = false;
+			// Tokens nobody asked for during the last period are left to expire and fetched lazily on next use
+			if (!used || closed) return;
+			used = false;
+		}
+		try {
+			fetch();
+		} catch (Exception e) {
+			System.err.println("Warning: Background refresh of OAuth2 token from [" + tokenUrl + "] failed: " + e.getMessage());
+			Token current = token;
+			if (current != null && current.validUntil - System.currentTimeMillis() > RETRY_DELAY) {
+				synchronized (this) {
+					if (!refreshScheduled) {
+						refreshScheduled = true;
+						BackgroundScheduler.get().schedule(this::backgroundRefresh, RETRY_DELAY, TimeUnit.MILLISECONDS);
+					}
+				}
+			}
+		}
+	}
+
+	private static String hash(String secret) {
+		if (secret == null) return "";
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(secret.getBytes(StandardCharsets.UTF_8));
+			StringBuilder sb = new StringBuilder(digest.length * 2);
+			for (byte b : digest) {
+				sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			}
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			// Every JRE provides SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static class Token {
+		private final String accessToken;
+		private final long expiresAt;
+		private final long validUntil;
+
+		private Token(String accessToken, long expiresAt, long validUntil) {
+			this.accessToken = accessToken;
+			this.expiresAt = expiresAt;
+			this.validUntil = validUntil;
+		}
+
+		private boolean isExpired() {
+			return System.currentTimeMillis() >= validUntil;
+		}
+	}
+}
@@ -16,13 +16,13 @@ public class CreateOpenApiProxy extends FunctionSupport {
 	@Override
 	public Object invoke(PageContext pc, Object[] args) throws PageException {
 		if (args.length < 1 || args.length > 2) {
-			throw exp.createExpressionException("createOpenApiProxy requires 1 or 2 arguments [specUrl, options], but [" 
+			throw exp().createExpressionException("createOpenApiProxy requires 1 or 2 arguments [specUrl, options], but [" 
 				+ args.length + " ] arguments provided");
 		}
 		try {
 			return call(pc, args);
 		} catch (Exception e) {
-			throw exp.createApplicationException("Failed to create OpenAPI proxy: " + e.getMessage());
+			throw exp().createApplicationException("Failed to create OpenAPI proxy: " + e.getMessage());
 		}
 	}
 
@@ -8,13 +8,22 @@ import lucee.runtime.util.Excepton;
 
 public abstract class FunctionSupport extends BIF {
 	
-	static CFMLEngine eng;
-	static Cast cast;
-	static Excepton exp;
-
-	static {
-		eng = CFMLEngineFactory.getInstance();
-		cast=eng.getCastUtil();
-		exp=eng.getExceptionUtil();
+	// Resolved on first use instead of when Lucee loads the function classes
+	static CFMLEngine eng() {
+		return Engine.ENGINE;
+	}
+	
+	static Cast cast() {
+		return Engine.CAST;
+	}
+	
+	static Excepton exp() {
+		return Engine.EXP;
+	}
+	
+	private static final class Engine {
+		static final CFMLEngine ENGINE = CFMLEngineFactory.getInstance();
+		static final Cast CAST = ENGINE.getCastUtil();
+		static final Excepton EXP = ENGINE.getExceptionUtil();
 	}
 }
@@ -0,0 +1,21 @@
+package org.lucee.extension.openapi.jfr;
+
+/**
+ * Guards the use of the JFR event classes, so the extension still works on runtimes
+ * where jdk.jfr is not visible to the bundle
+ */
+public class JfrEvents {
+
+	public static final boolean AVAILABLE;
+
+	static {
+		boolean available;
+		try {
+			Class.forName("jdk.jfr.Event", false, JfrEvents.class.getClassLoader());
+			available = true;
+		} catch (Throwable t) {
+			available = false;
+		}
+		AVAILABLE = available;
+	}
+}
@@ -0,0 +1,48 @@
+package org.lucee.extension.openapi.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * One OpenAPI operation call, from argument binding to the returned response.
+ * Bodies are parsed after the call returns, their parsing is reported by OpenAPIResponseParseEvent.
+ */
+@Name("lucee.openapi.Call")
+@Label("OpenAPI Call")
+@Category({ "Lucee", "OpenAPI" })
+@Description("Invocation of an OpenAPI operation")
+@StackTrace(false)
+public class OpenAPICallEvent extends jdk.jfr.Event {
+
+	@Label("Operation Id")
+	public String operationId;
+
+	@Label("HTTP Method")
+	public String method;
+
+	@Label("Host")
+	public String host;
+
+	@Label("Status Code")
+	public int statusCode;
+
+	@Label("Request Bytes")
+	@DataAmount
+	public long requestBytes;
+
+	@Label("Response Bytes")
+	@DataAmount
+	public long responseBytes;
+
+	@Label("Serialize Duration")
+	@Timespan(Timespan.NANOSECONDS)
+	public long serializeDuration;
+
+	@Label("Error")
+	public String error;
+}
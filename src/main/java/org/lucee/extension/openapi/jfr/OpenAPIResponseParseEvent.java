@@ -0,0 +1,29 @@
+package org.lucee.extension.openapi.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Deferred parsing of a response body, which happens on first access to its data
+ */
+@Name("lucee.openapi.ResponseParse")
+@Label("OpenAPI Response Parse")
+@Category({ "Lucee", "OpenAPI" })
+@Description("Parsing of an OpenAPI response body")
+@StackTrace(false)
+public class OpenAPIResponseParseEvent extends jdk.jfr.Event {
+
+	@Label("Operation Id")
+	public String operationId;
+
+	@Label("Response Bytes")
+	@DataAmount
+	public long responseBytes;
+
+	@Label("JSON")
+	public boolean json;
+}
@@ -0,0 +1,30 @@
+package org.lucee.extension.openapi.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Loading and parsing of an OpenAPI specification
+ */
+@Name("lucee.openapi.SpecLoad")
+@Label("OpenAPI Spec Load")
+@Category({ "Lucee", "OpenAPI" })
+@Description("Loading of an OpenAPI specification and creation of its client")
+@StackTrace(false)
+public class OpenAPISpecLoadEvent extends jdk.jfr.Event {
+
+	@Label("Spec URL")
+	public String specUrl;
+
+	@Label("Operations")
+	public int operationCount;
+
+	@Label("Success")
+	public boolean success;
+
+	@Label("Error")
+	public String error;
+}
@@ -0,0 +1,125 @@
+package org.lucee.extension.openapi.json;
+
+import io.swagger.v3.oas.models.Components;
+import io.swagger.v3.oas.models.media.ArraySchema;
+import io.swagger.v3.oas.models.media.Schema;
+
+import org.lucee.extension.openapi.json.SchemaSerializer.AnyNode;
+import org.lucee.extension.openapi.json.SchemaSerializer.ArrayNode;
+import org.lucee.extension.openapi.json.SchemaSerializer.BooleanNode;
+import org.lucee.extension.openapi.json.SchemaSerializer.IntegerNode;
+import org.lucee.extension.openapi.json.SchemaSerializer.Node;
+import org.lucee.extension.openapi.json.SchemaSerializer.NumberNode;
+import org.lucee.extension.openapi.json.SchemaSerializer.ObjectNode;
+import org.lucee.extension.openapi.json.SchemaSerializer.RefNode;
+import org.lucee.extension.openapi.json.SchemaSerializer.StringNode;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds SchemaSerializers from swagger schemas. Kept apart from the serializer, so serializing
+ * a request body never loads the swagger model classes.
+ */
+public final class SchemaCompiler {
+
+	private static final String SCHEMA_REF_PREFIX = "#/components/schemas/";
+
+	private final Map<String, Schema> schemas;
+	private final Map<String, RefNode> refs = new HashMap<>();
+
+	private SchemaCompiler(Map<String, Schema> schemas) {
+		this.schemas = schemas;
+	}
+
+	/**
+	 * Compiles a serializer for a schema; $refs are resolved against the components of the spec
+	 */
+	public static SchemaSerializer compile(Schema<?> schema, Components components) {
+		Map<String, Schema> schemas = components != null && components.getSchemas() != null
+			? components.getSchemas() : new HashMap<>();
+		return new SchemaSerializer(new SchemaCompiler(schemas).compile(schema));
+	}
+
+	private Node compile(Schema<?> schema) {
+		if (schema == null) return AnyNode.INSTANCE;
+		if (schema.get$ref() != null) {
+			return compileRef(schema.get$ref());
+		}
+		if (schema.getAllOf() != null && !schema.getAllOf().isEmpty()) {
+			// Properties of all parts together make up the object
+			ObjectNode merged = new ObjectNode();
+			addProperties(merged, schema, 0);
+			return merged;
+		}
+
+		String type = schema.getType();
+		if (type == null && schema.getTypes() != null && schema.getTypes().size() == 1) {
+			// OpenAPI 3.1 declares types as a set
+			type = schema.getTypes().iterator().next();
+		}
+		if (type == null) {
+			if (schema.getProperties() != null) type = "object";
+			else if (schema.getItems() != null) type = "array";
+			else return AnyNode.INSTANCE;
+		}
+		switch (type) {
+			case "object":
+				ObjectNode object = new ObjectNode();
+				addProperties(object, schema, 0);
+				return object;
+			case "array":
+				Schema<?> items = schema instanceof ArraySchema ? ((ArraySchema) schema).getItems() : schema.getItems();
+				return new ArrayNode(compile(items));
+			case "integer":
+				return IntegerNode.INSTANCE;
+			case "number":
+				return NumberNode.INSTANCE;
+			case "boolean":
+				return BooleanNode.INSTANCE;
+			case "string":
+				if ("date".equals(schema.getFormat())) return StringNode.DATE;
+				if ("date-time".equals(schema.getFormat())) return StringNode.DATE_TIME;
+				return StringNode.PLAIN;
+			default:
+				return AnyNode.INSTANCE;
+		}
+	}
+
+	private Node compileRef(String ref) {
+		RefNode node = refs.get(ref);
+		if (node != null) return node;
+		// Registered before compiling the target, so recursive schemas terminate
+		node = new RefNode();
+		refs.put(ref, node);
+		Schema<?> target = ref.startsWith(SCHEMA_REF_PREFIX) ? schemas.get(ref.substring(SCHEMA_REF_PREFIX.length())) : null;
+		node.target = target != null ? compile(target) : AnyNode.INSTANCE;
+		return node;
+	}
+
+	private Schema<?> resolve(Schema<?> schema) {
+		int depth = 0;
+		while (schema != null && schema.get$ref() != null && depth++ < 16) {
+			String ref = schema.get$ref();
+			schema = ref.startsWith(SCHEMA_REF_PREFIX) ? schemas.get(ref.substring(SCHEMA_REF_PREFIX.length())) : null;
+		}
+		return schema;
+	}
+
+	private void addProperties(ObjectNode object, Schema<?> schema, int depth) {
+		if (schema == null || depth > 16) return;
+		if (schema.getAllOf() != null) {
+			for (Schema<?> part : schema.getAllOf()) {
+				addProperties(object, resolve(part), depth + 1);
+			}
+		}
+		if (schema.getProperties() != null) {
+			for (Map.Entry<String, Schema> entry : schema.getProperties().entrySet()) {
+				object.add(entry.getKey(), compile(entry.getValue()));
+			}
+		}
+		if (schema.getAdditionalProperties() instanceof Schema) {
+			object.additional = compile((Schema<?>) schema.getAdditionalProperties());
+		}
+	}
+}
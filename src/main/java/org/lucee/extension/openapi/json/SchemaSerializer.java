@@ -0,0 +1,404 @@
+package org.lucee.extension.openapi.json;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lucee.runtime.type.Array;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JSON serializer for request bodies, compiled once per operation from its requestBody schema by SchemaCompiler.
+ * Walks Lucee structs and arrays directly and writes each declared property in its schema type,
+ * so CFML values like "42" go out as 42 for integer properties. Struct keys are matched to
+ * properties case-insensitively and written with the declared name, whose encoding is cached.
+ * Values without a matching schema are written as they are.
+ */
+public final class SchemaSerializer {
+
+	private static final JsonFactory FACTORY = new JsonFactory();
+
+	private final Node root;
+
+	SchemaSerializer(Node root) {
+		this.root = root;
+	}
+
+	/**
+	 * Serializes a value to UTF-8 JSON
+	 */
+	public byte[] serialize(Object value) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+		try (JsonGenerator generator = FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+			root.write(generator, value);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Flattens the serializer into plain maps for the spec index. The root is the first entry,
+	 * nodes refer to each other by position, so recursive schemas are kept as they are.
+	 */
+	public List<Map<String, Object>> toGraph() {
+		List<Map<String, Object>> graph = new ArrayList<>();
+		encode(root, graph, new IdentityHashMap<>());
+		return graph;
+	}
+
+	/**
+	 * Rebuilds a serializer from the output of toGraph()
+	 *
+	 * @throws IOException if the graph is malformed
+	 */
+	public static SchemaSerializer fromGraph(List<?> graph) throws IOException {
+		return new SchemaSerializer(decode(graph, 0, new Node[graph.size()], new boolean[graph.size()]));
+	}
+
+	private static int encode(Node node, List<Map<String, Object>> graph, Map<Node, Integer> ids) {
+		Integer id = ids.get(node);
+		if (id != null) return id;
+		id = graph.size();
+		ids.put(node, id);
+		Map<String, Object> entry = new LinkedHashMap<>();
+		graph.add(entry);
+		if (node instanceof RefNode) {
+			entry.put("type", "ref");
+			entry.put("target", encode(((RefNode) node).target, graph, ids));
+		} else if (node instanceof ObjectNode) {
+			ObjectNode object = (ObjectNode) node;
+			Map<String, Object> properties = new LinkedHashMap<>();
+			for (Property property : object.properties.values()) {
+				properties.put(property.name.getValue(), encode(property.node, graph, ids));
+			}
+			entry.put("type", "object");
+			entry.put("properties", properties);
+			entry.put("additional", encode(object.additional, graph, ids));
+		} else if (node instanceof ArrayNode) {
+			entry.put("type", "array");
+			entry.put("items", encode(((ArrayNode) node).items, graph, ids));
+		} else if (node instanceof IntegerNode) {
+			entry.put("type", "integer");
+		} else if (node instanceof NumberNode) {
+			entry.put("type", "number");
+		} else if (node instanceof BooleanNode) {
+			entry.put("type", "boolean");
+		} else if (node instanceof StringNode) {
+			entry.put("type", "string");
+			entry.put("format", ((StringNode) node).format);
+		} else {
+			entry.put("type", "any");
+		}
+		return id;
+	}
+
+	private static Node decode(List<?> graph, Object index, Node[] nodes, boolean[] pending) throws IOException {
+		int id = index instanceof Number ? ((Number) index).intValue() : -1;
+		if (id < 0 || id >= graph.size() || !(graph.get(id) instanceof Map)) {
+			throw new IOException("Invalid schema node reference [" + index + "]");
+		}
+		if (nodes[id] != null) return nodes[id];
+		// Only refs and objects are registered before their children, anything else must not loop
+		if (pending[id]) throw new IOException("Schema node [" + id + "] contains itself");
+		pending[id] = true;
+
+		Map<?, ?> entry = (Map<?, ?>) graph.get(id);
+		String type = String.valueOf(entry.get("type"));
+		switch (type) {
+			case "ref":
+				RefNode ref = new RefNode();
+				nodes[id] = ref;
+				ref.target = decode(graph, entry.get("target"), nodes, pending);
+				return ref;
+			case "object":
+				ObjectNode object = new ObjectNode();
+				nodes[id] = object;
+				if (entry.get("properties") instanceof Map) {
+					for (Map.Entry<?, ?> property : ((Map<?, ?>) entry.get("properties")).entrySet()) {
+						object.add(String.valueOf(property.getKey()), decode(graph, property.getValue(), nodes, pending));
+					}
+				}
+				object.additional = decode(graph, entry.get("additional"), nodes, pending);
+				return object;
+			case "array":
+				return nodes[id] = new ArrayNode(decode(graph, entry.get("items"), nodes, pending));
+			case "integer":
+				return nodes[id] = IntegerNode.INSTANCE;
+			case "number":
+				return nodes[id] = NumberNode.INSTANCE;
+			case "boolean":
+				return nodes[id] = BooleanNode.INSTANCE;
+			case "string":
+				Object format = entry.get("format");
+				return nodes[id] = "date".equals(format) ? StringNode.DATE
+					: "date-time".equals(format) ? StringNode.DATE_TIME : StringNode.PLAIN;
+			case "any":
+				return nodes[id] = AnyNode.INSTANCE;
+			default:
+				throw new IOException("Unknown schema node type [" + type + "]");
+		}
+	}
+
+	abstract static class Node {
+		abstract void write(JsonGenerator generator, Object value) throws IOException;
+	}
+
+	static final class RefNode extends Node {
+		Node target;
+
+		@Override
+		void write(JsonGenerator generator, Object value) throws IOException {
+			target.write(generator, value);
+		}
+	}
+
+	private static final class Property {
+		private final SerializedString name;
+		private final Node node;
+
+		private Property(String name, Node node) {
+			this.name = new SerializedString(name);
+			this.node = node;
+		}
+	}
+
+	static final class ObjectNode extends Node {
+		// In declaration order, which decides between properties that differ only in case
+		private final Map<String, Property> properties = new LinkedHashMap<>();
+		private final Map<String, Property> propertiesLowerCase = new HashMap<>();
+		Node additional = AnyNode.INSTANCE;
+
+		void add(String name, Node node) {
+			Property property = new Property(name, node);
+			properties.put(name, property);
+			propertiesLowerCase.putIfAbsent(name.toLowerCase(), property);
+		}
+
+		@Override
+		void write(JsonGenerator generator, Object value) throws IOException {
+			if (!(value instanceof Map)) {
+				AnyNode.INSTANCE.write(generator, value);
+				return;
+			}
+			generator.writeStartObject();
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				String key = String.valueOf(entry.getKey());
+				Property property = properties.get(key);
+				if (property == null) {
+					// CFML upper-cases unquoted struct keys
+					property = propertiesLowerCase.get(key.toLowerCase());
+				}
+				if (property != null) {
+					generator.writeFieldName(property.name);
+					property.node.write(generator, entry.getValue());
+				} else {
+					generator.writeFieldName(key);
+					additional.write(generator, entry.getValue());
+				}
+			}
+			generator.writeEndObject();
+		}
+	}
+
+	static final class ArrayNode extends Node {
+		private final Node items;
+
+		ArrayNode(Node items) {
+			this.items = items;
+		}
+
+		@Override
+		void write(JsonGenerator generator, Object value) throws IOException {
+			Iterator<?> it = iterator(value);
+			if (it == null) {
+				AnyNode.INSTANCE.write(generator, value);
+				return;
+			}
+			generator.writeStartArray();
+			while (it.hasNext()) {
+				items.write(generator, it.next());
+			}
+			generator.writeEndArray();
+		}
+	}
+
+	static final class IntegerNode extends Node {
+		static final IntegerNode INSTANCE = new IntegerNode();
+
+		@Override
+		void write(JsonGenerator generator, Object value) throws IOException {
+			if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+				generator.writeNumber(((Number) value).longValue());
+				return;
+			}
+			if (value instanceof BigInteger) {
+				generator.writeNumber((BigInteger) value);
+				return;
+			}
+			BigDecimal number = toBigDecimal(value);
+			if (number != null && number.stripTrailingZeros().scale() <= 0) {
+				generator.writeNumber(number.toBigIntegerExact());
+				return;
+			}
+			// Not a whole number, leave the complaint to the server
+			AnyNode.INSTANCE.write(generator, value);
+		}
+	}
+
+	static final class NumberNode extends Node {
+		static final NumberNode INSTANCE = new NumberNode();
+
+		@Override
+		void write(JsonGenerator generator, Object value) throws IOException {
+			if (value instanceof Number || value == null) {
+				AnyNode.INSTANCE.write(generator, value);
+				return;
+			}
+			BigDecimal number = toBigDecimal(value);
+			if (number != null) {
+				generator.writeNumber(number);
+			} else {
+				AnyNode.INSTANCE.write(generator, value);
+			}
+		}
+	}
+
+	static final class BooleanNode extends Node {
+		static final BooleanNode INSTANCE = new BooleanNode();
+
+		@Override
+		void write(JsonGenerator generator, Object value) throws IOException {
+			if (value instanceof Boolean) {
+				generator.writeBoolean((Boolean) value);
+			} else if (value instanceof Number) {
+				generator.writeBoolean(((Number) value).doubleValue() != 0);
+			} else if (value instanceof CharSequence) {
+				String str = value.toString().trim();
+				if ("true".equalsIgnoreCase(str) || "yes".equalsIgnoreCase(str)) generator.writeBoolean(true);
+				else if ("false".equalsIgnoreCase(str) || "no".equalsIgnoreCase(str)) generator.writeBoolean(false);
+				else generator.writeString(str);
+			} else {
+				AnyNode.INSTANCE.write(generator, value);
+			}
+		}
+	}
+
+	static final class StringNode extends Node {
+		static final StringNode PLAIN = new StringNode(null);
+		static final StringNode DATE = new StringNode("date");
+		static final StringNode DATE_TIME = new StringNode("date-time");
+
+		// The format name rather than its formatter, so the spec index can store it
+		private final String format;
+
+		private StringNode(String format) {
+			this.format = format;
+		}
+
+		@Override
+		void write(JsonGenerator generator, Object value) throws IOException {
+			if (value == null) {
+				generator.writeNull();
+			} else if (value instanceof CharSequence) {
+				generator.writeString(value.toString());
+			} else if (value instanceof Date) {
+				DateTimeFormatter formatter = "date".equals(format) ? DateTimeFormatter.ISO_LOCAL_DATE : DateTimeFormatter.ISO_OFFSET_DATE_TIME;
+				generator.writeString(formatter.format(((Date) value).toInstant().atZone(ZoneId.systemDefault())));
+			} else if (value instanceof Double || value instanceof Float) {
+				// CFML numbers are doubles, 42 should not become "42.0"
+				double d = ((Number) value).doubleValue();
+				generator.writeString(d == Math.rint(d) && !Double.isInfinite(d) && Math.abs(d) < 1e15
+					? Long.toString((long) d) : BigDecimal.valueOf(d).toPlainString());
+			} else if (value instanceof Number || value instanceof Boolean || value instanceof Character) {
+				generator.writeString(value.toString());
+			} else {
+				AnyNode.INSTANCE.write(generator, value);
+			}
+		}
+	}
+
+	/**
+	 * Untyped values: collections are walked directly, everything else is written as Jackson would
+	 */
+	static final class AnyNode extends Node {
+		static final AnyNode INSTANCE = new AnyNode();
+
+		@Override
+		void write(JsonGenerator generator, Object value) throws IOException {
+			if (value == null) {
+				generator.writeNull();
+			} else if (value instanceof String) {
+				generator.writeString((String) value);
+			} else if (value instanceof Boolean) {
+				generator.writeBoolean((Boolean) value);
+			} else if (value instanceof Integer || value instanceof Long) {
+				generator.writeNumber(((Number) value).longValue());
+			} else if (value instanceof Double) {
+				generator.writeNumber((Double) value);
+			} else if (value instanceof Map) {
+				generator.writeStartObject();
+				for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+					generator.writeFieldName(String.valueOf(entry.getKey()));
+					write(generator, entry.getValue());
+				}
+				generator.writeEndObject();
+			} else {
+				Iterator<?> it = iterator(value);
+				if (it != null) {
+					generator.writeStartArray();
+					while (it.hasNext()) {
+						write(generator, it.next());
+					}
+					generator.writeEndArray();
+				} else {
+					MapperHolder.MAPPER.writeValue(generator, value);
+				}
+			}
+		}
+	}
+
+	// Only values of types the nodes do not know need databind, load it when the first one shows up
+	private static final class MapperHolder {
+		static final ObjectMapper MAPPER = new ObjectMapper();
+	}
+
+	private static Iterator<?> iterator(Object value) {
+		if (value instanceof Array) return ((Array) value).valueIterator();
+		if (value instanceof Collection) return ((Collection<?>) value).iterator();
+		if (value instanceof Object[]) return java.util.Arrays.asList((Object[]) value).iterator();
+		return null;
+	}
+
+	private static BigDecimal toBigDecimal(Object value) {
+		try {
+			if (value instanceof BigDecimal) return (BigDecimal) value;
+			if (value instanceof Number) {
+				double d = ((Number) value).doubleValue();
+				return Double.isNaN(d) || Double.isInfinite(d) ? null : BigDecimal.valueOf(d);
+			}
+			if (value instanceof CharSequence) {
+				String str = value.toString().trim();
+				return str.isEmpty() ? null : new BigDecimal(str);
+			}
+		} catch (NumberFormatException e) {
+			// not numeric
+		}
+		return null;
+	}
+}
@@ -0,0 +1,132 @@
+package org.lucee.extension.openapi.spec;
+
+import org.lucee.extension.openapi.json.SchemaSerializer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, compiled form of an OpenAPI operation holding only what invocation and introspection need.
+ * Descriptors carry no client state and are shared by all clients built from the same spec content.
+ */
+public final class OperationDescriptor {
+
+	private final String operationId;
+	private final String httpMethod;
+	private final String path;
+	private final String summary;
+	private final String description;
+	private final List<ParameterDescriptor> parameters;
+	private final List<ParameterDescriptor> pathParameters;
+	private final List<ParameterDescriptor> queryParameters;
+	private final List<ParameterDescriptor> headerParameters;
+	private final boolean hasBody;
+	private final boolean bodyRequired;
+	private final SchemaSerializer bodySerializer;
+	private final String binaryContentType;
+	private final List<Map<String, List<String>>> security;
+
+	/**
+	 * @param binaryContentType declared content type if all success responses are binary, otherwise null
+	 * @param security security requirements of the operation, null if it inherits the global ones
+	 * @param bodySerializer serializer compiled from the JSON requestBody schema, null if there is none
+	 */
+	public OperationDescriptor(String operationId, String httpMethod, String path, String summary, String description,
+			List<ParameterDescriptor> parameters, boolean hasBody, boolean bodyRequired, String binaryContentType,
+			List<Map<String, List<String>>> security, SchemaSerializer bodySerializer) {
+		this.operationId = operationId;
+		this.httpMethod = httpMethod.intern();
+		this.path = path;
+		this.summary = summary != null ? summary : "";
+		this.description = description != null ? description : "";
+		this.parameters = parameters != null && !parameters.isEmpty()
+			? Collections.unmodifiableList(new ArrayList<>(parameters)) : Collections.emptyList();
+		this.pathParameters = filter(this.parameters, "path");
+		this.queryParameters = filter(this.parameters, "query");
+		this.headerParameters = filter(this.parameters, "header");
+		this.hasBody = hasBody;
+		this.bodyRequired = bodyRequired;
+		this.bodySerializer = bodySerializer;
+		this.binaryContentType = binaryContentType;
+		this.security = security;
+	}
+
+	private static List<ParameterDescriptor> filter(List<ParameterDescriptor> parameters, String in) {
+		List<ParameterDescriptor> result = null;
+		for (ParameterDescriptor parameter : parameters) {
+			if (in.equals(parameter.getIn())) {
+				if (result == null) result = new ArrayList<>();
+				result.add(parameter);
+			}
+		}
+		return result != null ? Collections.unmodifiableList(result) : Collections.emptyList();
+	}
+
+	public String getOperationId() {
+		return operationId;
+	}
+
+	public String getHttpMethod() {
+		return httpMethod;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public String getSummary() {
+		return summary;
+	}
+
+	public String getDescription() {
+		return description;
+	}
+
+	/**
+	 * All parameters in declaration order, which is also the order of positional arguments
+	 */
+	public List<ParameterDescriptor> getParameters() {
+		return parameters;
+	}
+
+	public List<ParameterDescriptor> getPathParameters() {
+		return pathParameters;
+	}
+
+	public List<ParameterDescriptor> getQueryParameters() {
+		return queryParameters;
+	}
+
+	public List<ParameterDescriptor> getHeaderParameters() {
+		return headerParameters;
+	}
+
+	public boolean hasParameter(String name) {
+		for (ParameterDescriptor parameter : parameters) {
+			if (parameter.getName().equals(name)) return true;
+		}
+		return false;
+	}
+
+	public boolean hasBody() {
+		return hasBody;
+	}
+
+	public boolean isBodyRequired() {
+		return bodyRequired;
+	}
+
+	public SchemaSerializer getBodySerializer() {
+		return bodySerializer;
+	}
+
+	public String getBinaryContentType() {
+		return binaryContentType;
+	}
+
+	public List<Map<String, List<String>>> getSecurity() {
+		return security;
+	}
+}
@@ -0,0 +1,48 @@
+package org.lucee.extension.openapi.spec;
+
+/**
+ * Immutable description of an operation parameter
+ */
+public final class ParameterDescriptor {
+
+	private final String name;
+	private final String in;
+	private final boolean required;
+	private final String description;
+	private final String type;
+
+	public ParameterDescriptor(String name, String in, boolean required, String description, String type) {
+		this.name = name;
+		// Locations and types come from a tiny vocabulary, share the instances
+		this.in = in != null ? in.intern() : "query";
+		this.required = required;
+		this.description = description != null ? description : "";
+		this.type = type != null ? type.intern() : "";
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Parameter location: path, query, header or cookie
+	 */
+	public String getIn() {
+		return in;
+	}
+
+	public boolean isRequired() {
+		return required;
+	}
+
+	public String getDescription() {
+		return description;
+	}
+
+	/**
+	 * Schema type of the parameter, empty if not declared
+	 */
+	public String getType() {
+		return type;
+	}
+}
@@ -0,0 +1,70 @@
+package org.lucee.extension.openapi.spec;
+
+/**
+ * Immutable description of a security scheme, reduced to what is needed to apply credentials
+ */
+public final class SecuritySchemeDescriptor {
+
+	public static final String TYPE_API_KEY = "apiKey";
+	public static final String TYPE_HTTP = "http";
+	public static final String TYPE_OAUTH2 = "oauth2";
+	public static final String TYPE_OPENID_CONNECT = "openIdConnect";
+
+	private final String type;
+	private final String name;
+	private final String in;
+	private final String scheme;
+	private final String clientCredentialsTokenUrl;
+	private final String tokenUrl;
+	private final String refreshUrl;
+
+	/**
+	 * @param clientCredentialsTokenUrl token URL of the client credentials flow, if declared
+	 * @param tokenUrl token URL of the first other flow (authorization code or password), if declared
+	 * @param refreshUrl refresh URL of any flow, if declared
+	 */
+	public SecuritySchemeDescriptor(String type, String name, String in, String scheme,
+			String clientCredentialsTokenUrl, String tokenUrl, String refreshUrl) {
+		this.type = type;
+		this.name = name;
+		this.in = in;
+		this.scheme = scheme;
+		this.clientCredentialsTokenUrl = clientCredentialsTokenUrl;
+		this.tokenUrl = tokenUrl;
+		this.refreshUrl = refreshUrl;
+	}
+
+	public String getType() {
+		return type;
+	}
+
+	/**
+	 * Header, query or cookie name of an apiKey scheme
+	 */
+	public String getName() {
+		return name;
+	}
+
+	public String getIn() {
+		return in;
+	}
+
+	/**
+	 * Authorization scheme of an http scheme, e.g. bearer or basic
+	 */
+	public String getScheme() {
+		return scheme;
+	}
+
+	public String getClientCredentialsTokenUrl() {
+		return clientCredentialsTokenUrl;
+	}
+
+	public String getTokenUrl() {
+		return tokenUrl;
+	}
+
+	public String getRefreshUrl() {
+		return refreshUrl;
+	}
+}
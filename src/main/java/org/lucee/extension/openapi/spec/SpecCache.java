@@ -0,0 +1,109 @@
+package org.lucee.extension.openapi.spec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Process-wide cache of compiled specs keyed by a hash of the spec source, so identical specs
+ * loaded by different applications share one set of descriptors. Entries are weakly referenced
+ * and disappear once no client uses them anymore. Behind it, SpecIndex keeps compiled specs on disk,
+ * and swagger-parser is only loaded, through SpecCompiler, for content neither of them holds.
+ */
+public class SpecCache {
+
+	// A $ref that does not start with # points to another document, resolved relative to the spec location
+	private static final Pattern EXTERNAL_REF = Pattern.compile("\\$ref[\"']?\\s*:\\s*[\"']?(?!#)[^\\s\"']");
+
+	private static final Map<String, WeakReference<SpecDescriptor>> CACHE = new ConcurrentHashMap<>();
+
+	/**
+	 * Returns the compiled spec for a URL or file path, parsing it only if no client holds the same content already
+	 */
+	public static SpecDescriptor load(String location) throws Exception {
+		String content;
+		try {
+			content = read(location);
+		} catch (Exception e) {
+			// Leave the error reporting to the parser
+			return SpecCompiler.parseAndCompile(location, null, null);
+		}
+
+		String hash = hash(content);
+		// Relative references make the result depend on where the document lives
+		boolean external = EXTERNAL_REF.matcher(content).find();
+		String key = external ? hash + "@" + location : hash;
+
+		SpecDescriptor spec = get(key);
+		if (spec != null) return spec;
+		synchronized (SpecCache.class) {
+			spec = get(key);
+			if (spec == null) {
+				// Referenced documents may change without the spec changing, those are only cached in memory
+				spec = external ? null : SpecIndex.read(key, location);
+				if (spec == null) {
+					spec = SpecCompiler.parseAndCompile(location, content, hash);
+					if (!external) SpecIndex.write(key, location, spec);
+				}
+				CACHE.put(key, new WeakReference<>(spec));
+			}
+			return spec;
+		}
+	}
+
+	private static SpecDescriptor get(String key) {
+		WeakReference<SpecDescriptor> ref = CACHE.get(key);
+		SpecDescriptor spec = ref != null ? ref.get() : null;
+		if (ref != null && spec == null) {
+			CACHE.remove(key, ref);
+		}
+		return spec;
+	}
+
+	/**
+	 * Number of live cached specs, for diagnostics and tests
+	 */
+	public static int size() {
+		CACHE.entrySet().removeIf(entry -> entry.getValue().get() == null);
+		return CACHE.size();
+	}
+
+	public static void clear() {
+		CACHE.clear();
+	}
+
+	private static String read(String location) throws Exception {
+		byte[] bytes;
+		if (location.contains("://") || location.startsWith("file:")) {
+			try (InputStream is = new URL(location).openStream()) {
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				byte[] buffer = new byte[8192];
+				int read;
+				while ((read = is.read(buffer)) != -1) {
+					out.write(buffer, 0, read);
+				}
+				bytes = out.toByteArray();
+			}
+		} else {
+			bytes = Files.readAllBytes(Paths.get(location));
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static String hash(String content) throws Exception {
+		byte[] digest = MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+		StringBuilder sb = new StringBuilder(digest.length * 2);
+		for (byte b : digest) {
+			sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,234 @@
+package org.lucee.extension.openapi.spec;
+
+import io.swagger.v3.oas.models.Components;
+import io.swagger.v3.oas.models.OpenAPI;
+import io.swagger.v3.oas.models.Operation;
+import io.swagger.v3.oas.models.PathItem;
+import io.swagger.v3.oas.models.media.Content;
+import io.swagger.v3.oas.models.media.MediaType;
+import io.swagger.v3.oas.models.parameters.Parameter;
+import io.swagger.v3.oas.models.parameters.RequestBody;
+import io.swagger.v3.oas.models.responses.ApiResponse;
+import io.swagger.v3.oas.models.security.OAuthFlow;
+import io.swagger.v3.oas.models.security.OAuthFlows;
+import io.swagger.v3.oas.models.security.SecurityRequirement;
+import io.swagger.v3.oas.models.security.SecurityScheme;
+import io.swagger.v3.oas.models.servers.Server;
+import io.swagger.v3.parser.OpenAPIV3Parser;
+import io.swagger.v3.parser.core.models.SwaggerParseResult;
+
+import org.lucee.extension.openapi.json.SchemaCompiler;
+import org.lucee.extension.openapi.json.SchemaSerializer;
+import org.lucee.extension.openapi.util.LuceeHttpUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses specs and compiles the swagger model into descriptors. This is the only place that
+ * needs swagger-parser, its classes are loaded on the first spec that is not in the SpecCache.
+ */
+public class SpecCompiler {
+
+	/**
+	 * Parses and compiles a spec
+	 *
+	 * @param content source of the spec, read from the location if null
+	 * @param contentHash hash of the spec source, may be null
+	 */
+	public static SpecDescriptor parseAndCompile(String location, String content, String contentHash) throws Exception {
+		return compile(parse(location, content), contentHash);
+	}
+
+	/**
+	 * Parses a spec; relative $refs are resolved against the location
+	 *
+	 * @param content source of the spec, read from the location if null
+	 */
+	public static OpenAPI parse(String location, String content) throws Exception {
+		OpenAPIV3Parser parser = new OpenAPIV3Parser();
+		SwaggerParseResult result = content != null
+			? parser.readContents(content, null, null, location)
+			: parser.readLocation(location, null, null);
+
+		if (result == null || result.getOpenAPI() == null) {
+			throw new Exception("Failed to parse OpenAPI specification from: " + location);
+		}
+		return result.getOpenAPI();
+	}
+
+	/**
+	 * Compiles all operations and security settings of a spec
+	 *
+	 * @param contentHash hash of the spec source, may be null
+	 */
+	public static SpecDescriptor compile(OpenAPI openAPI, String contentHash) {
+		Map<String, OperationDescriptor> operations = new LinkedHashMap<>();
+		if (openAPI.getPaths() != null) {
+			for (Map.Entry<String, PathItem> pathEntry : openAPI.getPaths().entrySet()) {
+				String path = pathEntry.getKey();
+				PathItem pathItem = pathEntry.getValue();
+
+				addOperation(operations, "GET", path, pathItem.getGet(), openAPI.getComponents());
+				addOperation(operations, "POST", path, pathItem.getPost(), openAPI.getComponents());
+				addOperation(operations, "PUT", path, pathItem.getPut(), openAPI.getComponents());
+				addOperation(operations, "DELETE", path, pathItem.getDelete(), openAPI.getComponents());
+				addOperation(operations, "PATCH", path, pathItem.getPatch(), openAPI.getComponents());
+				addOperation(operations, "HEAD", path, pathItem.getHead(), openAPI.getComponents());
+				addOperation(operations, "OPTIONS", path, pathItem.getOptions(), openAPI.getComponents());
+			}
+		}
+
+		List<String> serverUrls = new ArrayList<>();
+		if (openAPI.getServers() != null) {
+			for (Server server : openAPI.getServers()) {
+				if (server.getUrl() != null) serverUrls.add(server.getUrl());
+			}
+		}
+
+		Map<String, SecuritySchemeDescriptor> schemes = new LinkedHashMap<>();
+		if (openAPI.getComponents() != null && openAPI.getComponents().getSecuritySchemes() != null) {
+			for (Map.Entry<String, SecurityScheme> entry : openAPI.getComponents().getSecuritySchemes().entrySet()) {
+				schemes.put(entry.getKey(), compileSecurityScheme(entry.getValue()));
+			}
+		}
+
+		return new SpecDescriptor(contentHash, serverUrls, operations, schemes, compileSecurity(openAPI.getSecurity()));
+	}
+
+	private static void addOperation(Map<String, OperationDescriptor> operations, String httpMethod, String path,
+			Operation operation, Components components) {
+		if (operation == null) return;
+
+		String operationId = operation.getOperationId();
+		if (operationId == null || operationId.isEmpty()) {
+			// Generate operation ID if not provided
+			operationId = generateOperationId(httpMethod, path);
+		}
+		operations.put(operationId.toLowerCase(), compileOperation(operationId, httpMethod, path, operation, components));
+	}
+
+	/**
+	 * Compiles a single operation
+	 *
+	 * @param components components of the spec to resolve $refs against, may be null
+	 */
+	public static OperationDescriptor compileOperation(String operationId, String httpMethod, String path,
+			Operation operation, Components components) {
+		List<ParameterDescriptor> parameters = new ArrayList<>();
+		if (operation.getParameters() != null) {
+			for (Parameter param : operation.getParameters()) {
+				parameters.add(new ParameterDescriptor(
+					param.getName(),
+					param.getIn(),
+					Boolean.TRUE.equals(param.getRequired()),
+					param.getDescription(),
+					param.getSchema() != null ? param.getSchema().getType() : null));
+			}
+		}
+		RequestBody requestBody = resolveRequestBody(operation.getRequestBody(), components);
+		boolean hasBody = operation.getRequestBody() != null;
+		boolean bodyRequired = requestBody != null && Boolean.TRUE.equals(requestBody.getRequired());
+
+		return new OperationDescriptor(operationId, httpMethod, path, operation.getSummary(), operation.getDescription(),
+			parameters, hasBody, bodyRequired, findBinaryResponseType(operation), compileSecurity(operation.getSecurity()),
+			compileBodySerializer(requestBody, components));
+	}
+
+	private static RequestBody resolveRequestBody(RequestBody requestBody, Components components) {
+		if (requestBody == null || requestBody.get$ref() == null) return requestBody;
+		String ref = requestBody.get$ref();
+		String name = ref.substring(ref.lastIndexOf('/') + 1);
+		if (components == null || components.getRequestBodies() == null) return null;
+		return components.getRequestBodies().get(name);
+	}
+
+	/**
+	 * Serializer for the JSON media type of the request body, null if the body is not JSON or has no schema
+	 */
+	private static SchemaSerializer compileBodySerializer(RequestBody requestBody, Components components) {
+		if (requestBody == null || requestBody.getContent() == null) return null;
+		MediaType mediaType = requestBody.getContent().get("application/json");
+		if (mediaType == null) {
+			for (Map.Entry<String, MediaType> entry : requestBody.getContent().entrySet()) {
+				if (entry.getKey().contains("json")) {
+					mediaType = entry.getValue();
+					break;
+				}
+			}
+		}
+		if (mediaType == null || mediaType.getSchema() == null) return null;
+		return SchemaCompiler.compile(mediaType.getSchema(), components);
+	}
+
+	private static String generateOperationId(String httpMethod, String path) {
+		// Convert /users/{id} to getUsersById
+		String cleanPath = path.replaceAll("\\{([^}]+)\\}", "By$1")
+							  .replaceAll("[^a-zA-Z0-9]", "");
+		return httpMethod.toLowerCase() +
+			   cleanPath.substring(0, 1).toUpperCase() +
+			   cleanPath.substring(1);
+	}
+
+	/**
+	 * Returns the declared content type if all success responses of the operation are binary, otherwise null
+	 */
+	private static String findBinaryResponseType(Operation operation) {
+		if (operation.getResponses() == null) return null;
+
+		String binaryType = null;
+		for (Map.Entry<String, ApiResponse> entry : operation.getResponses().entrySet()) {
+			if (!entry.getKey().startsWith("2")) continue;
+			Content content = entry.getValue().getContent();
+			if (content == null) continue;
+			for (String contentType : content.keySet()) {
+				if (!LuceeHttpUtil.isBinaryContentType(contentType)) {
+					return null;
+				}
+				if (binaryType == null) {
+					binaryType = contentType;
+				}
+			}
+		}
+		return binaryType;
+	}
+
+	private static List<Map<String, List<String>>> compileSecurity(List<SecurityRequirement> requirements) {
+		if (requirements == null) return null;
+		List<Map<String, List<String>>> result = new ArrayList<>(requirements.size());
+		for (SecurityRequirement requirement : requirements) {
+			Map<String, List<String>> schemes = new LinkedHashMap<>();
+			for (Map.Entry<String, List<String>> entry : requirement.entrySet()) {
+				schemes.put(entry.getKey(), entry.getValue() != null
+					? Collections.unmodifiableList(new ArrayList<>(entry.getValue())) : Collections.emptyList());
+			}
+			result.add(Collections.unmodifiableMap(schemes));
+		}
+		return Collections.unmodifiableList(result);
+	}
+
+	private static SecuritySchemeDescriptor compileSecurityScheme(SecurityScheme scheme) {
+		String type = scheme.getType() != null ? scheme.getType().toString() : null;
+		String in = scheme.getIn() != null ? scheme.getIn().toString() : null;
+		String clientCredentialsTokenUrl = null;
+		String tokenUrl = null;
+		String refreshUrl = null;
+		OAuthFlows flows = scheme.getFlows();
+		if (flows != null) {
+			if (flows.getClientCredentials() != null) {
+				clientCredentialsTokenUrl = flows.getClientCredentials().getTokenUrl();
+			}
+			OAuthFlow[] candidates = { flows.getAuthorizationCode(), flows.getPassword(), flows.getClientCredentials() };
+			for (OAuthFlow flow : candidates) {
+				if (flow == null) continue;
+				if (tokenUrl == null) tokenUrl = flow.getTokenUrl();
+				if (refreshUrl == null) refreshUrl = flow.getRefreshUrl();
+			}
+		}
+		return new SecuritySchemeDescriptor(type, scheme.getName(), in, scheme.getScheme(),
+			clientCredentialsTokenUrl, tokenUrl, refreshUrl);
+	}
+}
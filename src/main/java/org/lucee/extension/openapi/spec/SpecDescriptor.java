@@ -0,0 +1,72 @@
+package org.lucee.extension.openapi.spec;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, compiled form of a whole OpenAPI spec. Built once per spec content by SpecCompiler,
+ * after which the swagger model is no longer referenced and can be garbage collected.
+ */
+public final class SpecDescriptor {
+
+	private final String contentHash;
+	private final List<String> serverUrls;
+	private final Map<String, OperationDescriptor> operations;
+	private final Map<String, SecuritySchemeDescriptor> securitySchemes;
+	private final List<Map<String, List<String>>> security;
+
+	/**
+	 * @param operations operations keyed by lowercased operation id
+	 * @param security global security requirements, null if none are declared
+	 */
+	public SpecDescriptor(String contentHash, List<String> serverUrls, Map<String, OperationDescriptor> operations,
+			Map<String, SecuritySchemeDescriptor> securitySchemes, List<Map<String, List<String>>> security) {
+		this.contentHash = contentHash;
+		this.serverUrls = serverUrls != null && !serverUrls.isEmpty()
+			? Collections.unmodifiableList(new ArrayList<>(serverUrls)) : Collections.emptyList();
+		this.operations = Collections.unmodifiableMap(new LinkedHashMap<>(operations));
+		this.securitySchemes = securitySchemes != null && !securitySchemes.isEmpty()
+			? Collections.unmodifiableMap(new LinkedHashMap<>(securitySchemes)) : Collections.emptyMap();
+		this.security = security;
+	}
+
+	/**
+	 * SHA-256 of the spec source, null when the spec was compiled from a model
+	 */
+	public String getContentHash() {
+		return contentHash;
+	}
+
+	/**
+	 * URL of the first server declared by the spec, null if there is none
+	 */
+	public String getServerUrl() {
+		return serverUrls.isEmpty() ? null : serverUrls.get(0);
+	}
+
+	/**
+	 * URLs of all servers declared by the spec, in declaration order
+	 */
+	public List<String> getServerUrls() {
+		return serverUrls;
+	}
+
+	public Map<String, OperationDescriptor> getOperations() {
+		return operations;
+	}
+
+	public OperationDescriptor getOperation(String name) {
+		return operations.get(name.toLowerCase());
+	}
+
+	public Map<String, SecuritySchemeDescriptor> getSecuritySchemes() {
+		return securitySchemes;
+	}
+
+	public List<Map<String, List<String>>> getSecurity() {
+		return security;
+	}
+}
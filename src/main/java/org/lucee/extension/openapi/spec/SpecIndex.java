@@ -0,0 +1,264 @@
+package org.lucee.extension.openapi.spec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.lucee.extension.openapi.json.SchemaSerializer;
+import org.lucee.extension.openapi.util.PrivateFiles;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiled specs persisted to disk as JSON, so clients of a spec seen before are built without
+ * loading swagger-parser, also after a restart. Files are kept in a directory only the current user
+ * can access, and are only used for the spec content, location and build of the extension they
+ * were written for; anything else is rebuilt from the spec.
+ */
+final class SpecIndex {
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	// Class files that decide what is stored for a spec; any change to them starts a new format
+	private static final String[] FORMAT_CLASSES = { "SpecIndex.class", "SpecCompiler.class", "SpecDescriptor.class",
+		"OperationDescriptor.class", "ParameterDescriptor.class", "SecuritySchemeDescriptor.class",
+		"/org/lucee/extension/openapi/json/SchemaCompiler.class", "/org/lucee/extension/openapi/json/SchemaSerializer.class" };
+
+	private static final String FORMAT = format();
+
+	private static volatile File directory = new File(System.getProperty("java.io.tmpdir"),
+		"lucee-openapi-specs-" + System.getProperty("user.name", "").replaceAll("[^\\w.-]", "_"));
+
+	private SpecIndex() {
+	}
+
+	/**
+	 * Returns the persisted spec for a content hash and location, null if there is none or it cannot be used
+	 */
+	static SpecDescriptor read(String hash, String location) {
+		File file = file(hash, location);
+		if (file == null || !file.isFile()) return null;
+		try {
+			Map<?, ?> index = MAPPER.readValue(file, Map.class);
+			if (!FORMAT.equals(index.get("format")) || !hash.equals(index.get("hash")) || !location.equals(index.get("location"))) {
+				// Written by another build or for another spec, replaced once the spec is compiled
+				return null;
+			}
+			return decode(index);
+		} catch (Exception e) {
+			System.err.println("Warning: Ignoring unreadable spec index " + file + ": " + e.getMessage());
+			file.delete();
+			return null;
+		}
+	}
+
+	/**
+	 * Persists a compiled spec; failures only cost the next process a parse
+	 */
+	static void write(String hash, String location, SpecDescriptor spec) {
+		File file = file(hash, location);
+		if (file == null) return;
+		try {
+			Map<String, Object> index = encode(spec);
+			index.put("format", FORMAT);
+			index.put("hash", hash);
+			index.put("location", location);
+			PrivateFiles.write(file, MAPPER.writeValueAsBytes(index));
+		} catch (Exception e) {
+			System.err.println("Warning: Failed to write spec index " + file + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Directory of the index files, null disables persisting
+	 */
+	static void setDirectory(File dir) {
+		directory = dir;
+	}
+
+	static File getDirectory() {
+		return directory;
+	}
+
+	private static File file(String hash, String location) {
+		File dir = directory;
+		if (dir == null || FORMAT == null) return null;
+		try {
+			// Creating or restricting a directory another user owns fails, its files are never read
+			PrivateFiles.directory(dir);
+		} catch (IOException e) {
+			System.err.println("Warning: Spec index disabled, " + dir + " cannot be made private: " + e.getMessage());
+			return null;
+		}
+		return new File(dir, hash + "-" + sha256(location).substring(0, 16) + ".json");
+	}
+
+	private static Map<String, Object> encode(SpecDescriptor spec) {
+		Map<String, Object> operations = new LinkedHashMap<>();
+		for (Map.Entry<String, OperationDescriptor> entry : spec.getOperations().entrySet()) {
+			OperationDescriptor operation = entry.getValue();
+			List<Map<String, Object>> parameters = new ArrayList<>();
+			for (ParameterDescriptor parameter : operation.getParameters()) {
+				Map<String, Object> map = new LinkedHashMap<>();
+				map.put("name", parameter.getName());
+				map.put("in", parameter.getIn());
+				map.put("required", parameter.isRequired());
+				map.put("description", parameter.getDescription());
+				map.put("type", parameter.getType());
+				parameters.add(map);
+			}
+			Map<String, Object> map = new LinkedHashMap<>();
+			map.put("operationId", operation.getOperationId());
+			map.put("httpMethod", operation.getHttpMethod());
+			map.put("path", operation.getPath());
+			map.put("summary", operation.getSummary());
+			map.put("description", operation.getDescription());
+			map.put("parameters", parameters);
+			map.put("hasBody", operation.hasBody());
+			map.put("bodyRequired", operation.isBodyRequired());
+			map.put("binaryContentType", operation.getBinaryContentType());
+			map.put("security", operation.getSecurity());
+			map.put("bodySerializer", operation.getBodySerializer() != null ? operation.getBodySerializer().toGraph() : null);
+			operations.put(entry.getKey(), map);
+		}
+
+		Map<String, Object> schemes = new LinkedHashMap<>();
+		for (Map.Entry<String, SecuritySchemeDescriptor> entry : spec.getSecuritySchemes().entrySet()) {
+			SecuritySchemeDescriptor scheme = entry.getValue();
+			Map<String, Object> map = new LinkedHashMap<>();
+			map.put("type", scheme.getType());
+			map.put("name", scheme.getName());
+			map.put("in", scheme.getIn());
+			map.put("scheme", scheme.getScheme());
+			map.put("clientCredentialsTokenUrl", scheme.getClientCredentialsTokenUrl());
+			map.put("tokenUrl", scheme.getTokenUrl());
+			map.put("refreshUrl", scheme.getRefreshUrl());
+			schemes.put(entry.getKey(), map);
+		}
+
+		Map<String, Object> index = new LinkedHashMap<>();
+		index.put("contentHash", spec.getContentHash());
+		index.put("serverUrls", spec.getServerUrls());
+		index.put("operations", operations);
+		index.put("securitySchemes", schemes);
+		index.put("security", spec.getSecurity());
+		return index;
+	}
+
+	private static SpecDescriptor decode(Map<?, ?> index) throws IOException {
+		Map<String, OperationDescriptor> operations = new LinkedHashMap<>();
+		for (Map.Entry<String, Map<?, ?>> entry : maps(index.get("operations")).entrySet()) {
+			Map<?, ?> map = entry.getValue();
+			List<ParameterDescriptor> parameters = new ArrayList<>();
+			for (Object item : list(map.get("parameters"))) {
+				Map<?, ?> parameter = map(item);
+				parameters.add(new ParameterDescriptor(string(parameter, "name"), string(parameter, "in"),
+					Boolean.TRUE.equals(parameter.get("required")), string(parameter, "description"), string(parameter, "type")));
+			}
+			Object body = map.get("bodySerializer");
+			String httpMethod = string(map, "httpMethod");
+			if (httpMethod == null) throw new IOException("Operation [" + entry.getKey() + "] has no method");
+			operations.put(entry.getKey(), new OperationDescriptor(string(map, "operationId"), httpMethod, string(map, "path"),
+				string(map, "summary"), string(map, "description"), parameters, Boolean.TRUE.equals(map.get("hasBody")),
+				Boolean.TRUE.equals(map.get("bodyRequired")), string(map, "binaryContentType"), security(map.get("security")),
+				body != null ? SchemaSerializer.fromGraph(list(body)) : null));
+		}
+
+		Map<String, SecuritySchemeDescriptor> schemes = new LinkedHashMap<>();
+		for (Map.Entry<String, Map<?, ?>> entry : maps(index.get("securitySchemes")).entrySet()) {
+			Map<?, ?> map = entry.getValue();
+			schemes.put(entry.getKey(), new SecuritySchemeDescriptor(string(map, "type"), string(map, "name"), string(map, "in"),
+				string(map, "scheme"), string(map, "clientCredentialsTokenUrl"), string(map, "tokenUrl"), string(map, "refreshUrl")));
+		}
+
+		List<String> serverUrls = new ArrayList<>();
+		for (Object url : list(index.get("serverUrls"))) {
+			serverUrls.add(String.valueOf(url));
+		}
+		return new SpecDescriptor(string(index, "contentHash"), serverUrls, operations, schemes, security(index.get("security")));
+	}
+
+	private static List<Map<String, List<String>>> security(Object value) throws IOException {
+		if (value == null) return null;
+		List<Map<String, List<String>>> requirements = new ArrayList<>();
+		for (Object item : list(value)) {
+			Map<String, List<String>> requirement = new LinkedHashMap<>();
+			for (Map.Entry<?, ?> entry : map(item).entrySet()) {
+				List<String> scopes = new ArrayList<>();
+				for (Object scope : list(entry.getValue())) {
+					scopes.add(String.valueOf(scope));
+				}
+				requirement.put(String.valueOf(entry.getKey()), scopes);
+			}
+			requirements.add(requirement);
+		}
+		return requirements;
+	}
+
+	private static Map<String, Map<?, ?>> maps(Object value) throws IOException {
+		Map<String, Map<?, ?>> result = new LinkedHashMap<>();
+		if (value == null) return result;
+		for (Map.Entry<?, ?> entry : map(value).entrySet()) {
+			result.put(String.valueOf(entry.getKey()), map(entry.getValue()));
+		}
+		return result;
+	}
+
+	private static Map<?, ?> map(Object value) throws IOException {
+		if (value instanceof Map) return (Map<?, ?>) value;
+		throw new IOException("Expected an object but found [" + value + "]");
+	}
+
+	private static List<?> list(Object value) throws IOException {
+		if (value == null) return new ArrayList<>();
+		if (value instanceof List) return (List<?>) value;
+		throw new IOException("Expected an array but found [" + value + "]");
+	}
+
+	private static String string(Map<?, ?> map, String key) {
+		Object value = map.get(key);
+		return value != null ? value.toString() : null;
+	}
+
+	/**
+	 * Hash of the class files in FORMAT_CLASSES, null if they cannot be read, which disables the index
+	 */
+	private static String format() {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			for (String name : FORMAT_CLASSES) {
+				// Read as resources, loading SpecCompiler would pull in the parser
+				try (InputStream in = SpecIndex.class.getResourceAsStream(name)) {
+					if (in == null) return null;
+					digest.update(in.readAllBytes());
+				}
+			}
+			return hex(digest.digest()).substring(0, 16);
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	private static String sha256(String value) {
+		try {
+			return hex(MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8)));
+		} catch (Exception e) {
+			// Every JRE provides SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String hex(byte[] digest) {
+		StringBuilder sb = new StringBuilder(digest.length * 2);
+		for (byte b : digest) {
+			sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return sb.toString();
+	}
+}
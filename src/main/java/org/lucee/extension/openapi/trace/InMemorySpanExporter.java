@@ -0,0 +1,44 @@
+package org.lucee.extension.openapi.trace;
+
+import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Keeps the most recent spans in memory, mainly for tests and offline inspection
+ */
+public class InMemorySpanExporter implements SpanExporter {
+
+	private static final InMemorySpanExporter INSTANCE = new InMemorySpanExporter(1000);
+
+	private final int capacity;
+	private final Deque<Span> spans = new ArrayDeque<>();
+
+	public InMemorySpanExporter(int capacity) {
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Shared instance used when the tracing option is set to "memory"
+	 */
+	public static InMemorySpanExporter getInstance() {
+		return INSTANCE;
+	}
+
+	@Override
+	public synchronized void export(Span span) {
+		if (spans.size() >= capacity) {
+			spans.removeFirst();
+		}
+		spans.addLast(span);
+	}
+
+	public synchronized List<Span> getSpans() {
+		return new ArrayList<>(spans);
+	}
+
+	public synchronized void clear() {
+		spans.clear();
+	}
+}
@@ -0,0 +1,43 @@
+package org.lucee.extension.openapi.trace;
+
+import java.io.PrintStream;
+import java.util.Map;
+
+/**
+ * Writes one line per finished span
+ */
+public class LogSpanExporter implements SpanExporter {
+
+	private final PrintStream out;
+
+	public LogSpanExporter() {
+		this(System.out);
+	}
+
+	public LogSpanExporter(PrintStream out) {
+		this.out = out;
+	}
+
+	@Override
+	public void export(Span span) {
+		StringBuilder sb = new StringBuilder("[openapi-trace] ");
+		sb.append(span.getName())
+		  .append(" trace=").append(span.getTraceId())
+		  .append(" span=").append(span.getSpanId());
+		if (span.getParentSpanId() != null) {
+			sb.append(" parent=").append(span.getParentSpanId());
+		}
+		sb.append(" duration=").append(formatMillis(span.getDurationNanos()));
+		for (Map.Entry<String, Long> phase : span.getPhases().entrySet()) {
+			sb.append(' ').append(phase.getKey()).append('=').append(formatMillis(phase.getValue()));
+		}
+		for (Map.Entry<String, Object> attribute : span.getAttributes().entrySet()) {
+			sb.append(' ').append(attribute.getKey()).append('=').append(attribute.getValue());
+		}
+		out.println(sb);
+	}
+
+	private static String formatMillis(long nanos) {
+		return String.format("%.3fms", nanos / 1_000_000d);
+	}
+}
@@ -0,0 +1,115 @@
+package org.lucee.extension.openapi.trace;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A timed unit of work within a trace, with attributes and the durations of its phases
+ */
+public class Span {
+
+	private final Tracer tracer;
+	private final String name;
+	private final TraceContext context;
+	private final String parentSpanId;
+	private final long startTimeMillis;
+	private final long startNanos;
+	private final Map<String, Object> attributes = new LinkedHashMap<>();
+	private final Map<String, Long> phases = new LinkedHashMap<>();
+	private long durationNanos = -1;
+
+	Span(Tracer tracer, String name, TraceContext context, String parentSpanId) {
+		this.tracer = tracer;
+		this.name = name;
+		this.context = context;
+		this.parentSpanId = parentSpanId;
+		this.startTimeMillis = System.currentTimeMillis();
+		this.startNanos = System.nanoTime();
+	}
+
+	/**
+	 * Starts a child span in the same trace
+	 */
+	public Span startChild(String childName) {
+		return tracer.startSpan(childName, context);
+	}
+
+	public Span setAttribute(String key, Object value) {
+		attributes.put(key, value);
+		return this;
+	}
+
+	/**
+	 * Records the duration of a phase (e.g. dns, connect, tls, ttfb, download) in nanoseconds
+	 */
+	public Span recordPhase(String phase, long nanos) {
+		phases.merge(phase, nanos, Long::sum);
+		return this;
+	}
+
+	/**
+	 * Ends the span and hands it to the exporter; further calls are ignored
+	 */
+	public void end() {
+		if (durationNanos >= 0) return;
+		durationNanos = System.nanoTime() - startNanos;
+		tracer.export(this);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public TraceContext getContext() {
+		return context;
+	}
+
+	public String getTraceId() {
+		return context.getTraceId();
+	}
+
+	public String getSpanId() {
+		return context.getSpanId();
+	}
+
+	public String getParentSpanId() {
+		return parentSpanId;
+	}
+
+	public long getStartTimeMillis() {
+		return startTimeMillis;
+	}
+
+	public long getDurationNanos() {
+		return durationNanos;
+	}
+
+	public Map<String, Object> getAttributes() {
+		return Collections.unmodifiableMap(attributes);
+	}
+
+	public Map<String, Long> getPhases() {
+		return Collections.unmodifiableMap(phases);
+	}
+
+	/**
+	 * Span as a struct, phase durations in milliseconds
+	 */
+	public Map<String, Object> toMap() {
+		Map<String, Object> map = new LinkedHashMap<>();
+		map.put("name", name);
+		map.put("traceId", getTraceId());
+		map.put("spanId", getSpanId());
+		map.put("parentSpanId", parentSpanId != null ? parentSpanId : "");
+		map.put("startTime", startTimeMillis);
+		map.put("duration", durationNanos / 1_000_000d);
+		Map<String, Object> phaseMillis = new LinkedHashMap<>();
+		for (Map.Entry<String, Long> entry : phases.entrySet()) {
+			phaseMillis.put(entry.getKey(), entry.getValue() / 1_000_000d);
+		}
+		map.put("phases", phaseMillis);
+		map.put("attributes", new LinkedHashMap<>(attributes));
+		return map;
+	}
+}
@@ -0,0 +1,13 @@
+package org.lucee.extension.openapi.trace;
+
+/**
+ * SPI for shipping finished spans somewhere (log, memory, a collector...).
+ * Implementations must be thread-safe, as spans are exported from request threads.
+ */
+public interface SpanExporter {
+
+	/**
+	 * Called once for every finished span
+	 */
+	void export(Span span);
+}
@@ -0,0 +1,107 @@
+package org.lucee.extension.openapi.trace;
+
+import javax.net.ssl.SSLSocketFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+/**
+ * SSLSocketFactory wrapper that notes when the TCP connection is layered with TLS,
+ * which splits HttpsURLConnection.connect() into its TCP connect and TLS handshake phases.
+ * Unconnected sockets are deliberately not supported, which makes the JDK connect a plain socket
+ * first and then layer TLS over it through createSocket(Socket, ...).
+ * The JDK only reuses a pooled TLS connection for the same factory, so one wrapper is shared for as long as
+ * the factory it wraps stays the same.
+ */
+public class TimingSSLSocketFactory extends SSLSocketFactory {
+
+	private static final ThreadLocal<long[]> LAYERED_AT = new ThreadLocal<>();
+	private static volatile TimingSSLSocketFactory instance;
+
+	private final SSLSocketFactory delegate;
+
+	private TimingSSLSocketFactory(SSLSocketFactory delegate) {
+		this.delegate = delegate;
+	}
+
+	/**
+	 * Shared wrapper of the given factory, usually the one a new HttpsURLConnection starts out with
+	 */
+	public static SSLSocketFactory wrap(SSLSocketFactory delegate) {
+		if (delegate instanceof TimingSSLSocketFactory) {
+			return delegate;
+		}
+		TimingSSLSocketFactory result = instance;
+		if (result == null || result.delegate != delegate) {
+			synchronized (TimingSSLSocketFactory.class) {
+				result = instance;
+				if (result == null || result.delegate != delegate) {
+					// A changed default replaces the wrapper; connections pooled for the old one are not reused
+					instance = result = new TimingSSLSocketFactory(delegate);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Starts recording for the current thread
+	 */
+	public static void begin() {
+		LAYERED_AT.set(new long[] { 0 });
+	}
+
+	/**
+	 * Stops recording and returns the System.nanoTime() at which TLS layering started,
+	 * or 0 if no new TLS connection was created (e.g. a pooled connection was reused)
+	 */
+	public static long end() {
+		long[] marker = LAYERED_AT.get();
+		LAYERED_AT.remove();
+		return marker != null ? marker[0] : 0;
+	}
+
+	private static void mark() {
+		long[] marker = LAYERED_AT.get();
+		if (marker != null) {
+			marker[0] = System.nanoTime();
+		}
+	}
+
+	@Override
+	public Socket createSocket(Socket s, String host, int port, boolean autoClose) throws IOException {
+		mark();
+		return delegate.createSocket(s, host, port, autoClose);
+	}
+
+	@Override
+	public Socket createSocket(String host, int port) throws IOException {
+		return delegate.createSocket(host, port);
+	}
+
+	@Override
+	public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+		return delegate.createSocket(host, port, localHost, localPort);
+	}
+
+	@Override
+	public Socket createSocket(InetAddress host, int port) throws IOException {
+		return delegate.createSocket(host, port);
+	}
+
+	@Override
+	public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+		return delegate.createSocket(address, port, localAddress, localPort);
+	}
+
+	@Override
+	public String[] getDefaultCipherSuites() {
+		return delegate.getDefaultCipherSuites();
+	}
+
+	@Override
+	public String[] getSupportedCipherSuites() {
+		return delegate.getSupportedCipherSuites();
+	}
+}
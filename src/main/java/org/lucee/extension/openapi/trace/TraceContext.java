@@ -0,0 +1,140 @@
+package org.lucee.extension.openapi.trace;
+
+import lucee.loader.engine.CFMLEngine;
+import lucee.loader.engine.CFMLEngineFactory;
+import lucee.runtime.PageContext;
+
+import java.security.SecureRandom;
+import java.util.Random;
+
+/**
+ * W3C trace context (https://www.w3.org/TR/trace-context/) identifying a span within a trace
+ */
+public class TraceContext {
+
+	private static final Random RANDOM = new SecureRandom();
+	private static final String VERSION = "00";
+
+	private final String traceId;
+	private final String spanId;
+	private final String flags;
+	private final String traceState;
+
+	public TraceContext(String traceId, String spanId, String flags, String traceState) {
+		this.traceId = traceId;
+		this.spanId = spanId;
+		this.flags = flags;
+		this.traceState = traceState;
+	}
+
+	/**
+	 * Creates the context of a new trace, sampled by default
+	 */
+	public static TraceContext newRoot() {
+		return new TraceContext(randomHex(16), randomHex(8), "01", null);
+	}
+
+	/**
+	 * Creates a context for a child span in the same trace
+	 */
+	public TraceContext newChild() {
+		return new TraceContext(traceId, randomHex(8), flags, traceState);
+	}
+
+	/**
+	 * Parses a traceparent header, returns null if it is missing or invalid
+	 */
+	public static TraceContext parse(String traceparent, String tracestate) {
+		if (traceparent == null) return null;
+		String[] parts = traceparent.trim().split("-");
+		if (parts.length < 4) return null;
+		if (!isHex(parts[0], 2) || "ff".equals(parts[0])) return null;
+		if (!isHex(parts[1], 32) || isZero(parts[1])) return null;
+		if (!isHex(parts[2], 16) || isZero(parts[2])) return null;
+		if (!isHex(parts[3], 2)) return null;
+		String state = tracestate != null && !tracestate.trim().isEmpty() ? tracestate.trim() : null;
+		return new TraceContext(parts[1], parts[2], parts[3], state);
+	}
+
+	/**
+	 * Reads the incoming trace of the current Lucee request, if any
+	 */
+	public static TraceContext fromCurrentRequest() {
+		try {
+			CFMLEngine engine = CFMLEngineFactory.getInstance();
+			PageContext pc = engine.getThreadPageContext();
+			if (pc == null) return null;
+			Object traceparent = pc.cgiScope().get(engine.getCreationUtil().createKey("http_traceparent"), null);
+			Object tracestate = pc.cgiScope().get(engine.getCreationUtil().createKey("http_tracestate"), null);
+			return parse(traceparent != null ? traceparent.toString() : null,
+				tracestate != null ? tracestate.toString() : null);
+		} catch (Throwable t) {
+			// No engine or request available (e.g. background thread), start a new trace
+			return null;
+		}
+	}
+
+	public String toTraceparent() {
+		return VERSION + "-" + traceId + "-" + spanId + "-" + flags;
+	}
+
+	public String getTraceId() {
+		return traceId;
+	}
+
+	public String getSpanId() {
+		return spanId;
+	}
+
+	public String getFlags() {
+		return flags;
+	}
+
+	public String getTraceState() {
+		return traceState;
+	}
+
+	public boolean isSampled() {
+		return (Integer.parseInt(flags, 16) & 0x01) != 0;
+	}
+
+	private static String randomHex(int bytes) {
+		byte[] data = new byte[bytes];
+		do {
+			RANDOM.nextBytes(data);
+		} while (isAllZero(data));
+		StringBuilder sb = new StringBuilder(bytes * 2);
+		for (byte b : data) {
+			sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return sb.toString();
+	}
+
+	private static boolean isAllZero(byte[] data) {
+		for (byte b : data) {
+			if (b != 0) return false;
+		}
+		return true;
+	}
+
+	private static boolean isHex(String value, int length) {
+		if (value.length() != length) return false;
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) return false;
+		}
+		return true;
+	}
+
+	private static boolean isZero(String value) {
+		for (int i = 0; i < value.length(); i++) {
+			if (value.charAt(i) != '0') return false;
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return toTraceparent();
+	}
+}
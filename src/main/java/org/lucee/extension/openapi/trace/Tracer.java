@@ -0,0 +1,71 @@
+package org.lucee.extension.openapi.trace;
+
+import lucee.loader.engine.CFMLEngineFactory;
+
+import org.lucee.extension.openapi.util.OptionUtil;
+
+/**
+ * Creates spans and hands finished ones to the configured exporter
+ */
+public class Tracer {
+
+	private final SpanExporter exporter;
+
+	public Tracer(SpanExporter exporter) {
+		this.exporter = exporter;
+	}
+
+	/**
+	 * Creates a tracer from the "tracing" client option, or returns null if tracing is disabled.
+	 * The option can be true/"log", "memory", the class name of a SpanExporter, or a SpanExporter instance.
+	 */
+	public static Tracer fromOptions(Object options) throws Exception {
+		Object tracing = OptionUtil.get(options, "tracing");
+		if (tracing == null) return null;
+		if (tracing instanceof SpanExporter) {
+			return new Tracer((SpanExporter) tracing);
+		}
+		if (tracing instanceof Boolean) {
+			return (Boolean) tracing ? new Tracer(new LogSpanExporter()) : null;
+		}
+
+		String name = tracing.toString().trim();
+		if (name.isEmpty() || "false".equalsIgnoreCase(name) || "no".equalsIgnoreCase(name)) {
+			return null;
+		}
+		if ("true".equalsIgnoreCase(name) || "yes".equalsIgnoreCase(name) || "log".equalsIgnoreCase(name)) {
+			return new Tracer(new LogSpanExporter());
+		}
+		if ("memory".equalsIgnoreCase(name)) {
+			return new Tracer(InMemorySpanExporter.getInstance());
+		}
+		Class<? extends SpanExporter> clazz = OptionUtil.getClass(name, SpanExporter.class);
+		if (clazz == null) {
+			throw CFMLEngineFactory.getInstance().getExceptionUtil().createApplicationException(
+				"Invalid tracing [" + name + "], valid values are [true, false, log, memory] or the name of a class implementing "
+					+ SpanExporter.class.getName());
+		}
+		return new Tracer(clazz.getDeclaredConstructor().newInstance());
+	}
+
+	/**
+	 * Starts a span; without a parent a new trace is started
+	 */
+	public Span startSpan(String name, TraceContext parent) {
+		TraceContext context = parent != null ? parent.newChild() : TraceContext.newRoot();
+		return new Span(this, name, context, parent != null ? parent.getSpanId() : null);
+	}
+
+	void export(Span span) {
+		try {
+			exporter.export(span);
+		} catch (Exception e) {
+			// Exporting must never fail the traced call
+			System.err.println("Warning: Failed to export span: " + e.getMessage());
+		}
+	}
+
+	public SpanExporter getExporter() {
+		return exporter;
+	}
+}
@@ -0,0 +1,78 @@
+package org.lucee.extension.openapi.transport;
+
+import lucee.loader.engine.CFMLEngineFactory;
+
+import org.lucee.extension.openapi.util.OptionUtil;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * SPI for the wire below the HTTP client: sends one request and hands back the response.
+ * Headers, bodies, limits, streaming and tracing of the call are handled above it.
+ * Implementations must be thread-safe, as one transport serves all calls of a client.
+ */
+public interface Transport {
+
+	/**
+	 * Sends a request and returns once the status and headers of the response are read.
+	 * The caller reads the body and then releases the response.
+	 */
+	TransportResponse send(TransportRequest request) throws IOException;
+
+	/**
+	 * Prepares whatever the transport keeps between calls (DNS, pooled connections) for a server
+	 *
+	 * @return timings of the warm-up
+	 */
+	default Map<String, Object> warmUp(String url, int timeoutMillis) throws IOException {
+		Map<String, Object> result = new HashMap<>();
+		result.put("url", url);
+		return result;
+	}
+
+	/**
+	 * Releases pooled resources; called when the client is closed
+	 */
+	default void close() {
+	}
+
+	/**
+	 * Creates the transport selected by the "transport" option: "http" (default, alias "url") for HttpURLConnection,
+	 * "unix" for HTTP over the Unix domain socket given as "socketPath", a Transport instance,
+	 * or the name of a Transport class with a public no-arg constructor
+	 */
+	static Transport fromOptions(Object options) throws Exception {
+		Object transport = OptionUtil.get(options, "transport");
+		if (transport instanceof Transport) {
+			return (Transport) transport;
+		}
+		String socketPath = OptionUtil.getString(options, "socketPath", null);
+		String name = transport != null ? transport.toString().trim() : "";
+		if (name.isEmpty()) {
+			name = socketPath != null ? "unix" : "http";
+		}
+		if ("http".equalsIgnoreCase(name) || "url".equalsIgnoreCase(name) || "default".equalsIgnoreCase(name)) {
+			return UrlConnectionTransport.getInstance();
+		}
+		if ("unix".equalsIgnoreCase(name)) {
+			if (socketPath == null || socketPath.trim().isEmpty()) {
+				throw CFMLEngineFactory.getInstance().getExceptionUtil().createApplicationException(
+					"The unix transport requires the socketPath option");
+			}
+			if (!UnixSocketTransport.isSupported()) {
+				throw CFMLEngineFactory.getInstance().getExceptionUtil().createApplicationException(
+					"The unix transport requires Java 16 or later");
+			}
+			return new UnixSocketTransport(socketPath.trim());
+		}
+		Class<? extends Transport> clazz = OptionUtil.getClass(name, Transport.class);
+		if (clazz == null) {
+			throw CFMLEngineFactory.getInstance().getExceptionUtil().createApplicationException(
+				"Invalid transport [" + name + "], valid values are [http, unix] or the name of a class implementing "
+					+ Transport.class.getName());
+		}
+		return clazz.getDeclaredConstructor().newInstance();
+	}
+}
@@ -0,0 +1,64 @@
+package org.lucee.extension.openapi.transport;
+
+import org.lucee.extension.openapi.trace.Span;
+
+import java.net.URL;
+import java.util.Map;
+
+/**
+ * A fully prepared request: final URL, all headers and the serialized body
+ */
+public final class TransportRequest {
+
+	private final String method;
+	private final URL url;
+	private final Map<String, String> headers;
+	private final byte[] body;
+	private final int connectTimeout;
+	private final int readTimeout;
+	private final Span span;
+
+	/**
+	 * @param body serialized body, null if the request has none
+	 * @param readTimeout longest wait for data, also between reads of a streamed body
+	 * @param span span of the call to record transport phases on, may be null
+	 */
+	public TransportRequest(String method, URL url, Map<String, String> headers, byte[] body, int connectTimeout,
+			int readTimeout, Span span) {
+		this.method = method;
+		this.url = url;
+		this.headers = headers;
+		this.body = body;
+		this.connectTimeout = connectTimeout;
+		this.readTimeout = readTimeout;
+		this.span = span;
+	}
+
+	public String getMethod() {
+		return method;
+	}
+
+	public URL getUrl() {
+		return url;
+	}
+
+	public Map<String, String> getHeaders() {
+		return headers;
+	}
+
+	public byte[] getBody() {
+		return body;
+	}
+
+	public int getConnectTimeout() {
+		return connectTimeout;
+	}
+
+	public int getReadTimeout() {
+		return readTimeout;
+	}
+
+	public Span getSpan() {
+		return span;
+	}
+}
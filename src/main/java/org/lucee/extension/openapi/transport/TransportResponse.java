@@ -0,0 +1,106 @@
+package org.lucee.extension.openapi.transport;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Status, headers and body of a response as returned by a transport.
+ * The body is read at most once; release() must be called when the caller is done with it.
+ */
+public abstract class TransportResponse {
+
+	private final int statusCode;
+	private final String statusText;
+	private final Map<String, List<String>> headers;
+
+	/**
+	 * @param headers response headers; a null key (the status line of HttpURLConnection) is dropped
+	 */
+	protected TransportResponse(int statusCode, String statusText, Map<String, List<String>> headers) {
+		this.statusCode = statusCode;
+		this.statusText = statusText;
+		Map<String, List<String>> copy = new LinkedHashMap<>();
+		if (headers != null) {
+			for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+				if (entry.getKey() != null) {
+					copy.put(entry.getKey(), entry.getValue());
+				}
+			}
+		}
+		this.headers = Collections.unmodifiableMap(copy);
+	}
+
+	/**
+	 * A response already in memory, e.g. from an in-memory transport
+	 */
+	public static TransportResponse of(int statusCode, String statusText, Map<String, List<String>> headers, byte[] body) {
+		return new TransportResponse(statusCode, statusText, headers) {
+			@Override
+			public InputStream getBody() {
+				return body != null ? new ByteArrayInputStream(body) : null;
+			}
+
+			@Override
+			public void release(boolean reuse) {
+			}
+		};
+	}
+
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	public String getStatusText() {
+		return statusText;
+	}
+
+	public Map<String, List<String>> getHeaders() {
+		return headers;
+	}
+
+	/**
+	 * First value of a header, matched case-insensitively; null if absent
+	 */
+	public String getHeader(String name) {
+		for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+			if (name.equalsIgnoreCase(entry.getKey()) && entry.getValue() != null && !entry.getValue().isEmpty()) {
+				return entry.getValue().get(0);
+			}
+		}
+		return null;
+	}
+
+	public String getContentType() {
+		return getHeader("Content-Type");
+	}
+
+	/**
+	 * Declared body length, -1 if unknown
+	 */
+	public long getContentLength() {
+		String length = getHeader("Content-Length");
+		if (length == null) return -1;
+		try {
+			return Long.parseLong(length.trim());
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * The body (for error statuses too), null if the response has none
+	 */
+	public abstract InputStream getBody() throws IOException;
+
+	/**
+	 * Ends the exchange
+	 *
+	 * @param reuse whether the body was read to the end, so the connection may serve the next request
+	 */
+	public abstract void release(boolean reuse);
+}
@@ -0,0 +1,572 @@
+package org.lucee.extension.openapi.transport;
+
+import org.lucee.extension.openapi.trace.Span;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardProtocolFamily;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * HTTP/1.1 over a Unix domain socket, for APIs reached through a local sidecar proxy.
+ * The host of the request URL is only sent as Host header, every request goes to the socket.
+ * Keep-alive connections are pooled; requires Java 16 or later at runtime.
+ */
+public final class UnixSocketTransport implements Transport {
+
+	private static final int BUFFER_SIZE = 8192;
+	private static final int MAX_IDLE = 32;
+	private static final long MAX_IDLE_MILLIS = 30000;
+	private static final int MAX_HEADER_LINE = 65536;
+	private static final Set<String> IDEMPOTENT = Set.of("GET", "HEAD", "OPTIONS", "PUT", "DELETE", "TRACE");
+
+	// Resolved reflectively, as the extension is built for Java 11
+	private static final ProtocolFamily UNIX;
+	private static final Method OPEN;
+	private static final Method ADDRESS_OF;
+
+	static {
+		ProtocolFamily family = null;
+		Method open = null;
+		Method addressOf = null;
+		try {
+			family = StandardProtocolFamily.valueOf("UNIX");
+			open = SocketChannel.class.getMethod("open", ProtocolFamily.class);
+			addressOf = Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", String.class);
+		} catch (Exception e) {
+			family = null;
+		}
+		UNIX = family;
+		OPEN = open;
+		ADDRESS_OF = addressOf;
+	}
+
+	private final String socketPath;
+	private final SocketAddress address;
+	private final ConcurrentLinkedDeque<Connection> idle = new ConcurrentLinkedDeque<>();
+	private volatile boolean closed;
+
+	public UnixSocketTransport(String socketPath) throws IOException {
+		if (!isSupported()) {
+			throw new IOException("Unix domain sockets require Java 16 or later");
+		}
+		this.socketPath = socketPath;
+		this.address = (SocketAddress) invoke(ADDRESS_OF, socketPath);
+	}
+
+	/**
+	 * Whether the running JVM supports Unix domain socket channels
+	 */
+	public static boolean isSupported() {
+		return UNIX != null;
+	}
+
+	public String getSocketPath() {
+		return socketPath;
+	}
+
+	@Override
+	public TransportResponse send(TransportRequest request) throws IOException {
+		Span span = request.getSpan();
+		if (span != null) {
+			span.setAttribute("network.transport", "unix");
+		}
+		byte[] head = encodeHead(request);
+		while (true) {
+			Connection connection = poll();
+			boolean reused = connection != null;
+			if (connection == null) {
+				long start = System.nanoTime();
+				connection = connect();
+				if (span != null) {
+					span.recordPhase("connect", System.nanoTime() - start);
+				}
+			}
+			try {
+				return exchange(connection, request, head);
+			} catch (IOException e) {
+				connection.close();
+				// The server may close a pooled connection at any time. A request it could not be written to never
+				// reached it; one that was written may have been processed, so only idempotent methods are sent again.
+				if (!reused || connection.received > 0 || e instanceof SocketTimeoutException
+						|| connection.written && !IDEMPOTENT.contains(request.getMethod().toUpperCase())) {
+					throw e;
+				}
+			}
+		}
+	}
+
+	private Response exchange(Connection connection, TransportRequest request, byte[] head) throws IOException {
+		Span span = request.getSpan();
+		int timeout = request.getReadTimeout();
+		long sendStart = System.nanoTime();
+		connection.write(head, timeout);
+		if (request.getBody() != null) {
+			connection.write(request.getBody(), timeout);
+		}
+		connection.written = true;
+		long waitStart = System.nanoTime();
+		if (span != null) {
+			span.recordPhase("send", waitStart - sendStart);
+		}
+
+		String statusLine;
+		int statusCode;
+		Map<String, List<String>> headers;
+		do {
+			statusLine = connection.readLine(timeout);
+			if (statusLine == null) {
+				throw new EOFException("Connection closed before the response");
+			}
+			statusCode = parseStatusCode(statusLine);
+			headers = readHeaders(connection, timeout);
+		} while (statusCode >= 100 && statusCode < 200 && statusCode != 101);
+		if (span != null) {
+			span.recordPhase("ttfb", System.nanoTime() - waitStart);
+		}
+
+		int space = statusLine.indexOf(' ', statusLine.indexOf(' ') + 1);
+		String statusText = space != -1 ? statusLine.substring(space + 1).trim() : "";
+		return new Response(this, connection, statusCode, statusText, headers,
+			"HEAD".equalsIgnoreCase(request.getMethod()), !statusLine.startsWith("HTTP/1.0"), timeout);
+	}
+
+	/**
+	 * Encodes the request line and headers. Names must be HTTP tokens and nothing may contain CR or LF,
+	 * which would inject headers or a second request into the pooled connection; like HttpURLConnection,
+	 * such requests are rejected.
+	 */
+	private static byte[] encodeHead(TransportRequest request) {
+		URL url = request.getUrl();
+		String target = url.getFile();
+		if (!isToken(request.getMethod())) {
+			throw new IllegalArgumentException("Invalid HTTP method [" + request.getMethod() + "]");
+		}
+		if (hasLineBreak(target)) {
+			throw new IllegalArgumentException("Illegal character(s) in request target [" + target + "]");
+		}
+		StringBuilder head = new StringBuilder(256);
+		head.append(request.getMethod()).append(' ').append(target.isEmpty() ? "/" : target).append(" HTTP/1.1\r\n");
+		head.append("Host: ").append(url.getHost());
+		if (url.getPort() != -1) {
+			head.append(':').append(url.getPort());
+		}
+		head.append("\r\n");
+		if (request.getHeaders() != null) {
+			for (Map.Entry<String, String> entry : request.getHeaders().entrySet()) {
+				String name = entry.getKey();
+				// Framing is ours to decide
+				if ("Host".equalsIgnoreCase(name) || "Content-Length".equalsIgnoreCase(name)
+						|| "Transfer-Encoding".equalsIgnoreCase(name) || "Connection".equalsIgnoreCase(name)
+						|| entry.getValue() == null) {
+					continue;
+				}
+				if (!isToken(name)) {
+					throw new IllegalArgumentException("Illegal character(s) in header name [" + name + "]");
+				}
+				if (hasLineBreak(entry.getValue())) {
+					throw new IllegalArgumentException("Illegal character(s) in value of header [" + name + "]");
+				}
+				head.append(name).append(": ").append(entry.getValue()).append("\r\n");
+			}
+		}
+		if (request.getBody() != null) {
+			head.append("Content-Length: ").append(request.getBody().length).append("\r\n");
+		}
+		head.append("\r\n");
+		return head.toString().getBytes(StandardCharsets.ISO_8859_1);
+	}
+
+	private static boolean isToken(String value) {
+		if (value == null || value.isEmpty()) return false;
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c > 126 || c <= ' ' || "\"(),/:;<=>?@[\\]{}".indexOf(c) != -1) return false;
+		}
+		return true;
+	}
+
+	private static boolean hasLineBreak(String value) {
+		return value.indexOf('\r') != -1 || value.indexOf('\n') != -1;
+	}
+
+	private static int parseStatusCode(String statusLine) throws IOException {
+		if (statusLine.startsWith("HTTP/") && statusLine.length() >= 12) {
+			try {
+				return Integer.parseInt(statusLine.substring(9, 12));
+			} catch (NumberFormatException e) {
+				// reported below
+			}
+		}
+		throw new IOException("Invalid HTTP status line: " + statusLine);
+	}
+
+	private static Map<String, List<String>> readHeaders(Connection connection, int timeout) throws IOException {
+		Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		String line;
+		while ((line = connection.readLine(timeout)) != null && !line.isEmpty()) {
+			int colon = line.indexOf(':');
+			if (colon <= 0) continue;
+			headers.computeIfAbsent(line.substring(0, colon).trim(), k -> new ArrayList<>())
+				.add(line.substring(colon + 1).trim());
+		}
+		if (line == null) {
+			throw new EOFException("Connection closed in the response headers");
+		}
+		return headers;
+	}
+
+	/**
+	 * Opens a connection to the socket, which then waits in the pool for the first call
+	 */
+	@Override
+	public Map<String, Object> warmUp(String url, int timeoutMillis) throws IOException {
+		Map<String, Object> result = new HashMap<>();
+		result.put("url", url);
+		result.put("socketPath", socketPath);
+		long start = System.nanoTime();
+		release(connect());
+		result.put("connectMillis", (System.nanoTime() - start) / 1_000_000.0);
+		result.put("totalMillis", (System.nanoTime() - start) / 1_000_000.0);
+		return result;
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		Connection connection;
+		while ((connection = idle.pollFirst()) != null) {
+			connection.close();
+		}
+	}
+
+	private Connection connect() throws IOException {
+		SocketChannel channel = (SocketChannel) invoke(OPEN, UNIX);
+		try {
+			channel.connect(address);
+			return new Connection(channel);
+		} catch (IOException e) {
+			channel.close();
+			throw new IOException("Failed to connect to " + socketPath + ": " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Most recently used idle connection that is still open
+	 */
+	private Connection poll() {
+		Connection connection;
+		long now = System.currentTimeMillis();
+		while ((connection = idle.pollFirst()) != null) {
+			if (now - connection.idleSince < MAX_IDLE_MILLIS && connection.isReusable()) {
+				connection.received = 0;
+				connection.written = false;
+				return connection;
+			}
+			connection.close();
+		}
+		return null;
+	}
+
+	private void release(Connection connection) {
+		connection.idleSince = System.currentTimeMillis();
+		if (closed || idle.size() >= MAX_IDLE) {
+			connection.close();
+			return;
+		}
+		idle.offerFirst(connection);
+	}
+
+	private static Object invoke(Method method, Object arg) throws IOException {
+		try {
+			return method.invoke(null, arg);
+		} catch (InvocationTargetException e) {
+			if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+			throw new IOException(e.getCause());
+		} catch (IllegalAccessException e) {
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * A non-blocking channel with a selector, so reads and writes honor the timeout
+	 */
+	private static final class Connection {
+		final SocketChannel channel;
+		final Selector selector;
+		final SelectionKey key;
+		final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		long idleSince;
+		long received;
+		boolean written;
+
+		Connection(SocketChannel channel) throws IOException {
+			this.channel = channel;
+			channel.configureBlocking(false);
+			this.selector = Selector.open();
+			this.key = channel.register(selector, SelectionKey.OP_READ);
+			buffer.flip();
+		}
+
+		void write(byte[] bytes, int timeout) throws IOException {
+			ByteBuffer src = ByteBuffer.wrap(bytes);
+			long deadline = deadline(timeout);
+			while (src.hasRemaining()) {
+				if (channel.write(src) == 0) {
+					key.interestOps(SelectionKey.OP_WRITE);
+					try {
+						await(deadline, "Write timed out");
+					} finally {
+						key.interestOps(SelectionKey.OP_READ);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Next CRLF-terminated line, null on end of stream before any byte of it
+		 */
+		String readLine(int timeout) throws IOException {
+			ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+			while (true) {
+				if (!buffer.hasRemaining() && fill(timeout) == -1) {
+					if (line.size() == 0) return null;
+					throw new EOFException("Connection closed in the middle of a line");
+				}
+				byte b = buffer.get();
+				if (b == '\n') break;
+				if (line.size() >= MAX_HEADER_LINE) {
+					throw new IOException("HTTP header line too long");
+				}
+				line.write(b);
+			}
+			String value = new String(line.toByteArray(), StandardCharsets.ISO_8859_1);
+			return value.endsWith("\r") ? value.substring(0, value.length() - 1) : value;
+		}
+
+		int read(byte[] b, int off, int len, int timeout) throws IOException {
+			if (!buffer.hasRemaining() && fill(timeout) == -1) {
+				return -1;
+			}
+			int n = Math.min(len, buffer.remaining());
+			buffer.get(b, off, n);
+			return n;
+		}
+
+		/**
+		 * Reads into the drained buffer, waiting up to the timeout for data
+		 */
+		private int fill(int timeout) throws IOException {
+			buffer.clear();
+			try {
+				long deadline = deadline(timeout);
+				int n;
+				while ((n = channel.read(buffer)) == 0) {
+					await(deadline, "Read timed out");
+				}
+				if (n > 0) received += n;
+				return n;
+			} finally {
+				buffer.flip();
+			}
+		}
+
+		private static long deadline(int timeout) {
+			return timeout > 0 ? System.currentTimeMillis() + timeout : 0;
+		}
+
+		private void await(long deadline, String message) throws IOException {
+			long wait = 0;
+			if (deadline > 0) {
+				wait = deadline - System.currentTimeMillis();
+				if (wait <= 0) throw new SocketTimeoutException(message);
+			}
+			selector.select(wait);
+			selector.selectedKeys().clear();
+		}
+
+		/**
+		 * An idle connection is only usable if the server has neither sent anything nor closed it
+		 */
+		boolean isReusable() {
+			if (!channel.isOpen() || buffer.hasRemaining()) return false;
+			try {
+				buffer.clear();
+				return channel.read(buffer) == 0;
+			} catch (IOException e) {
+				return false;
+			} finally {
+				buffer.flip();
+			}
+		}
+
+		void close() {
+			try {
+				selector.close();
+			} catch (IOException e) {
+				// nothing to do
+			}
+			try {
+				channel.close();
+			} catch (IOException e) {
+				// nothing to do
+			}
+		}
+	}
+
+	/**
+	 * A response whose body is read from the connection as Content-Length, chunked or close-delimited
+	 */
+	private static final class Response extends TransportResponse {
+		private final UnixSocketTransport transport;
+		private final Connection connection;
+		private final Body body;
+		private boolean released;
+
+		Response(UnixSocketTransport transport, Connection connection, int statusCode, String statusText,
+				Map<String, List<String>> headers, boolean head, boolean http11, int timeout) throws IOException {
+			super(statusCode, statusText, headers);
+			this.transport = transport;
+			this.connection = connection;
+
+			String connectionHeader = getHeader("Connection");
+			boolean keepAlive = connectionHeader != null
+				? !"close".equalsIgnoreCase(connectionHeader.trim())
+				: http11;
+			String encoding = getHeader("Transfer-Encoding");
+			long length = getContentLength();
+			if (head || statusCode == 204 || statusCode == 304) {
+				body = new Body(connection, timeout, Body.FIXED, 0, keepAlive);
+			} else if (encoding != null && encoding.toLowerCase().contains("chunked")) {
+				body = new Body(connection, timeout, Body.CHUNKED, 0, keepAlive);
+			} else if (length >= 0) {
+				body = new Body(connection, timeout, Body.FIXED, length, keepAlive);
+			} else {
+				body = new Body(connection, timeout, Body.UNTIL_CLOSE, 0, false);
+			}
+		}
+
+		@Override
+		public InputStream getBody() {
+			return body;
+		}
+
+		@Override
+		public synchronized void release(boolean reuse) {
+			if (released) return;
+			released = true;
+			if (reuse && body.isReusable()) {
+				transport.release(connection);
+			} else {
+				connection.close();
+			}
+		}
+	}
+
+	private static final class Body extends InputStream {
+		static final int FIXED = 0;
+		static final int CHUNKED = 1;
+		static final int UNTIL_CLOSE = 2;
+
+		private final Connection connection;
+		private final int timeout;
+		private final int framing;
+		private final boolean keepAlive;
+		private long remaining;
+		private boolean firstChunk = true;
+		private boolean eof;
+
+		Body(Connection connection, int timeout, int framing, long length, boolean keepAlive) {
+			this.connection = connection;
+			this.timeout = timeout;
+			this.framing = framing;
+			this.remaining = length;
+			this.keepAlive = keepAlive;
+			this.eof = framing == FIXED && length == 0;
+		}
+
+		boolean isReusable() {
+			return eof && keepAlive;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] one = new byte[1];
+			return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (eof) return -1;
+			if (len == 0) return 0;
+			if (framing == UNTIL_CLOSE) {
+				int n = connection.read(b, off, len, timeout);
+				if (n == -1) eof = true;
+				return n;
+			}
+			if (remaining == 0 && framing == CHUNKED && !nextChunk()) {
+				return -1;
+			}
+			int n = connection.read(b, off, (int) Math.min(len, remaining), timeout);
+			if (n == -1) {
+				throw new EOFException("Connection closed before the end of the response body");
+			}
+			remaining -= n;
+			if (remaining == 0 && framing == FIXED) {
+				eof = true;
+			}
+			return n;
+		}
+
+		/**
+		 * Reads the next chunk header; false after the last chunk and its trailers
+		 */
+		private boolean nextChunk() throws IOException {
+			if (!firstChunk) {
+				// CRLF after the previous chunk's data
+				connection.readLine(timeout);
+			}
+			firstChunk = false;
+			String line = connection.readLine(timeout);
+			if (line == null) {
+				throw new EOFException("Connection closed before the end of the response body");
+			}
+			int semi = line.indexOf(';');
+			long size;
+			try {
+				size = Long.parseLong((semi != -1 ? line.substring(0, semi) : line).trim(), 16);
+			} catch (NumberFormatException e) {
+				throw new IOException("Invalid chunk size: " + line);
+			}
+			if (size == 0) {
+				String trailer;
+				while ((trailer = connection.readLine(timeout)) != null && !trailer.isEmpty()) {
+					// trailers are ignored
+				}
+				eof = true;
+				return false;
+			}
+			remaining = size;
+			return true;
+		}
+	}
+}
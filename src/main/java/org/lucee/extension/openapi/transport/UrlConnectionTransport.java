@@ -0,0 +1,193 @@
+package org.lucee.extension.openapi.transport;
+
+import org.lucee.extension.openapi.trace.Span;
+import org.lucee.extension.openapi.trace.TimingSSLSocketFactory;
+import org.lucee.extension.openapi.util.DnsCache;
+
+import javax.net.ssl.HttpsURLConnection;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The default transport: HttpURLConnection over TCP, with the JDK keep-alive pool and a shared TLS socket factory
+ */
+public final class UrlConnectionTransport implements Transport {
+
+	private static final UrlConnectionTransport INSTANCE = new UrlConnectionTransport();
+
+	private UrlConnectionTransport() {
+	}
+
+	/**
+	 * Stateless, the connection pool belongs to the JDK
+	 */
+	public static UrlConnectionTransport getInstance() {
+		return INSTANCE;
+	}
+
+	@Override
+	public TransportResponse send(TransportRequest request) throws IOException {
+		URL url = request.getUrl();
+		Span span = request.getSpan();
+		resolveHost(url.getHost(), span);
+
+		HttpURLConnection connection = openConnection(url);
+		boolean sent = false;
+		try {
+			connection.setRequestMethod(request.getMethod());
+			connection.setConnectTimeout(request.getConnectTimeout());
+			connection.setReadTimeout(request.getReadTimeout());
+			if (request.getHeaders() != null) {
+				for (Map.Entry<String, String> entry : request.getHeaders().entrySet()) {
+					connection.setRequestProperty(entry.getKey(), entry.getValue());
+				}
+			}
+
+			// Output must be enabled before connecting, the connection refuses it afterwards
+			byte[] body = request.getBody();
+			if (body != null) {
+				connection.setDoOutput(true);
+			}
+
+			// Time connect/TLS separately
+			if (span != null) {
+				connect(connection, span);
+			}
+
+			if (body != null) {
+				long sendStart = System.nanoTime();
+				try (OutputStream os = connection.getOutputStream()) {
+					os.write(body, 0, body.length);
+				}
+				if (span != null) {
+					span.recordPhase("send", System.nanoTime() - sendStart);
+				}
+			}
+
+			long waitStart = System.nanoTime();
+			int statusCode = connection.getResponseCode();
+			if (span != null) {
+				span.recordPhase("ttfb", System.nanoTime() - waitStart);
+			}
+			sent = true;
+			return new Response(connection, statusCode);
+		} finally {
+			if (!sent) {
+				connection.disconnect();
+			}
+		}
+	}
+
+	private static HttpURLConnection openConnection(URL url) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		if (connection instanceof HttpsURLConnection) {
+			HttpsURLConnection https = (HttpsURLConnection) connection;
+			// New connections start out with the current default factory, so changes to it are picked up
+			https.setSSLSocketFactory(TimingSSLSocketFactory.wrap(https.getSSLSocketFactory()));
+		}
+		return connection;
+	}
+
+	/**
+	 * Resolves the host ahead of connecting to measure DNS time;
+	 * the connection then hits the JVM's address cache
+	 */
+	private static void resolveHost(String host, Span span) {
+		long start = System.nanoTime();
+		try {
+			// Only hosts of clients with dnsTtl or warmup are kept warm by the DNS cache
+			if (DnsCache.getInstance().lookupIfManaged(host) == null && span != null) {
+				InetAddress.getAllByName(host);
+			}
+		} catch (IOException e) {
+			// The connection attempt reports the failure
+		}
+		if (span != null) {
+			span.recordPhase("dns", System.nanoTime() - start);
+		}
+	}
+
+	private static void connect(HttpURLConnection connection, Span span) throws IOException {
+		TimingSSLSocketFactory.begin();
+		long start = System.nanoTime();
+		long tlsStart;
+		try {
+			connection.connect();
+		} finally {
+			tlsStart = TimingSSLSocketFactory.end();
+		}
+		long end = System.nanoTime();
+		if (tlsStart > 0) {
+			span.recordPhase("connect", tlsStart - start);
+			span.recordPhase("tls", end - tlsStart);
+		} else {
+			span.recordPhase("connect", end - start);
+		}
+	}
+
+	/**
+	 * Resolves the host of a URL and sends one HEAD request to it, so the first real call finds
+	 * a cached DNS entry, a pooled keep-alive connection and a cached TLS session.
+	 * HEAD has no side effects and its response has no body, so the connection returns to the JDK pool right away.
+	 * Any HTTP status counts as success; only network failures are reported.
+	 */
+	@Override
+	public Map<String, Object> warmUp(String url, int timeoutMillis) throws IOException {
+		URL urlObj = new URL(url);
+		Map<String, Object> result = new HashMap<>();
+		result.put("url", url);
+
+		long start = System.nanoTime();
+		DnsCache.getInstance().lookup(urlObj.getHost());
+		long resolved = System.nanoTime();
+		result.put("dnsMillis", (resolved - start) / 1_000_000.0);
+
+		HttpURLConnection connection = openConnection(urlObj);
+		connection.setRequestMethod("HEAD");
+		connection.setConnectTimeout(timeoutMillis);
+		connection.setReadTimeout(timeoutMillis);
+		connection.setRequestProperty("User-Agent", "Lucee-OpenAPI-Extension/1.0");
+		boolean completed = false;
+		try {
+			connection.connect();
+			result.put("connectMillis", (System.nanoTime() - resolved) / 1_000_000.0);
+			result.put("statusCode", connection.getResponseCode());
+			completed = true;
+		} finally {
+			if (!completed) {
+				connection.disconnect();
+			}
+		}
+		result.put("totalMillis", (System.nanoTime() - start) / 1_000_000.0);
+		return result;
+	}
+
+	private static final class Response extends TransportResponse {
+		private final HttpURLConnection connection;
+
+		Response(HttpURLConnection connection, int statusCode) throws IOException {
+			super(statusCode, connection.getResponseMessage(), connection.getHeaderFields());
+			this.connection = connection;
+		}
+
+		@Override
+		public InputStream getBody() throws IOException {
+			return getStatusCode() >= 400 ? connection.getErrorStream() : connection.getInputStream();
+		}
+
+		@Override
+		public void release(boolean reuse) {
+			// Fully read responses leave the connection in the JDK keep-alive pool for the next call
+			if (!reuse) {
+				connection.disconnect();
+			}
+		}
+	}
+}
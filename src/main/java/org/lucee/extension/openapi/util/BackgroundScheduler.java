@@ -0,0 +1,45 @@
+package org.lucee.extension.openapi.util;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Small daemon thread pool shared by the extension's background maintenance (token refresh, DNS refresh, keep-warm),
+ * so none of that work runs on request threads
+ */
+public class BackgroundScheduler {
+
+	private static final int POOL_SIZE = 2;
+
+	private static volatile ScheduledExecutorService scheduler;
+
+	public static ScheduledExecutorService get() {
+		ScheduledExecutorService result = scheduler;
+		if (result == null) {
+			synchronized (BackgroundScheduler.class) {
+				result = scheduler;
+				if (result == null) {
+					scheduler = result = Executors.newScheduledThreadPool(POOL_SIZE, r -> {
+						Thread thread = new Thread(r, "openapi-background");
+						thread.setDaemon(true);
+						return thread;
+					});
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Stops the pool and drops pending work; called when the bundle stops, so its threads do not outlive
+	 * the extension. A later get() starts a new pool.
+	 */
+	public static void shutdown() {
+		synchronized (BackgroundScheduler.class) {
+			if (scheduler != null) {
+				scheduler.shutdownNow();
+				scheduler = null;
+			}
+		}
+	}
+}
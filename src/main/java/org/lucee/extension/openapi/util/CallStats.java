@@ -0,0 +1,53 @@
+package org.lucee.extension.openapi.util;
+
+/**
+ * Measurements the HTTP layer reports back for a single call
+ */
+public class CallStats {
+
+	private String host;
+	private int statusCode;
+	private long requestBytes;
+	private long responseBytes;
+	private long serializeNanos;
+
+	public String getHost() {
+		return host;
+	}
+
+	public void setHost(String host) {
+		this.host = host;
+	}
+
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	public void setStatusCode(int statusCode) {
+		this.statusCode = statusCode;
+	}
+
+	public long getRequestBytes() {
+		return requestBytes;
+	}
+
+	public void setRequestBytes(long requestBytes) {
+		this.requestBytes = requestBytes;
+	}
+
+	public long getResponseBytes() {
+		return responseBytes;
+	}
+
+	public void setResponseBytes(long responseBytes) {
+		this.responseBytes = responseBytes;
+	}
+
+	public long getSerializeNanos() {
+		return serializeNanos;
+	}
+
+	public void setSerializeNanos(long serializeNanos) {
+		this.serializeNanos = serializeNanos;
+	}
+}
@@ -0,0 +1,167 @@
+package org.lucee.extension.openapi.util;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.security.Security;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process-wide cache of resolved API hosts, for clients configured with dnsTtl or warm-up. Hosts in use are re-resolved in the background before
+ * their entry expires, so request threads only resolve synchronously the very first time.
+ * HttpURLConnection resolves through InetAddress, whose own cache is kept warm by the same refresh:
+ * the refresh interval never exceeds the JVM's networkaddress.cache.ttl.
+ * When a refresh fails, the previous addresses are served until the next successful one.
+ */
+public class DnsCache {
+
+	public static final long DEFAULT_TTL = 60000;
+
+	private static final DnsCache INSTANCE = new DnsCache();
+
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+	private final long jvmTtl = readJvmTtl();
+
+	public static DnsCache getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Sets how long resolved addresses of a host are used; the shortest TTL requested for a host wins
+	 */
+	public void setTtl(String host, long ttlMillis) {
+		if (host == null || ttlMillis <= 0) return;
+		Entry entry = entries.computeIfAbsent(host.toLowerCase(), Entry::new);
+		synchronized (entry) {
+			if (entry.ttl <= 0 || ttlMillis < entry.ttl) {
+				entry.ttl = ttlMillis;
+			}
+		}
+	}
+
+	/**
+	 * Returns the addresses of a host, resolving synchronously only if nothing usable is cached
+	 */
+	public InetAddress[] lookup(String host) throws UnknownHostException {
+		Entry entry = entries.computeIfAbsent(host.toLowerCase(), Entry::new);
+		entry.used = true;
+		InetAddress[] addresses = entry.addresses;
+		long now = System.currentTimeMillis();
+		// Expired entries are still served while their refresh is under way, unless they are far out of date
+		if (addresses != null && now < entry.resolvedAt + 2 * entry.ttl()) {
+			if (now >= entry.resolvedAt + entry.ttl()) {
+				scheduleRefresh(entry, 0);
+			}
+			return addresses;
+		}
+		synchronized (entry) {
+			if (entry.addresses == null || System.currentTimeMillis() >= entry.resolvedAt + 2 * entry.ttl()) {
+				resolve(entry);
+			}
+			return entry.addresses;
+		}
+	}
+
+	/**
+	 * Like lookup(), but only for hosts registered through setTtl() or an earlier lookup(), e.g. by a warm-up;
+	 * returns null without resolving anything for all other hosts
+	 */
+	public InetAddress[] lookupIfManaged(String host) throws UnknownHostException {
+		if (!entries.containsKey(host.toLowerCase())) return null;
+		return lookup(host);
+	}
+
+	/**
+	 * Returns whether a host is in the cache, for diagnostics and tests
+	 */
+	public boolean isManaged(String host) {
+		return entries.containsKey(host.toLowerCase());
+	}
+
+	/**
+	 * Drops all entries, mainly for tests
+	 */
+	public void clear() {
+		entries.clear();
+	}
+
+	private void resolve(Entry entry) throws UnknownHostException {
+		entry.addresses = InetAddress.getAllByName(entry.host);
+		entry.resolvedAt = System.currentTimeMillis();
+		scheduleRefresh(entry, refreshInterval(entry));
+	}
+
+	private long refreshInterval(Entry entry) {
+		long interval = entry.ttl();
+		if (jvmTtl > 0) {
+			interval = Math.min(interval, jvmTtl);
+		}
+		// Ahead of expiry, so lookups never find a stale entry while the host is in use
+		return interval * 3 / 4;
+	}
+
+	private void scheduleRefresh(Entry entry, long delay) {
+		synchronized (entry) {
+			if (entry.refreshScheduled) return;
+			entry.refreshScheduled = true;
+		}
+		BackgroundScheduler.get().schedule(() -> refresh(entry), delay, TimeUnit.MILLISECONDS);
+	}
+
+	private void refresh(Entry entry) {
+		synchronized (entry) {
+			entry.refreshScheduled = false;
+			// Hosts nobody looked up since the last refresh are dropped from the background cycle
+			if (!entry.used || entries.get(entry.host) != entry) return;
+			entry.used = false;
+		}
+		try {
+			resolve(entry);
+		} catch (UnknownHostException e) {
+			// The next lookup past the TTL tries again
+			System.err.println("Warning: Failed to refresh DNS entry for [" + entry.host + "], using previous addresses: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * The JVM's positive lookup cache TTL in milliseconds, or -1 if it caches forever
+	 */
+	private static long readJvmTtl() {
+		String value = null;
+		try {
+			value = Security.getProperty("networkaddress.cache.ttl");
+		} catch (SecurityException e) {
+			// not readable
+		}
+		if (value == null) {
+			value = System.getProperty("sun.net.inetaddr.ttl");
+		}
+		if (value != null) {
+			try {
+				long seconds = Long.parseLong(value.trim());
+				return seconds < 0 ? -1 : seconds * 1000;
+			} catch (NumberFormatException e) {
+				// fall through to the default
+			}
+		}
+		return 30000;
+	}
+
+	private static final class Entry {
+		private final String host;
+		private volatile InetAddress[] addresses;
+		private volatile long resolvedAt;
+		private volatile long ttl;
+		private volatile boolean used;
+		private boolean refreshScheduled;
+
+		private Entry(String host) {
+			this.host = host;
+		}
+
+		private long ttl() {
+			return ttl > 0 ? ttl : DEFAULT_TTL;
+		}
+	}
+}
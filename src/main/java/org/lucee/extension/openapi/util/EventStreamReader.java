@@ -0,0 +1,256 @@
+package org.lucee.extension.openapi.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Incremental reader for text/event-stream and application/x-ndjson bodies.
+ * Only the current line and event are held in memory, whatever the length of the stream,
+ * and a line or event over its limit fails the stream.
+ */
+public class EventStreamReader {
+
+	public static final String EVENT_STREAM = "text/event-stream";
+	public static final String NDJSON = "application/x-ndjson";
+
+	private final ObjectMapper objectMapper;
+	private final StreamHandler handler;
+	private final long maxLineSize;
+	private final long maxEventSize;
+
+	private String lastEventId;
+	private long retryMillis = -1;
+	private long events;
+	private long heartbeats;
+
+	public EventStreamReader(ObjectMapper objectMapper, StreamHandler handler, String lastEventId) {
+		this(objectMapper, handler, lastEventId, ResponseBuffer.DEFAULT_MAX_BODY_SIZE, ResponseBuffer.DEFAULT_MAX_BODY_SIZE);
+	}
+
+	/**
+	 * @param maxLineSize longest line in characters
+	 * @param maxEventSize longest data of an event in characters
+	 */
+	public EventStreamReader(ObjectMapper objectMapper, StreamHandler handler, String lastEventId, long maxLineSize,
+			long maxEventSize) {
+		this.objectMapper = objectMapper;
+		this.handler = handler;
+		this.lastEventId = lastEventId;
+		this.maxLineSize = maxLineSize;
+		this.maxEventSize = maxEventSize;
+	}
+
+	/**
+	 * Whether a response content type is one of the supported streaming formats
+	 */
+	public static boolean isStreamingContentType(String contentType) {
+		return isEventStream(contentType) || isNdjson(contentType);
+	}
+
+	public static boolean isEventStream(String contentType) {
+		return contentType != null && contentType.toLowerCase().startsWith(EVENT_STREAM);
+	}
+
+	public static boolean isNdjson(String contentType) {
+		if (contentType == null) return false;
+		String type = contentType.toLowerCase();
+		return type.startsWith(NDJSON) || type.startsWith("application/jsonl") || type.startsWith("application/json-seq");
+	}
+
+	/**
+	 * Reads Server-Sent Events until the stream ends or the handler stops it
+	 * 
+	 * @return false if the handler asked to stop
+	 */
+	public boolean readEventStream(InputStream in) throws Exception {
+		LineReader reader = new LineReader(new InputStreamReader(in, StandardCharsets.UTF_8), maxLineSize);
+		StringBuilder data = null;
+		String eventType = null;
+		String eventId = null;
+		String line;
+		while ((line = reader.readLine()) != null) {
+			if (line.isEmpty()) {
+				// Blank line dispatches the event
+				if (eventId != null) {
+					lastEventId = eventId;
+				}
+				if (data != null) {
+					Map<String, Object> event = new LinkedHashMap<>();
+					event.put("event", eventType != null ? eventType : "message");
+					event.put("data", data.toString());
+					event.put("id", lastEventId != null ? lastEventId : "");
+					if (retryMillis >= 0) {
+						event.put("retry", retryMillis);
+					}
+					if (!dispatch(event)) return false;
+				}
+				data = null;
+				eventType = null;
+				eventId = null;
+				continue;
+			}
+			if (line.charAt(0) == ':') {
+				// Comment, typically sent by servers as a heartbeat
+				heartbeats++;
+				continue;
+			}
+
+			int colon = line.indexOf(':');
+			String field = colon == -1 ? line : line.substring(0, colon);
+			String value = colon == -1 ? "" : line.substring(colon + 1);
+			if (value.startsWith(" ")) {
+				value = value.substring(1);
+			}
+			switch (field) {
+				case "data":
+					if (data == null) {
+						data = new StringBuilder();
+					} else {
+						data.append('\n');
+					}
+					if (data.length() + value.length() > maxEventSize) {
+						throw new ResponseBuffer.LimitExceededException(
+							"Event exceeds the limit of " + maxEventSize + " characters of data");
+					}
+					data.append(value);
+					break;
+				case "event":
+					eventType = value;
+					break;
+				case "id":
+					if (value.indexOf('\0') == -1) {
+						eventId = value;
+					}
+					break;
+				case "retry":
+					try {
+						retryMillis = Long.parseLong(value.trim());
+					} catch (NumberFormatException e) {
+						// Ignored as required by the spec
+					}
+					break;
+				default:
+					break;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Reads newline-delimited JSON until the stream ends or the handler stops it
+	 * 
+	 * @return false if the handler asked to stop
+	 */
+	public boolean readNdjson(InputStream in) throws Exception {
+		// Each line is an event
+		LineReader reader = new LineReader(new InputStreamReader(in, StandardCharsets.UTF_8), Math.min(maxLineSize, maxEventSize));
+		String line;
+		while ((line = reader.readLine()) != null) {
+			// Also accept RFC 7464 json-seq record separators
+			String trimmed = line.replace('\u001e', ' ').trim();
+			if (trimmed.isEmpty()) {
+				heartbeats++;
+				continue;
+			}
+			Map<String, Object> event = new LinkedHashMap<>();
+			event.put("data", objectMapper.readValue(trimmed, Object.class));
+			if (!dispatch(event)) return false;
+		}
+		return true;
+	}
+
+	private boolean dispatch(Map<String, Object> event) throws HandlerException {
+		events++;
+		try {
+			return handler.onEvent(event);
+		} catch (Exception e) {
+			throw new HandlerException(e);
+		}
+	}
+
+	public String getLastEventId() {
+		return lastEventId;
+	}
+
+	/**
+	 * Reconnection delay requested by the server, or -1 if none was sent
+	 */
+	public long getRetryMillis() {
+		return retryMillis;
+	}
+
+	public long getEvents() {
+		return events;
+	}
+
+	public long getHeartbeats() {
+		return heartbeats;
+	}
+
+	/**
+	 * Reads lines ending in CR, LF or CRLF, failing on a line over the limit instead of buffering it
+	 */
+	private static final class LineReader {
+		private final Reader reader;
+		private final long maxLineSize;
+		private final char[] buffer = new char[8192];
+		private final StringBuilder line = new StringBuilder();
+		private int position;
+		private int count;
+		private boolean skipLf;
+
+		LineReader(Reader reader, long maxLineSize) {
+			this.reader = reader;
+			this.maxLineSize = maxLineSize;
+		}
+
+		/**
+		 * Next line without its line end, null at the end of the stream
+		 */
+		String readLine() throws IOException {
+			line.setLength(0);
+			while (true) {
+				if (position == count) {
+					int read = reader.read(buffer, 0, buffer.length);
+					if (read == -1) {
+						return line.length() > 0 ? line.toString() : null;
+					}
+					position = 0;
+					count = read;
+				}
+				char c = buffer[position++];
+				if (skipLf) {
+					skipLf = false;
+					if (c == '\n') continue;
+				}
+				if (c == '\n' || c == '\r') {
+					skipLf = c == '\r';
+					return line.toString();
+				}
+				if (line.length() >= maxLineSize) {
+					throw new ResponseBuffer.LimitExceededException("Stream line exceeds the limit of " + maxLineSize + " characters");
+				}
+				line.append(c);
+			}
+		}
+	}
+
+	/**
+	 * Failure raised by the handler itself, as opposed to an I/O interruption of the stream
+	 */
+	public static class HandlerException extends Exception {
+
+		private static final long serialVersionUID = 1L;
+
+		HandlerException(Exception cause) {
+			super(cause.getMessage(), cause);
+		}
+	}
+}
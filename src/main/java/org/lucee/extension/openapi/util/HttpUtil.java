@@ -1,5 +1,8 @@
 package org.lucee.extension.openapi.util;
 
+import org.lucee.extension.openapi.transport.Transport;
+
+import java.io.IOException;
 import java.util.Map;
 
 /**
@@ -16,6 +19,35 @@ public class HttpUtil {
 		this.httpUtil = new LuceeHttpUtil();
 	}
 
+	/**
+	 * Constructor sending all requests through the given transport
+	 * 
+	 * @param transport Transport for the requests, e.g. a Unix domain socket to a local sidecar
+	 */
+	public HttpUtil(Transport transport) {
+		this.httpUtil = new LuceeHttpUtil(transport);
+	}
+
+	/**
+	 * Transport the requests of this client go over
+	 */
+	public Transport getTransport() {
+		return httpUtil.getTransport();
+	}
+
+	/**
+	 * Set the largest response body kept in memory
+	 * 
+	 * @param maxBodySize Limit in bytes, used unless a call sets its own
+	 * @param spillToDisk Whether larger bodies are written to a temp file instead of failing the call
+	 * @param maxInFlightBytes Limit of response bytes the client holds in memory at the same time, 0 for none
+	 */
+	public void setBodyLimit(long maxBodySize, boolean spillToDisk, long maxInFlightBytes) {
+		httpUtil.setMaxBodySize(maxBodySize);
+		httpUtil.setSpillToDisk(spillToDisk);
+		httpUtil.setMaxInFlightBytes(maxInFlightBytes);
+	}
+
 	/**
 	 * Make an HTTP request
 	 * 
@@ -32,6 +64,35 @@ public class HttpUtil {
 		return httpUtil.makeRequest(method, url, headers, queryParams, requestBody);
 	}
 
+	/**
+	 * Make an HTTP request with per-call response handling options
+	 * 
+	 * @param method HTTP method (GET, POST, PUT, DELETE, etc.)
+	 * @param url The target URL
+	 * @param headers Optional request headers
+	 * @param queryParams Optional query parameters
+	 * @param requestBody Optional request body for entity-enclosing methods
+	 * @param options Optional per-call options, e.g. download mode
+	 * @return Response object with statusCode, statusText, headers, and data (or download metadata)
+	 * @throws Exception if the request fails
+	 */
+	public Object makeRequest(String method, String url, Map<String, String> headers, 
+							 Map<String, Object> queryParams, Object requestBody, RequestOptions options) throws Exception {
+		return httpUtil.makeRequest(method, url, headers, queryParams, requestBody, options);
+	}
+
+	/**
+	 * Prepare DNS, connection and TLS session for a server ahead of the first call
+	 * 
+	 * @param url Any URL on the server
+	 * @param timeoutMillis Connect and read timeout
+	 * @return Timings and status of the warm-up request
+	 * @throws IOException if the server cannot be reached
+	 */
+	public Map<String, Object> warmUp(String url, int timeoutMillis) throws IOException {
+		return httpUtil.warmUp(url, timeoutMillis);
+	}
+
 	/**
 	 * Make a GET request
 	 * 
@@ -84,9 +145,10 @@ public class HttpUtil {
 	}
 
 	/**
-	 * No explicit close needed for built-in HTTP client
+	 * Release connections pooled by the transport; a no-op for the default transport,
+	 * whose HttpURLConnections are pooled and closed by the JDK
 	 */
 	public void close() {
-		// No-op - Java's HttpURLConnection is closed automatically
+		httpUtil.close();
 	}
 }
@@ -0,0 +1,116 @@
+package org.lucee.extension.openapi.util;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.filter.FilteringParserDelegate;
+import com.fasterxml.jackson.core.filter.TokenFilter;
+
+import lucee.runtime.type.Array;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The part of a JSON response to keep, given as dotted paths like "id" or "owner.name".
+ * Arrays are transparent, "items.name" keeps the name of every element of items ("items[*].name" is the same).
+ * Parsing through the filter skips everything else at the token level, so discarded subtrees are never built.
+ * Objects on a path are kept even if none of their fields match, so arrays of objects keep their size.
+ */
+public final class JsonProjection {
+
+	private final PathFilter root;
+	private final String fields;
+
+	private JsonProjection(PathFilter root, String fields) {
+		this.root = root;
+		this.fields = fields;
+	}
+
+	/**
+	 * Compiles a projection from a comma-separated list, an array or a collection of paths
+	 *
+	 * @return the projection, null if no paths are given, meaning the whole response is kept
+	 */
+	public static JsonProjection compile(Object fields) {
+		if (fields == null || fields instanceof JsonProjection) return (JsonProjection) fields;
+		List<String> paths = new ArrayList<>();
+		Iterator<?> it = null;
+		if (fields instanceof Array) it = ((Array) fields).valueIterator();
+		else if (fields instanceof Collection) it = ((Collection<?>) fields).iterator();
+		else if (fields instanceof Object[]) it = java.util.Arrays.asList((Object[]) fields).iterator();
+		if (it != null) {
+			while (it.hasNext()) {
+				Object path = it.next();
+				if (path != null) addPaths(paths, path.toString());
+			}
+		} else {
+			addPaths(paths, fields.toString());
+		}
+		if (paths.isEmpty()) return null;
+
+		PathFilter root = new PathFilter();
+		for (String path : paths) {
+			PathFilter node = root;
+			for (String segment : path.split("\\.")) {
+				if (segment.isEmpty() || node.leaf) continue;
+				node = node.children.computeIfAbsent(segment, k -> new PathFilter());
+			}
+			// A shorter path includes everything below it
+			node.leaf = true;
+			node.children.clear();
+		}
+		return new JsonProjection(root, String.join(",", paths));
+	}
+
+	private static void addPaths(List<String> paths, String list) {
+		for (String path : list.split(",")) {
+			path = path.trim().replace("[*]", "").replace("[]", "");
+			if (path.startsWith("$")) path = path.substring(1);
+			if (path.startsWith(".")) path = path.substring(1);
+			if (!path.isEmpty()) paths.add(path);
+		}
+	}
+
+	/**
+	 * Wraps a parser so it only returns the tokens of the projected paths
+	 */
+	public JsonParser filter(JsonParser parser) {
+		return new FilteringParserDelegate(parser, root, TokenFilter.Inclusion.INCLUDE_ALL_AND_PATH, true);
+	}
+
+	@Override
+	public String toString() {
+		return fields;
+	}
+
+	private static final class PathFilter extends TokenFilter {
+		private final Map<String, PathFilter> children = new HashMap<>();
+		private boolean leaf;
+
+		@Override
+		public TokenFilter includeProperty(String name) {
+			PathFilter child = children.get(name);
+			if (child == null) return null;
+			return child.leaf ? TokenFilter.INCLUDE_ALL : child;
+		}
+
+		@Override
+		public TokenFilter includeElement(int index) {
+			return this;
+		}
+
+		@Override
+		protected boolean _includeScalar() {
+			// A scalar where the path expects an object or array does not match
+			return false;
+		}
+
+		@Override
+		public boolean includeEmptyObject(boolean contentsFiltered) {
+			return true;
+		}
+	}
+}
@@ -0,0 +1,265 @@
+package org.lucee.extension.openapi.util;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.lucee.extension.openapi.jfr.JfrEvents;
+import org.lucee.extension.openapi.jfr.OpenAPIResponseParseEvent;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Response struct that copies headers and parses the body only the first time they are accessed.
+ * Callers that only look at statusCode (e.g. DELETE or existence checks) never pay for either.
+ * Keys are matched case-insensitively, so CFML lookups like result.STATUSCODE stay lazy.
+ * With a projection, only the projected paths of a JSON body are parsed.
+ * The body keeps its share of the in-flight budget until it is parsed, released, or the response
+ * is garbage collected.
+ */
+public class LazyResponse extends AbstractMap<String, Object> {
+
+	public static final String STATUS_CODE = "statusCode";
+	public static final String STATUS_TEXT = "statusText";
+	public static final String HEADERS = "headers";
+	public static final String DATA = "data";
+	public static final String ERROR = "error";
+	public static final String PATH = "path";
+
+	private final ObjectMapper objectMapper;
+	private final String operationId;
+	private final JsonProjection projection;
+	private final Map<String, Object> values;
+	private Map<String, List<String>> rawHeaders;
+	private ResponseBuffer body;
+
+	public LazyResponse(ObjectMapper objectMapper, int statusCode, String statusText,
+			Map<String, List<String>> rawHeaders, byte[] body) {
+		this(objectMapper, statusCode, statusText, rawHeaders, body, null);
+	}
+
+	public LazyResponse(ObjectMapper objectMapper, int statusCode, String statusText,
+			Map<String, List<String>> rawHeaders, byte[] body, String operationId) {
+		this(objectMapper, statusCode, statusText, rawHeaders, body, operationId, null);
+	}
+
+	/**
+	 * @param projection paths of the JSON body to keep, null for all
+	 */
+	public LazyResponse(ObjectMapper objectMapper, int statusCode, String statusText,
+			Map<String, List<String>> rawHeaders, byte[] body, String operationId, JsonProjection projection) {
+		this(objectMapper, statusCode, statusText, rawHeaders, body != null ? ResponseBuffer.of(body) : null,
+			operationId, projection);
+	}
+
+	/**
+	 * A body that was spilled to a temp file is parsed from there if it is JSON and the file is deleted;
+	 * otherwise it is not decoded at all and the file is returned under "path". The caller owns that file
+	 * and should move or delete it; it is removed when the JVM exits at the latest.
+	 *
+	 * @param projection paths of the JSON body to keep, null for all
+	 */
+	public LazyResponse(ObjectMapper objectMapper, int statusCode, String statusText,
+			Map<String, List<String>> rawHeaders, ResponseBuffer body, String operationId, JsonProjection projection) {
+		this.objectMapper = objectMapper;
+		this.operationId = operationId;
+		this.projection = projection;
+		this.rawHeaders = rawHeaders;
+		this.values = new HashMap<>();
+		values.put(STATUS_CODE, statusCode);
+		values.put(STATUS_TEXT, statusText != null ? statusText : "");
+		if (statusCode >= 400) {
+			values.put(ERROR, "HTTP " + statusCode + ": " + statusText);
+		}
+		if (body != null && body.isSpilled() && !body.isJson()) {
+			values.put(PATH, body.takeFile().getAbsolutePath());
+			body.release();
+			body = null;
+		}
+		if (body != null && body.getSize() == 0) {
+			body.release();
+			body = null;
+		}
+		this.body = body;
+	}
+
+	/**
+	 * Maps any casing of a known key to its canonical name
+	 */
+	private static String canonical(Object key) {
+		if (key == null) return null;
+		String name = key.toString();
+		switch (name.toLowerCase()) {
+			case "statuscode": return STATUS_CODE;
+			case "statustext": return STATUS_TEXT;
+			case "headers": return HEADERS;
+			case "data": return DATA;
+			case "error": return ERROR;
+			case "path": return PATH;
+			default: return name;
+		}
+	}
+
+	private void loadHeaders() {
+		if (rawHeaders == null) return;
+		Map<String, List<String>> headers = new HashMap<>();
+		for (Map.Entry<String, List<String>> entry : rawHeaders.entrySet()) {
+			if (entry.getKey() != null) { // Skip null key (status line)
+				headers.put(entry.getKey(), entry.getValue());
+			}
+		}
+		rawHeaders = null;
+		values.put(HEADERS, headers);
+	}
+
+	private void loadData() {
+		if (body == null) return;
+		OpenAPIResponseParseEvent event = JfrEvents.AVAILABLE ? new OpenAPIResponseParseEvent() : null;
+		if (event != null) {
+			event.begin();
+		}
+		ResponseBuffer buffer = body;
+		body = null;
+
+		// Parse JSON response if possible, straight from the bytes or the spilled file
+		boolean json = false;
+		if (buffer.isJson()) {
+			try {
+				values.put(DATA, parseJson(buffer));
+				json = true;
+			} catch (Exception e) {
+				// Not JSON after all, returned as text
+			}
+		}
+		if (buffer.isSpilled()) {
+			if (!json) {
+				values.put(PATH, buffer.takeFile().getAbsolutePath());
+			}
+		} else if (!json) {
+			values.put(DATA, new String(buffer.getBytes(), StandardCharsets.UTF_8));
+		}
+		// The parsed copy is all that is kept, a spilled JSON file is deleted
+		buffer.release();
+
+		if (event != null && event.shouldCommit()) {
+			event.operationId = operationId;
+			event.responseBytes = buffer.getSize();
+			event.json = json;
+			event.commit();
+		}
+	}
+
+	private Object parseJson(ResponseBuffer buffer) throws IOException {
+		JsonParser parser = buffer.isSpilled()
+			? objectMapper.getFactory().createParser(buffer.openStream())
+			: objectMapper.getFactory().createParser(buffer.getBytes());
+		if (projection != null) {
+			parser = projection.filter(parser);
+		}
+		try (JsonParser p = parser) {
+			// Projected objects are kept even if empty, so only an array filters down to nothing
+			if (p.nextToken() == null) return new ArrayList<>();
+			return objectMapper.readValue(p, Object.class);
+		}
+	}
+
+	private void load(String key) {
+		if (HEADERS.equals(key)) {
+			loadHeaders();
+		} else if (DATA.equals(key)) {
+			loadData();
+		} else if (PATH.equals(key)) {
+			loadSpilled();
+		}
+	}
+
+	private void loadAll() {
+		loadHeaders();
+		loadData();
+	}
+
+	/**
+	 * Discards the body if it has not been parsed, giving its memory budget back and deleting its temp file.
+	 * Calls that only need the status or headers can release the response right away.
+	 */
+	public void release() {
+		if (body != null) {
+			body.release();
+			body = null;
+		}
+	}
+
+	/**
+	 * Whether the body has been parsed yet, mainly for diagnostics and tests
+	 */
+	public boolean isMaterialized() {
+		return rawHeaders == null && body == null;
+	}
+
+	@Override
+	public Object get(Object key) {
+		String name = canonical(key);
+		load(name);
+		return values.get(name);
+	}
+
+	/**
+	 * A spilled body only turns out to be data or a path once it is parsed, so asking for its keys parses it
+	 */
+	private void loadSpilled() {
+		if (body != null && body.isSpilled()) {
+			loadData();
+		}
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		String name = canonical(key);
+		if (DATA.equals(name) || PATH.equals(name)) loadSpilled();
+		if (HEADERS.equals(name) && rawHeaders != null) return true;
+		if (DATA.equals(name) && body != null) return true;
+		return values.containsKey(name);
+	}
+
+	@Override
+	public Object put(String key, Object value) {
+		String name = canonical(key);
+		load(name);
+		return values.put(name, value);
+	}
+
+	@Override
+	public Object remove(Object key) {
+		String name = canonical(key);
+		load(name);
+		return values.remove(name);
+	}
+
+	@Override
+	public int size() {
+		return keySet().size();
+	}
+
+	@Override
+	public Set<String> keySet() {
+		loadSpilled();
+		Set<String> keys = new LinkedHashSet<>(values.keySet());
+		if (rawHeaders != null) keys.add(HEADERS);
+		if (body != null) keys.add(DATA);
+		return Collections.unmodifiableSet(keys);
+	}
+
+	@Override
+	public Set<Map.Entry<String, Object>> entrySet() {
+		loadAll();
+		return values.entrySet();
+	}
+}
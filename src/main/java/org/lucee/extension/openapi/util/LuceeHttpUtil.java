@@ -2,75 +2,221 @@ package org.lucee.extension.openapi.util;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import org.lucee.extension.openapi.json.SchemaSerializer;
+import org.lucee.extension.openapi.trace.Span;
+import org.lucee.extension.openapi.transport.Transport;
+import org.lucee.extension.openapi.transport.TransportRequest;
+import org.lucee.extension.openapi.transport.TransportResponse;
+import org.lucee.extension.openapi.transport.UrlConnectionTransport;
+
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.Map;
 import java.util.HashMap;
-import java.util.List;
+import java.util.TreeMap;
 
 /**
- * HTTP utility that uses Java's built-in HTTP functionality instead of Apache HttpClient
+ * HTTP client logic on top of a Transport: headers, bodies, limits, downloads, streams and tracing.
+ * The default transport uses Java's built-in HTTP functionality instead of Apache HttpClient.
  */
 public class LuceeHttpUtil {
 	
-	private final ObjectMapper objectMapper;
+	/**
+	 * Buffer size used when streaming downloads, independent of the response size
+	 */
+	private static final int DOWNLOAD_BUFFER_SIZE = 8192;
+	
+	public static final int CONNECT_TIMEOUT = 30000;
+	public static final int READ_TIMEOUT = 30000;
+	
+	private final Transport transport;
+	private long maxBodySize = ResponseBuffer.DEFAULT_MAX_BODY_SIZE;
+	private boolean spillToDisk = true;
+	private ResponseBuffer.Budget budget;
 	
 	public LuceeHttpUtil() {
-		this.objectMapper = new ObjectMapper();
+		this(UrlConnectionTransport.getInstance());
+	}
+	
+	public LuceeHttpUtil(Transport transport) {
+		this.transport = transport;
+	}
+	
+	public Transport getTransport() {
+		return transport;
+	}
+	
+	/**
+	 * Largest response body kept in memory, unless a call sets its own limit
+	 */
+	public void setMaxBodySize(long maxBodySize) {
+		this.maxBodySize = maxBodySize;
+	}
+	
+	/**
+	 * Whether bodies over the limits are written to a temp file (true) or fail the call (false)
+	 */
+	public void setSpillToDisk(boolean spillToDisk) {
+		this.spillToDisk = spillToDisk;
+	}
+	
+	/**
+	 * Limit of response bytes this client holds in memory at the same time, zero or less for none
+	 * beyond the process-wide limit
+	 */
+	public void setMaxInFlightBytes(long maxInFlightBytes) {
+		this.budget = maxInFlightBytes > 0 ? new ResponseBuffer.Budget(maxInFlightBytes) : null;
+	}
+	
+	/**
+	 * Response bytes of this client held in memory and not yet released, 0 without a client limit
+	 */
+	public long getInFlightBytes() {
+		ResponseBuffer.Budget current = budget;
+		return current != null ? current.getUsed() : 0;
+	}
+	
+	/**
+	 * Shared mapper, initialized by the first call rather than with each client
+	 */
+	private static ObjectMapper objectMapper() {
+		return MapperHolder.MAPPER;
+	}
+	
+	private static final class MapperHolder {
+		static final ObjectMapper MAPPER = new ObjectMapper();
 	}
 	
 	public Object makeRequest(String method, String url, Map<String, String> headers, 
 							 Map<String, Object> queryParams, Object requestBody) throws Exception {
+		return makeRequest(method, url, headers, queryParams, requestBody, null);
+	}
+	
+	public Object makeRequest(String method, String url, Map<String, String> headers, 
+							 Map<String, Object> queryParams, Object requestBody, RequestOptions options) throws Exception {
 		
 		// Build the URL with query parameters
 		String fullUrl = buildUrlWithQueryParams(url, queryParams);
 		
-		// Create HTTP connection
 		URL urlObj = new URL(fullUrl);
-		HttpURLConnection connection = (HttpURLConnection) urlObj.openConnection();
+		Span span = options != null && options.getSpan() != null 
+			? options.getSpan().startChild("HTTP " + method.toUpperCase()) : null;
+		if (span != null) {
+			span.setAttribute("http.method", method.toUpperCase());
+			span.setAttribute("http.url", fullUrl);
+			span.setAttribute("net.peer.name", urlObj.getHost());
+		}
+		CallStats stats = options != null ? options.getStats() : null;
+		if (stats != null) {
+			stats.setHost(urlObj.getHost());
+		}
+		// Lines and events of a stream are bounded by the body limit
+		StreamState stream = options != null && options.getStreamHandler() != null 
+			? new StreamState(objectMapper(), options, options.getMaxBodySize() > 0 ? options.getMaxBodySize() : maxBodySize) : null;
 		
 		try {
-			// Set method
-			connection.setRequestMethod(method.toUpperCase());
-			
-			// Set timeouts
-			connection.setConnectTimeout(30000);
-			connection.setReadTimeout(30000);
-			
-			// Set default headers
-			connection.setRequestProperty("Content-Type", "application/json");
-			connection.setRequestProperty("Accept", "application/json");
-			connection.setRequestProperty("User-Agent", "Lucee-OpenAPI-Extension/1.0");
-			
-			// Add custom headers
-			if (headers != null) {
-				for (Map.Entry<String, String> entry : headers.entrySet()) {
-					connection.setRequestProperty(entry.getKey(), entry.getValue());
-				}
-			}
-			
 			// Add request body for applicable methods
+			byte[] body = null;
 			if (requestBody != null && isEntityEnclosingMethod(method)) {
-				connection.setDoOutput(true);
-				String jsonBody = objectMapper.writeValueAsString(requestBody);
-				
-				try (OutputStream os = connection.getOutputStream()) {
-					byte[] input = jsonBody.getBytes(StandardCharsets.UTF_8);
-					os.write(input, 0, input.length);
-				}
+				body = serializeBody(requestBody, options != null ? options.getBodySerializer() : null, stats);
 			}
 			
-			// Execute request and get response
-			return processResponse(connection);
-			
+			while (true) {
+				TransportRequest request = new TransportRequest(method.toUpperCase(), urlObj, 
+					buildHeaders(headers, span, stream), body, CONNECT_TIMEOUT, 
+					// Streams use the idle (heartbeat) timeout between reads
+					stream != null ? stream.idleTimeoutMillis : READ_TIMEOUT, span);
+				TransportResponse response;
+				try {
+					response = transport.send(request);
+				} catch (IOException e) {
+					// A failed reconnect uses up an attempt like an interrupted stream
+					if (stream == null || stream.reconnects == 0 || !stream.canReconnect()) {
+						throw e;
+					}
+					stream.awaitReconnect();
+					continue;
+				}
+				boolean consumed = false;
+				try {
+					Object result = processResponse(request, response, options, span, stream);
+					// Fully read responses leave the connection pooled for the next call
+					consumed = stream == null;
+					if (result != StreamState.RECONNECT) {
+						return result;
+					}
+				} finally {
+					response.release(consumed);
+				}
+				
+				// Interrupted event stream, resume after the server's retry delay
+				stream.awaitReconnect();
+			}
+		} catch (Exception e) {
+			if (span != null) {
+				span.setAttribute("error", e.getClass().getName() + ": " + e.getMessage());
+			}
+			throw e;
 		} finally {
-			connection.disconnect();
+			if (span != null) {
+				span.end();
+			}
+		}
+	}
+	
+	private static Map<String, String> buildHeaders(Map<String, String> headers, Span span, StreamState stream) {
+		// Custom headers replace defaults whatever their case
+		Map<String, String> result = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		result.put("Content-Type", "application/json");
+		result.put("Accept", "application/json");
+		result.put("User-Agent", "Lucee-OpenAPI-Extension/1.0");
+		if (headers != null) {
+			result.putAll(headers);
 		}
+		if (stream != null && stream.reader.getLastEventId() != null) {
+			result.put("Last-Event-ID", stream.reader.getLastEventId());
+		}
+		// Propagate the trace
+		if (span != null) {
+			result.put("traceparent", span.getContext().toTraceparent());
+			if (span.getContext().getTraceState() != null) {
+				result.put("tracestate", span.getContext().getTraceState());
+			}
+		}
+		return result;
+	}
+	
+	private static byte[] serializeBody(Object requestBody, SchemaSerializer serializer, CallStats stats) throws IOException {
+		long start = System.nanoTime();
+		byte[] input = serializer != null ? serializer.serialize(requestBody) : objectMapper().writeValueAsBytes(requestBody);
+		if (stats != null) {
+			stats.setSerializeNanos(System.nanoTime() - start);
+			stats.setRequestBytes(input.length);
+		}
+		return input;
+	}
+	
+	/**
+	 * Prepares the transport for a server ahead of the first call; for the default transport
+	 * this resolves the host and completes one request, see UrlConnectionTransport
+	 *
+	 * @return timings of the warm-up
+	 */
+	public Map<String, Object> warmUp(String url, int timeoutMillis) throws IOException {
+		return transport.warmUp(url, timeoutMillis);
+	}
+	
+	/**
+	 * Releases resources pooled by the transport
+	 */
+	public void close() {
+		transport.close();
 	}
 	
 	private String buildUrlWithQueryParams(String url, Map<String, Object> queryParams) throws Exception {
@@ -102,55 +248,236 @@ public class LuceeHttpUtil {
 			   "PATCH".equalsIgnoreCase(method);
 	}
 	
-	private Object processResponse(HttpURLConnection connection) throws Exception {
-		// Get response code and message
-		int statusCode = connection.getResponseCode();
-		String statusText = connection.getResponseMessage();
+	/**
+	 * Whether a content type describes a binary payload that must not be decoded as text
+	 */
+	public static boolean isBinaryContentType(String contentType) {
+		if (contentType == null || contentType.isEmpty()) {
+			return false;
+		}
+		String type = contentType.toLowerCase();
+		int semi = type.indexOf(';');
+		if (semi != -1) {
+			type = type.substring(0, semi);
+		}
+		type = type.trim();
+		if (type.startsWith("text/") || type.contains("json") || type.contains("xml") 
+				|| type.equals("application/x-www-form-urlencoded") || type.equals("*/*")) {
+			return false;
+		}
+		return type.startsWith("application/") || type.startsWith("image/") 
+			|| type.startsWith("audio/") || type.startsWith("video/") || type.startsWith("font/");
+	}
+	
+	private Object processResponse(TransportRequest request, TransportResponse response, RequestOptions options, 
+			Span span, StreamState stream) throws Exception {
+		int statusCode = response.getStatusCode();
+		String statusText = response.getStatusText();
+		long downloadStart = System.nanoTime();
+		CallStats stats = options != null ? options.getStats() : null;
+		if (stats != null) {
+			stats.setStatusCode(statusCode);
+		}
+		if (span != null) {
+			span.setAttribute("http.status_code", statusCode);
+		}
 		
-		// Extract headers
-		Map<String, List<String>> responseHeaders = new HashMap<>();
-		for (Map.Entry<String, List<String>> entry : connection.getHeaderFields().entrySet()) {
-			if (entry.getKey() != null) { // Skip null key (status line)
-				responseHeaders.put(entry.getKey(), entry.getValue());
+		// Stream successful downloads straight to their target
+		if (options != null && options.isDownload() && statusCode < 400) {
+			Map<String, Object> result = processDownload(response, options);
+			if (stats != null) {
+				stats.setResponseBytes((Long) result.get("size"));
 			}
+			if (span != null) {
+				span.recordPhase("download", System.nanoTime() - downloadStart);
+			}
+			return result;
 		}
 		
-		// Get response body
-		String responseBody = "";
-		try {
-			InputStream inputStream = statusCode >= 400 ? connection.getErrorStream() : connection.getInputStream();
-			if (inputStream != null) {
-				responseBody = new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+		// Deliver streaming responses event by event
+		if (stream != null && statusCode < 400 && EventStreamReader.isStreamingContentType(response.getContentType())) {
+			Object result = processStream(response, stream);
+			if (span != null) {
+				span.recordPhase("download", System.nanoTime() - downloadStart);
+			}
+			return result;
+		}
+		
+		// Get response body with bounded memory; a HEAD response never has one
+		ResponseBuffer responseBody = null;
+		if (!"HEAD".equals(request.getMethod())) {
+			long limit = options != null && options.getMaxBodySize() > 0 ? options.getMaxBodySize() : maxBodySize;
+			String description = options != null && options.getOperationId() != null 
+				? "[" + options.getOperationId() + "]" : request.getUrl().toString();
+			try {
+				InputStream inputStream = response.getBody();
+				if (inputStream != null) {
+					try (InputStream in = inputStream) {
+						responseBody = ResponseBuffer.read(in, response.getContentLength(), limit, spillToDisk, description, budget);
+					}
+				}
+			} catch (ResponseBuffer.LimitExceededException e) {
+				throw e;
+			} catch (IOException e) {
+				// Handle cases where there's no response body
+			}
+		}
+		
+		long responseBytes = responseBody != null ? responseBody.getSize() : 0;
+		if (span != null) {
+			span.recordPhase("download", System.nanoTime() - downloadStart);
+			span.setAttribute("http.response_content_length", responseBytes);
+			if (responseBody != null && responseBody.isSpilled()) {
+				span.setAttribute("openapi.response_spilled", true);
 			}
+		}
+		if (stats != null) {
+			stats.setResponseBytes(responseBytes);
+		}
+		
+		// Headers are copied and the body is parsed only when the caller accesses them
+		return new LazyResponse(objectMapper(), statusCode, statusText, response.getHeaders(), responseBody,
+			options != null ? options.getOperationId() : null, options != null ? options.getProjection() : null);
+	}
+	
+	private Object processStream(TransportResponse response, StreamState stream) throws Exception {
+		boolean eventStream = EventStreamReader.isEventStream(response.getContentType());
+		boolean completed;
+		try (InputStream in = bodyOrEmpty(response)) {
+			completed = eventStream ? stream.reader.readEventStream(in) : stream.reader.readNdjson(in);
+		} catch (EventStreamReader.HandlerException e) {
+			throw (Exception) e.getCause();
+		} catch (ResponseBuffer.LimitExceededException e) {
+			// Resuming would only read the same oversized event again
+			throw e;
 		} catch (IOException e) {
-			// Handle cases where there's no response body
+			// Only event streams can resume where they stopped, via Last-Event-ID
+			if (eventStream && stream.canReconnect()) {
+				return StreamState.RECONNECT;
+			}
+			throw e;
 		}
 		
-		// Create response object
 		Map<String, Object> result = new HashMap<>();
-		result.put("statusCode", statusCode);
-		result.put("statusText", statusText != null ? statusText : "");
-		result.put("headers", responseHeaders);
+		result.put("statusCode", response.getStatusCode());
+		result.put("statusText", response.getStatusText() != null ? response.getStatusText() : "");
+		result.put("headers", new HashMap<>(response.getHeaders()));
+		result.put("events", stream.reader.getEvents());
+		result.put("heartbeats", stream.reader.getHeartbeats());
+		result.put("lastEventId", stream.reader.getLastEventId() != null ? stream.reader.getLastEventId() : "");
+		result.put("reconnects", stream.reconnects);
+		result.put("stopped", !completed);
+		return result;
+	}
+	
+	private Map<String, Object> processDownload(TransportResponse response, RequestOptions options) throws Exception {
+		Object target = options.getSaveTo();
+		File file = null;
+		OutputStream out;
+		boolean closeOut;
 		
-		// Parse JSON response if possible
-		if (responseBody != null && !responseBody.isEmpty()) {
-			try {
-				String trimmed = responseBody.trim();
-				if (trimmed.startsWith("{") || trimmed.startsWith("[")) {
-					result.put("data", objectMapper.readValue(responseBody, Object.class));
-				} else {
-					result.put("data", responseBody);
-				}
-			} catch (Exception e) {
-				result.put("data", responseBody);
+		if (target instanceof OutputStream) {
+			out = (OutputStream) target;
+			closeOut = false;
+		} else {
+			if (target instanceof File) {
+				file = (File) target;
+			} else if (target != null) {
+				file = new File(target.toString());
+			} else {
+				// Owned by the caller, who should move or delete it; removed at JVM exit at the latest
+				file = File.createTempFile("openapi-download-", ".bin");
+				file.deleteOnExit();
+			}
+			File parent = file.getAbsoluteFile().getParentFile();
+			if (parent != null && !parent.exists()) {
+				parent.mkdirs();
 			}
+			out = new FileOutputStream(file);
+			closeOut = true;
 		}
 		
-		// Check for HTTP errors
-		if (statusCode >= 400) {
-			result.put("error", "HTTP " + statusCode + ": " + statusText);
+		MessageDigest digest = MessageDigest.getInstance("SHA-256");
+		long size = 0;
+		boolean complete = false;
+		// A response without a body (204, 304) is saved as an empty file
+		try (InputStream in = bodyOrEmpty(response)) {
+			byte[] buffer = new byte[DOWNLOAD_BUFFER_SIZE];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+				digest.update(buffer, 0, read);
+				size += read;
+			}
+			out.flush();
+			complete = true;
+		} finally {
+			if (closeOut) {
+				out.close();
+			}
+			// A partial file is never left behind
+			if (!complete && file != null) {
+				file.delete();
+			}
 		}
 		
+		Map<String, Object> result = new HashMap<>();
+		result.put("statusCode", response.getStatusCode());
+		result.put("statusText", response.getStatusText() != null ? response.getStatusText() : "");
+		result.put("headers", new HashMap<>(response.getHeaders()));
+		result.put("contentType", response.getContentType() != null ? response.getContentType() : "");
+		result.put("size", size);
+		result.put("hash", toHex(digest.digest()));
+		result.put("hashAlgorithm", "SHA-256");
+		if (file != null) {
+			result.put("path", file.getAbsolutePath());
+		}
 		return result;
 	}
+	
+	private static InputStream bodyOrEmpty(TransportResponse response) throws IOException {
+		InputStream body = response.getBody();
+		return body != null ? body : InputStream.nullInputStream();
+	}
+	
+	private static String toHex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * Progress of a streaming call, kept across reconnects
+	 */
+	private static class StreamState {
+		
+		static final Object RECONNECT = new Object();
+		
+		final EventStreamReader reader;
+		final int idleTimeoutMillis;
+		final int maxReconnects;
+		final long defaultRetryMillis;
+		int reconnects;
+		
+		StreamState(ObjectMapper objectMapper, RequestOptions options, long maxSize) {
+			this.reader = new EventStreamReader(objectMapper, options.getStreamHandler(), options.getLastEventId(), maxSize, maxSize);
+			this.idleTimeoutMillis = options.getStreamIdleTimeout();
+			this.maxReconnects = options.getMaxReconnects();
+			this.defaultRetryMillis = options.getReconnectDelay();
+		}
+		
+		boolean canReconnect() {
+			return reconnects < maxReconnects;
+		}
+		
+		void awaitReconnect() throws InterruptedException {
+			reconnects++;
+			long delay = reader.getRetryMillis() >= 0 ? reader.getRetryMillis() : defaultRetryMillis;
+			if (delay > 0) {
+				Thread.sleep(delay);
+			}
+		}
+	}
 }
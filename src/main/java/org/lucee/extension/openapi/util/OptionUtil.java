@@ -0,0 +1,76 @@
+package org.lucee.extension.openapi.util;
+
+import java.util.Map;
+
+/**
+ * Helpers for reading values from the options struct passed to createOpenApiProxy.
+ * Lookups are case-insensitive, as CFML struct keys may come in any case.
+ */
+public class OptionUtil {
+
+	/**
+	 * Get an option value, or null if the options are not a struct or the key is missing
+	 */
+	public static Object get(Object options, String name) {
+		if (!(options instanceof Map)) {
+			return null;
+		}
+		for (Map.Entry<?, ?> entry : ((Map<?, ?>) options).entrySet()) {
+			if (entry.getKey() != null && name.equalsIgnoreCase(entry.getKey().toString())) {
+				return entry.getValue();
+			}
+		}
+		return null;
+	}
+
+	public static String getString(Object options, String name, String defaultValue) {
+		Object value = get(options, name);
+		return value != null ? value.toString() : defaultValue;
+	}
+
+	public static boolean getBoolean(Object options, String name, boolean defaultValue) {
+		Object value = get(options, name);
+		if (value == null) return defaultValue;
+		if (value instanceof Boolean) return (Boolean) value;
+		if (value instanceof Number) return ((Number) value).doubleValue() != 0;
+		String str = value.toString().trim();
+		return "true".equalsIgnoreCase(str) || "yes".equalsIgnoreCase(str) || "1".equals(str);
+	}
+
+	public static long getLong(Object options, String name, long defaultValue) {
+		Object value = get(options, name);
+		if (value == null) return defaultValue;
+		if (value instanceof Number) return ((Number) value).longValue();
+		try {
+			return (long) Double.parseDouble(value.toString().trim());
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+
+	public static double getDouble(Object options, String name, double defaultValue) {
+		Object value = get(options, name);
+		if (value == null) return defaultValue;
+		if (value instanceof Number) return ((Number) value).doubleValue();
+		try {
+			return Double.parseDouble(value.toString().trim());
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * Load the class named by an option value, or return null if there is no such class or it does not implement
+	 * the given type. The class is not initialized by the lookup, so option values cannot run static initializers
+	 * of unrelated classes.
+	 */
+	public static <T> Class<? extends T> getClass(String name, Class<T> type) {
+		Class<?> clazz;
+		try {
+			clazz = Class.forName(name, false, type.getClassLoader());
+		} catch (ClassNotFoundException | LinkageError e) {
+			return null;
+		}
+		return type.isAssignableFrom(clazz) ? clazz.asSubclass(type) : null;
+	}
+}
@@ -0,0 +1,53 @@
+package org.lucee.extension.openapi.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+
+/**
+ * Files the extension generates and later trusts (proxy sources, spec indexes), kept where
+ * only the user running Lucee can write them
+ */
+public final class PrivateFiles {
+
+	private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rwx------");
+
+	private PrivateFiles() {
+	}
+
+	/**
+	 * Creates a directory if needed and restricts it to its owner
+	 *
+	 * @throws IOException if the directory cannot be restricted, e.g. because another user owns it
+	 */
+	public static File directory(File dir) throws IOException {
+		Path path = dir.toPath();
+		Files.createDirectories(path);
+		if (Files.getFileAttributeView(path, PosixFileAttributeView.class) != null) {
+			// Only the owner may change permissions, so a directory planted by someone else fails here
+			Files.setPosixFilePermissions(path, OWNER_ONLY);
+		}
+		return dir;
+	}
+
+	/**
+	 * Replaces a file in a directory returned by directory() with new content; the file is never seen half written
+	 */
+	public static void write(File file, byte[] content) throws IOException {
+		// Temp files are created readable and writable by their owner only
+		Path tmp = Files.createTempFile(file.getParentFile().toPath(), file.getName(), ".tmp");
+		try {
+			Files.write(tmp, content);
+			Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			Files.deleteIfExists(tmp);
+			throw e;
+		}
+	}
+}
@@ -0,0 +1,190 @@
+package org.lucee.extension.openapi.util;
+
+import org.lucee.extension.openapi.json.SchemaSerializer;
+import org.lucee.extension.openapi.trace.Span;
+
+import java.io.File;
+import java.io.OutputStream;
+
+/**
+ * Per-call settings that control how a request is executed and how its response is handled
+ */
+public class RequestOptions {
+
+	private boolean download;
+	private Object saveTo;
+	private Span span;
+	private String operationId;
+	private CallStats stats;
+	private SchemaSerializer bodySerializer;
+	private JsonProjection projection;
+	private long maxBodySize;
+	private StreamHandler streamHandler;
+	private String lastEventId;
+	private int streamIdleTimeout = 60000;
+	private int maxReconnects = 3;
+	private long reconnectDelay = 3000;
+
+	/**
+	 * Whether the response body should be streamed to a file or stream instead of being decoded
+	 */
+	public boolean isDownload() {
+		return download;
+	}
+
+	public RequestOptions setDownload(boolean download) {
+		this.download = download;
+		return this;
+	}
+
+	/**
+	 * Download target, either a file path (String or File) or an OutputStream.
+	 * When null and download mode is active, a temp file is created, owned by the caller.
+	 */
+	public Object getSaveTo() {
+		return saveTo;
+	}
+
+	public RequestOptions setSaveTo(Object saveTo) {
+		if (saveTo != null && !(saveTo instanceof OutputStream) && !(saveTo instanceof File)) {
+			saveTo = saveTo.toString();
+		}
+		this.saveTo = saveTo;
+		if (saveTo != null) {
+			this.download = true;
+		}
+		return this;
+	}
+
+	/**
+	 * Span of the calling operation; when set, the HTTP layer records a child span with phase timings
+	 */
+	public Span getSpan() {
+		return span;
+	}
+
+	public RequestOptions setSpan(Span span) {
+		this.span = span;
+		return this;
+	}
+
+	/**
+	 * Operation the request belongs to, used to label diagnostics
+	 */
+	public String getOperationId() {
+		return operationId;
+	}
+
+	public RequestOptions setOperationId(String operationId) {
+		this.operationId = operationId;
+		return this;
+	}
+
+	/**
+	 * When set, the HTTP layer reports byte counts and timings into it
+	 */
+	public CallStats getStats() {
+		return stats;
+	}
+
+	public RequestOptions setStats(CallStats stats) {
+		this.stats = stats;
+		return this;
+	}
+
+	/**
+	 * Serializer compiled from the operation's requestBody schema; without one the body is written generically
+	 */
+	public SchemaSerializer getBodySerializer() {
+		return bodySerializer;
+	}
+
+	public RequestOptions setBodySerializer(SchemaSerializer bodySerializer) {
+		this.bodySerializer = bodySerializer;
+		return this;
+	}
+
+	/**
+	 * Handler receiving the events of text/event-stream or application/x-ndjson responses as they arrive
+	 */
+	public StreamHandler getStreamHandler() {
+		return streamHandler;
+	}
+
+	public RequestOptions setStreamHandler(StreamHandler streamHandler) {
+		this.streamHandler = streamHandler;
+		return this;
+	}
+
+	/**
+	 * Event id to resume an event stream from, sent as Last-Event-ID
+	 */
+	public String getLastEventId() {
+		return lastEventId;
+	}
+
+	public RequestOptions setLastEventId(String lastEventId) {
+		this.lastEventId = lastEventId;
+		return this;
+	}
+
+	/**
+	 * Maximum time in milliseconds without any data (events or heartbeats) before the stream counts as interrupted
+	 */
+	public int getStreamIdleTimeout() {
+		return streamIdleTimeout;
+	}
+
+	public RequestOptions setStreamIdleTimeout(int streamIdleTimeout) {
+		this.streamIdleTimeout = streamIdleTimeout;
+		return this;
+	}
+
+	/**
+	 * How often an interrupted event stream is resumed before the call fails
+	 */
+	public int getMaxReconnects() {
+		return maxReconnects;
+	}
+
+	public RequestOptions setMaxReconnects(int maxReconnects) {
+		this.maxReconnects = maxReconnects;
+		return this;
+	}
+
+	/**
+	 * Delay before resuming an event stream when the server did not send a retry value
+	 */
+	public long getReconnectDelay() {
+		return reconnectDelay;
+	}
+
+	public RequestOptions setReconnectDelay(long reconnectDelay) {
+		this.reconnectDelay = reconnectDelay;
+		return this;
+	}
+
+	/**
+	 * Paths of the JSON response to keep, null to keep the whole response
+	 */
+	public JsonProjection getProjection() {
+		return projection;
+	}
+
+	public RequestOptions setProjection(JsonProjection projection) {
+		this.projection = projection;
+		return this;
+	}
+
+	/**
+	 * Largest response body kept in memory for this call, 0 for the client's limit
+	 */
+	public long getMaxBodySize() {
+		return maxBodySize;
+	}
+
+	public RequestOptions setMaxBodySize(long maxBodySize) {
+		this.maxBodySize = maxBodySize;
+		return this;
+	}
+}
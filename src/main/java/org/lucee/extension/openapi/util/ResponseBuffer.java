@@ -0,0 +1,320 @@
+package org.lucee.extension.openapi.util;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.Cleaner;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A response body read with bounded memory. Bodies are buffered in memory up to a per-call limit,
+ * and all bodies held in memory at the same time share a process-wide budget, plus the budget of their
+ * client if it sets one. A body that exceeds any of them is written to a temp file instead, or rejected.
+ * A buffer holds its share of the budgets, and its temp file, until it is released, at the latest when
+ * it is garbage collected.
+ */
+public final class ResponseBuffer {
+
+	public static final long DEFAULT_MAX_BODY_SIZE = 64L * 1024 * 1024;
+
+	/**
+	 * System property with the process-wide budget in bytes, an admin setting
+	 */
+	public static final String GLOBAL_LIMIT_PROPERTY = "lucee.openapi.maxInFlightBytes";
+
+	private static final int CHUNK_SIZE = 8192;
+	private static final Cleaner CLEANER = Cleaner.create();
+	private static final Budget GLOBAL = new Budget(0);
+	private static final long DEFAULT_GLOBAL_LIMIT = Runtime.getRuntime().maxMemory() / 4;
+
+	static {
+		resetGlobalLimit();
+	}
+
+	private final byte[] bytes;
+	private final long size;
+	private final boolean json;
+	private final Resources resources;
+	private final Cleaner.Cleanable cleanable;
+
+	private ResponseBuffer(byte[] bytes, File file, long size, boolean json, Budget budget, long reserved) {
+		this.bytes = bytes;
+		this.size = size;
+		this.json = json;
+		this.resources = new Resources(file, budget, reserved);
+		this.cleanable = file != null || reserved > 0 ? CLEANER.register(this, resources) : null;
+	}
+
+	/**
+	 * Wraps a body that is already in memory
+	 */
+	public static ResponseBuffer of(byte[] bytes) {
+		return new ResponseBuffer(bytes, null, bytes.length, startsLikeJson(bytes, 0, bytes.length) == Boolean.TRUE, null, 0);
+	}
+
+	/**
+	 * Reads a body, keeping at most maxInMemory bytes of it in memory
+	 *
+	 * @param contentLength declared length, -1 if unknown
+	 * @param spill whether a body over the limits is written to a temp file rather than rejected
+	 * @param description names the call in the error message
+	 * @param budget budget of the client, null if it has none
+	 * @throws LimitExceededException if the body is over the limits and must not spill
+	 */
+	public static ResponseBuffer read(InputStream in, long contentLength, long maxInMemory, boolean spill, String description,
+			Budget budget) throws IOException {
+		ByteArrayOutputStream buffer = null;
+		long reserved = 0;
+		Boolean json = null;
+		boolean kept = false;
+		try {
+			// A declared length over the limit goes to disk right away
+			if (contentLength <= maxInMemory) {
+				// Grown as data arrives, a declared length is no reason to allocate it upfront
+				buffer = new ByteArrayOutputStream(contentLength > 0 ? (int) Math.min(contentLength, 1 << 20) : CHUNK_SIZE);
+				byte[] chunk = new byte[CHUNK_SIZE];
+				int read;
+				while ((read = in.read(chunk)) != -1) {
+					if (buffer.size() + read > maxInMemory) {
+						return overflow(in, buffer, chunk, read, json, spill,
+							description + " exceeds the in-memory limit of " + maxInMemory + " bytes");
+					}
+					if (!GLOBAL.reserve(read)) {
+						return overflow(in, buffer, chunk, read, json, spill,
+							description + " exceeds the global limit of " + GLOBAL.limit + " in-flight response bytes");
+					}
+					if (budget != null && !budget.reserve(read)) {
+						GLOBAL.release(read);
+						return overflow(in, buffer, chunk, read, json, spill,
+							description + " exceeds the client limit of " + budget.limit + " in-flight response bytes");
+					}
+					reserved += read;
+					if (json == null) json = startsLikeJson(chunk, 0, read);
+					buffer.write(chunk, 0, read);
+				}
+				byte[] bytes = buffer.toByteArray();
+				kept = true;
+				return new ResponseBuffer(bytes, null, bytes.length, json == Boolean.TRUE, budget, reserved);
+			}
+			return overflow(in, null, null, 0, null, spill,
+				description + " declares " + contentLength + " bytes, over the in-memory limit of " + maxInMemory + " bytes");
+		} finally {
+			// A body that ends up on disk or fails gives its memory back right away
+			if (!kept) {
+				GLOBAL.release(reserved);
+				if (budget != null) budget.release(reserved);
+			}
+		}
+	}
+
+	private static ResponseBuffer overflow(InputStream in, ByteArrayOutputStream buffered, byte[] chunk, int chunkLength,
+			Boolean json, boolean spill, String message) throws IOException {
+		if (!spill) {
+			throw new LimitExceededException("Response body of " + message);
+		}
+		File file = File.createTempFile("openapi-response-", ".tmp");
+		long size = 0;
+		try (OutputStream out = new FileOutputStream(file)) {
+			if (buffered != null) {
+				buffered.writeTo(out);
+				size += buffered.size();
+			}
+			if (chunk != null) {
+				if (json == null) json = startsLikeJson(chunk, 0, chunkLength);
+				out.write(chunk, 0, chunkLength);
+				size += chunkLength;
+			}
+			byte[] copy = new byte[CHUNK_SIZE];
+			int read;
+			while ((read = in.read(copy)) != -1) {
+				if (json == null) json = startsLikeJson(copy, 0, read);
+				out.write(copy, 0, read);
+				size += read;
+			}
+		} catch (IOException e) {
+			file.delete();
+			throw e;
+		}
+		return new ResponseBuffer(null, file, size, json == Boolean.TRUE, null, 0);
+	}
+
+	/**
+	 * TRUE if the first non-whitespace byte opens a JSON object or array, null if there is none yet
+	 */
+	private static Boolean startsLikeJson(byte[] bytes, int offset, int length) {
+		for (int i = offset; i < offset + length; i++) {
+			byte b = bytes[i];
+			if (b == '{' || b == '[') return Boolean.TRUE;
+			if (b > ' ') return Boolean.FALSE;
+		}
+		return null;
+	}
+
+	/**
+	 * Sets the process-wide limit of response bytes held in memory. This is an admin setting shared by all
+	 * applications, clients limit themselves with their own Budget. Zero or less restores the default.
+	 */
+	public static void setGlobalLimit(long limit) {
+		GLOBAL.limit = limit > 0 ? limit : DEFAULT_GLOBAL_LIMIT;
+	}
+
+	/**
+	 * Restores the global limit configured by the system property, or else a quarter of the heap
+	 */
+	public static void resetGlobalLimit() {
+		long limit = 0;
+		String value = System.getProperty(GLOBAL_LIMIT_PROPERTY);
+		if (value != null) {
+			try {
+				limit = Long.parseLong(value.trim());
+			} catch (NumberFormatException e) {
+				System.err.println("Warning: Ignoring invalid " + GLOBAL_LIMIT_PROPERTY + " [" + value + "]");
+			}
+		}
+		setGlobalLimit(limit);
+	}
+
+	public static long getGlobalLimit() {
+		return GLOBAL.limit;
+	}
+
+	/**
+	 * Response bytes currently held in memory by all clients, for diagnostics and tests
+	 */
+	public static long getInFlightBytes() {
+		return GLOBAL.getUsed();
+	}
+
+	/**
+	 * Gives back the memory budget of the body and deletes its temp file, unless it was handed over with
+	 * takeFile(). Buffers that are never released are cleaned up once they are garbage collected.
+	 */
+	public void release() {
+		if (cleanable != null) {
+			cleanable.clean();
+		}
+	}
+
+	/**
+	 * Hands the temp file over to the caller, who then owns it: it is no longer deleted on release,
+	 * only when the JVM exits if it still exists
+	 */
+	public File takeFile() {
+		File file = resources.takeFile();
+		if (file != null) {
+			file.deleteOnExit();
+		}
+		return file;
+	}
+
+	/**
+	 * The body, null if it was written to a file
+	 */
+	public byte[] getBytes() {
+		return bytes;
+	}
+
+	public boolean isSpilled() {
+		return bytes == null;
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * Whether the body starts like a JSON object or array
+	 */
+	public boolean isJson() {
+		return json;
+	}
+
+	public InputStream openStream() throws IOException {
+		if (bytes != null) return new ByteArrayInputStream(bytes);
+		File file = resources.file;
+		if (file == null) throw new IOException("Response body was released");
+		return new BufferedInputStream(Files.newInputStream(file.toPath()));
+	}
+
+	/**
+	 * Limit of response bytes held in memory at the same time, shared by the responses of one client or of the process
+	 */
+	public static final class Budget {
+		private final AtomicLong used = new AtomicLong();
+		private volatile long limit;
+
+		public Budget(long limit) {
+			this.limit = limit;
+		}
+
+		private boolean reserve(long count) {
+			while (true) {
+				long current = used.get();
+				if (current + count > limit) return false;
+				if (used.compareAndSet(current, current + count)) return true;
+			}
+		}
+
+		private void release(long count) {
+			used.addAndGet(-count);
+		}
+
+		public long getLimit() {
+			return limit;
+		}
+
+		/**
+		 * Bytes currently reserved by responses that have not been released
+		 */
+		public long getUsed() {
+			return used.get();
+		}
+	}
+
+	/**
+	 * What a buffer gives back on release; kept apart from the buffer, so the cleaner does not keep it reachable
+	 */
+	private static final class Resources implements Runnable {
+		private final Budget budget;
+		private final long reserved;
+		private volatile File file;
+
+		private Resources(File file, Budget budget, long reserved) {
+			this.file = file;
+			this.budget = budget;
+			this.reserved = reserved;
+		}
+
+		private synchronized File takeFile() {
+			File taken = file;
+			file = null;
+			return taken;
+		}
+
+		@Override
+		public void run() {
+			GLOBAL.release(reserved);
+			if (budget != null) budget.release(reserved);
+			File owned = takeFile();
+			if (owned != null) owned.delete();
+		}
+	}
+
+	/**
+	 * Thrown when a body is over the limits and spilling to disk is disabled
+	 */
+	public static class LimitExceededException extends IOException {
+
+		private static final long serialVersionUID = 1L;
+
+		public LimitExceededException(String message) {
+			super(message);
+		}
+	}
+}
@@ -0,0 +1,21 @@
+package org.lucee.extension.openapi.util;
+
+import java.util.Map;
+
+/**
+ * Receives events of a streaming response (Server-Sent Events or NDJSON) as they arrive.
+ * Events are delivered on the reading thread, so a slow handler slows down reading from the
+ * connection and the server is throttled by TCP flow control instead of events piling up in memory.
+ */
+public interface StreamHandler {
+
+	/**
+	 * Handle one event
+	 * 
+	 * @param event struct with data and, for Server-Sent Events, event, id and, once the server has sent one,
+	 *            the retry delay in ms
+	 * @return false to stop consuming the stream and close the connection
+	 * @throws Exception to abort the stream with an error
+	 */
+	boolean onEvent(Map<String, Object> event) throws Exception;
+}
@@ -0,0 +1,81 @@
+package org.lucee.extension.openapi;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import org.lucee.extension.openapi.spec.SpecCompiler;
+import org.lucee.extension.openapi.transport.Transport;
+import org.lucee.extension.openapi.transport.TransportRequest;
+import org.lucee.extension.openapi.transport.TransportResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for the generated CFC proxy source
+ */
+public class CFCProxyGeneratorTest {
+
+    private static final String SPEC = "tests/resources/test-openapi.json";
+
+    @Test
+    public void testGeneratedSource() throws Exception {
+        OpenAPIClient client = new OpenAPIClient(null, SpecCompiler.parseAndCompile(SPEC, null, null), SPEC, null);
+        String source = CFCProxyGenerator.generateSource(client);
+
+        assertTrue(source.startsWith("component "));
+        assertTrue(source.contains("public any function getUserById(required numeric id hint=\"User ID\")"));
+        assertTrue(source.contains("public any function getUsers(numeric limit"));
+        assertTrue(source.contains("public any function createUser(required any body)"));
+        assertTrue(source.contains("getOperation(\"getuserbyid\")"));
+        assertFalse(source.contains(OpenAPIMethod.ARG_SAVE_TO));
+        assertTrue(source.contains("public any function onMissingMethod("));
+        assertTrue(source.contains("public array function getMethodNames()"));
+        assertTrue(source.contains("public boolean function hasMethod(required string methodName)"));
+
+        // Same spec, same source: the compiled proxy class is shared
+        assertEquals(source, CFCProxyGenerator.generateSource(new OpenAPIClient(null, SpecCompiler.parseAndCompile(SPEC, null, null), SPEC, null)));
+    }
+
+    @Test
+    public void testParametersWithoutIdentifierNames() throws Exception {
+        String spec = "{\"openapi\":\"3.0.0\",\"info\":{\"title\":\"Headers\",\"version\":\"1\"},"
+            + "\"paths\":{\"/pets\":{\"post\":{\"operationId\":\"addPet\",\"parameters\":["
+            + "{\"name\":\"X-Request-ID\",\"in\":\"header\",\"schema\":{\"type\":\"string\"}},"
+            + "{\"name\":\"1st\",\"in\":\"query\",\"schema\":{\"type\":\"string\"}}],"
+            + "\"requestBody\":{\"content\":{\"application/json\":{\"schema\":{\"type\":\"object\"}}}},"
+            + "\"responses\":{\"204\":{\"description\":\"Added\"}}}}}}";
+        List<TransportRequest> sent = new ArrayList<>();
+        Transport memory = request -> {
+            sent.add(request);
+            return TransportResponse.of(204, "No Content", Map.of(), null);
+        };
+        Map<String, Object> options = new HashMap<>();
+        options.put("transport", memory);
+        options.put("baseUrl", "http://memory");
+        OpenAPIClient client = new OpenAPIClient(null, SpecCompiler.parseAndCompile("headers.json", spec, null), "headers.json", options);
+
+        String source = CFCProxyGenerator.generateSource(client);
+        assertTrue(source.contains("public any function addPet(string X_Request_ID hint=\"\", any body)"));
+        // A sanitized name would start with the reserved _, so the parameter is only passed by its own name
+        assertFalse(source.contains("_1st"));
+
+        Map<String, Object> args = new HashMap<>();
+        args.put("X_Request_ID", "abc");
+        args.put("body", Map.of("name", "Rex"));
+        client.callMethodWithNamedArgs("addPet", args);
+        assertEquals("abc", sent.get(0).getHeaders().get("X-Request-ID"));
+        assertEquals("{\"name\":\"Rex\"}", new String(sent.get(0).getBody(), StandardCharsets.UTF_8));
+
+        // Without a body argument the sanitized name is not taken for the body
+        args.remove("body");
+        args.put("X_REQUEST_ID", "abc");
+        args.remove("X_Request_ID");
+        client.callMethodWithNamedArgs("addPet", args);
+        assertNull(sent.get(1).getBody());
+        client.close();
+    }
+}
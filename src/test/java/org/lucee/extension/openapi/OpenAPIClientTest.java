@@ -0,0 +1,59 @@
+package org.lucee.extension.openapi;
+
+import org.lucee.extension.openapi.spec.SpecCompiler;
+import org.lucee.extension.openapi.spec.SpecDescriptor;
+import org.lucee.extension.openapi.transport.Transport;
+import org.lucee.extension.openapi.transport.TransportRequest;
+import org.lucee.extension.openapi.transport.TransportResponse;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for client options that act outside of calls
+ */
+public class OpenAPIClientTest {
+
+    private static final String SPEC = "tests/resources/test-openapi.json";
+
+    @Test
+    public void testWarmUpDoesNotDelayClientCreation() throws Exception {
+        CountDownLatch warmedUp = new CountDownLatch(1);
+        Transport slow = new Transport() {
+            @Override
+            public TransportResponse send(TransportRequest request) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Map<String, Object> warmUp(String url, int timeoutMillis) {
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                warmedUp.countDown();
+                return new HashMap<>();
+            }
+        };
+        Map<String, Object> options = new HashMap<>();
+        options.put("transport", slow);
+        options.put("warmup", true);
+        options.put("baseUrl", "http://127.0.0.1:1");
+
+        SpecDescriptor spec = SpecCompiler.parseAndCompile(SPEC, null, null);
+        long start = System.nanoTime();
+        OpenAPIClient client = new OpenAPIClient(null, spec, SPEC, options);
+        try {
+            assertTrue("Creating the client waited for the warm-up", System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500));
+            assertTrue("The warm-up did not run", warmedUp.await(5, TimeUnit.SECONDS));
+        } finally {
+            client.close();
+        }
+    }
+}
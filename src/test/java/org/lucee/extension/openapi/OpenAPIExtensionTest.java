@@ -1,8 +1,12 @@
 package org.lucee.extension.openapi;
 
+import org.lucee.extension.openapi.util.BackgroundScheduler;
+
 import org.junit.Test;
 import static org.junit.Assert.*;
 
+import java.util.concurrent.ScheduledExecutorService;
+
 /**
  * Unit tests for OpenAPI Extension
  */
@@ -18,4 +22,15 @@ public class OpenAPIExtensionTest {
         OpenAPIExtension extension = new OpenAPIExtension();
         assertNotNull(extension);
     }
+
+    @Test
+    public void testDestroyStopsBackgroundThreads() throws Exception {
+        ScheduledExecutorService scheduler = BackgroundScheduler.get();
+        new Activator().stop(null);
+        assertTrue(scheduler.isShutdown());
+        // Clients created later get a new pool
+        ScheduledExecutorService next = BackgroundScheduler.get();
+        assertNotSame(scheduler, next);
+        assertFalse(next.isShutdown());
+    }
 }
@@ -0,0 +1,252 @@
+package org.lucee.extension.openapi.auth;
+
+import com.sun.net.httpserver.HttpServer;
+
+import io.swagger.v3.oas.models.Components;
+import io.swagger.v3.oas.models.OpenAPI;
+import io.swagger.v3.oas.models.security.OAuthFlow;
+import io.swagger.v3.oas.models.security.OAuthFlows;
+import io.swagger.v3.oas.models.security.SecurityRequirement;
+import io.swagger.v3.oas.models.security.SecurityScheme;
+
+import org.lucee.extension.openapi.spec.SpecCompiler;
+import org.lucee.extension.openapi.spec.SpecDescriptor;
+import org.lucee.extension.openapi.trace.InMemorySpanExporter;
+import org.lucee.extension.openapi.trace.Span;
+import org.lucee.extension.openapi.trace.Tracer;
+import org.lucee.extension.openapi.transport.Transport;
+import org.lucee.extension.openapi.transport.TransportRequest;
+import org.lucee.extension.openapi.transport.TransportResponse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for security scheme resolution and OAuth2 token handling against a local token endpoint
+ */
+public class SecurityResolverTest {
+
+    private HttpServer server;
+    private String baseUrl;
+    private final AtomicInteger issued = new AtomicInteger();
+    private final Map<String, String> lastForm = new ConcurrentHashMap<>();
+    private volatile String lastAuthorization;
+
+    @Before
+    public void setUp() throws Exception {
+        TokenManager.clearAll();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/oauth/token", exchange -> {
+            String form = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            lastForm.clear();
+            for (String pair : form.split("&")) {
+                String[] kv = pair.split("=", 2);
+                lastForm.put(kv[0], kv.length > 1 ? java.net.URLDecoder.decode(kv[1], "UTF-8") : "");
+            }
+            lastAuthorization = exchange.getRequestHeaders().getFirst("Authorization");
+            int n = issued.incrementAndGet();
+            byte[] json = ("{\"access_token\":\"token-" + n + "\",\"token_type\":\"Bearer\",\"expires_in\":2,"
+                + "\"refresh_token\":\"refresh-" + n + "\"}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, json.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(json);
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        TokenManager.clearAll();
+    }
+
+    private SpecDescriptor createSpec() {
+        OAuthFlows flows = new OAuthFlows().clientCredentials(new OAuthFlow().tokenUrl("/oauth/token"));
+        Components components = new Components()
+            .addSecuritySchemes("oauth", new SecurityScheme().type(SecurityScheme.Type.OAUTH2).flows(flows))
+            .addSecuritySchemes("api_key", new SecurityScheme().type(SecurityScheme.Type.APIKEY)
+                .in(SecurityScheme.In.QUERY).name("key"));
+        return SpecCompiler.compile(new OpenAPI().components(components)
+            .addSecurityItem(new SecurityRequirement().addList("oauth", "pets:read")), null);
+    }
+
+    private Map<String, Object> oauthOptions(long refreshBefore) {
+        return oauthOptions(refreshBefore, "s3cret", "basic");
+    }
+
+    private Map<String, Object> oauthOptions(long refreshBefore, String clientSecret, String clientAuth) {
+        Map<String, Object> oauth = new HashMap<>();
+        oauth.put("clientId", "my-client");
+        oauth.put("clientSecret", clientSecret);
+        oauth.put("clientAuth", clientAuth);
+        oauth.put("refreshBefore", refreshBefore);
+        Map<String, Object> auth = new HashMap<>();
+        auth.put("OAUTH", oauth);
+        auth.put("api_key", "abc");
+        Map<String, Object> options = new HashMap<>();
+        options.put("auth", auth);
+        return options;
+    }
+
+    private static String authorize(List<Credential> credentials) throws Exception {
+        Map<String, String> headers = new HashMap<>();
+        for (Credential credential : credentials) {
+            credential.apply(headers, new HashMap<>());
+        }
+        return headers.get("Authorization");
+    }
+
+    @Test
+    public void testClientCredentialsTokenIsSharedAcrossThreads() throws Exception {
+        SecurityResolver resolver = new SecurityResolver(createSpec(), oauthOptions(0), baseUrl);
+        List<Credential> credentials = resolver.resolve(null);
+        assertEquals(1, credentials.size());
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            Set<String> seen = ConcurrentHashMap.newKeySet();
+            Future<?>[] futures = new Future<?>[32];
+            for (int i = 0; i < futures.length; i++) {
+                futures[i] = pool.submit(() -> {
+                    seen.add(authorize(credentials));
+                    return null;
+                });
+            }
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+            assertEquals(Collections.singleton("Bearer token-1"), seen);
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, issued.get());
+        assertEquals("client_credentials", lastForm.get("grant_type"));
+        assertEquals("pets:read", lastForm.get("scope"));
+        assertTrue(lastAuthorization.startsWith("Basic "));
+
+        // A second client with the same settings reuses the cached token
+        List<Credential> other = new SecurityResolver(createSpec(), oauthOptions(0), baseUrl).resolve(null);
+        assertEquals("Bearer token-1", authorize(other));
+        assertEquals(1, issued.get());
+    }
+
+    @Test
+    public void testTokenIsRefreshedBeforeExpiry() throws Exception {
+        List<Credential> credentials = new SecurityResolver(createSpec(), oauthOptions(1500), baseUrl).resolve(null);
+        assertEquals("Bearer token-1", authorize(credentials));
+
+        // Refresh is due after half of the 2s lifetime, well before the token expires
+        Thread.sleep(1500);
+        assertEquals(2, issued.get());
+        assertEquals("refresh_token", lastForm.get("grant_type"));
+        assertEquals("refresh-1", lastForm.get("refresh_token"));
+        assertEquals("Bearer token-2", authorize(credentials));
+    }
+
+    @Test
+    public void testOperationSecurityOverridesGlobal() throws Exception {
+        SecurityResolver resolver = new SecurityResolver(createSpec(), oauthOptions(0), baseUrl);
+        List<Credential> credentials = resolver.resolve(Collections.singletonList(new SecurityRequirement().addList("api_key")));
+
+        Map<String, String> headers = new HashMap<>();
+        Map<String, Object> query = new HashMap<>();
+        credentials.get(0).apply(headers, query);
+        assertEquals("abc", query.get("key"));
+        assertFalse(headers.containsKey("Authorization"));
+        assertEquals(0, issued.get());
+
+        // Explicitly public operation
+        assertTrue(resolver.resolve(Collections.singletonList(new SecurityRequirement())).isEmpty());
+    }
+
+    @Test
+    public void testTokenIsNotSharedAcrossSecrets() throws Exception {
+        assertEquals("Bearer token-1", authorize(new SecurityResolver(createSpec(), oauthOptions(0), baseUrl).resolve(null)));
+
+        // Same clientId with a rotated secret or another client authentication gets its own token
+        Map<String, Object> rotated = oauthOptions(0, "rotated", "basic");
+        assertEquals("Bearer token-2", authorize(new SecurityResolver(createSpec(), rotated, baseUrl).resolve(null)));
+
+        Map<String, Object> body = oauthOptions(0, "s3cret", "body");
+        assertEquals("Bearer token-3", authorize(new SecurityResolver(createSpec(), body, baseUrl).resolve(null)));
+        assertEquals("s3cret", lastForm.get("client_secret"));
+        assertEquals(3, issued.get());
+    }
+
+    @Test
+    public void testTokenManagerIsReleasedWithLastClient() throws Exception {
+        SecurityResolver first = new SecurityResolver(createSpec(), oauthOptions(0), baseUrl);
+        SecurityResolver second = new SecurityResolver(createSpec(), oauthOptions(0), baseUrl);
+        assertEquals("Bearer token-1", authorize(first.resolve(null)));
+        assertEquals("Bearer token-1", authorize(second.resolve(null)));
+        assertEquals(1, TokenManager.getInstanceCount());
+
+        first.close();
+        first.close();
+        assertEquals(1, TokenManager.getInstanceCount());
+        second.close();
+        assertEquals(0, TokenManager.getInstanceCount());
+
+        // A new client starts over with a fresh token
+        assertEquals("Bearer token-2", authorize(new SecurityResolver(createSpec(), oauthOptions(0), baseUrl).resolve(null)));
+    }
+
+    @Test
+    public void testTokenRequestUsesClientTransportAndTracer() throws Exception {
+        List<TransportRequest> sent = new ArrayList<>();
+        Transport memory = request -> {
+            sent.add(request);
+            return TransportResponse.of(200, "OK", Map.of("Content-Type", List.of("application/json")),
+                "{\"access_token\":\"memory-token\",\"expires_in\":3600}".getBytes(StandardCharsets.UTF_8));
+        };
+        InMemorySpanExporter exporter = new InMemorySpanExporter(10);
+        SecurityResolver resolver = new SecurityResolver(createSpec(), oauthOptions(0), baseUrl, memory, new Tracer(exporter));
+
+        Map<String, String> headers = new HashMap<>();
+        resolver.resolve(null).get(0).apply(headers, new HashMap<>());
+        assertEquals("Bearer memory-token", headers.get("Authorization"));
+        assertEquals(0, issued.get());
+        assertEquals(1, sent.size());
+        TransportRequest request = sent.get(0);
+        assertEquals("POST", request.getMethod());
+        assertEquals(baseUrl + "/oauth/token", request.getUrl().toString());
+        assertTrue(request.getHeaders().get("Authorization").startsWith("Basic "));
+        assertTrue(new String(request.getBody(), StandardCharsets.UTF_8).contains("grant_type=client_credentials"));
+
+        Span span = exporter.getSpans().get(0);
+        assertEquals("oauth2 token", span.getName());
+        assertEquals(span.getContext().toTraceparent(), request.getHeaders().get("traceparent"));
+        assertEquals(200, span.getAttributes().get("http.status_code"));
+        resolver.close();
+    }
+
+    @Test
+    public void testTokenIsNotUsedRightUntilExpiry() {
+        // 10% of the lifetime, at most 30 seconds
+        assertEquals(200, TokenManager.expiryMargin(2000));
+        assertEquals(30000, TokenManager.expiryMargin(3600_000));
+        assertEquals(0, TokenManager.expiryMargin(0));
+    }
+}
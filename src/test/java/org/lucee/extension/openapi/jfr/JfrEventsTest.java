@@ -0,0 +1,82 @@
+package org.lucee.extension.openapi.jfr;
+
+import com.sun.net.httpserver.HttpServer;
+
+import io.swagger.v3.oas.models.Operation;
+import io.swagger.v3.oas.models.parameters.RequestBody;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import org.lucee.extension.openapi.OpenAPIMethod;
+import org.lucee.extension.openapi.spec.SpecCompiler;
+import org.lucee.extension.openapi.util.HttpUtil;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for the flight recorder events of OpenAPI calls
+ */
+public class JfrEventsTest {
+
+    @Test
+    public void testCallEventRecorded() throws Exception {
+        assertTrue(JfrEvents.AVAILABLE);
+
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/pets", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            byte[] json = "{\"id\":7}".getBytes("UTF-8");
+            exchange.sendResponseHeaders(201, json.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(json);
+            }
+        });
+        server.start();
+
+        Path file = Files.createTempFile("openapi-", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("lucee.openapi.Call");
+            recording.enable("lucee.openapi.ResponseParse");
+            recording.start();
+
+            Operation operation = new Operation().operationId("addPet").requestBody(new RequestBody());
+            OpenAPIMethod method = new OpenAPIMethod(SpecCompiler.compileOperation("addPet", "POST", "/pets", operation, null),
+                new HttpUtil(), null, null);
+            Map<String, Object> args = new HashMap<>();
+            args.put("body", Collections.singletonMap("name", "Fluffy"));
+            Map<?, ?> result = (Map<?, ?>) method.invokeWithNamedArgs(null, args, "http://127.0.0.1:" + server.getAddress().getPort());
+            result.get("data");
+
+            recording.stop();
+            recording.dump(file);
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            RecordedEvent call = events.stream().filter(e -> e.getEventType().getName().equals("lucee.openapi.Call")).findFirst().orElse(null);
+            assertNotNull(call);
+            assertEquals("addPet", call.getString("operationId"));
+            assertEquals("POST", call.getString("method"));
+            assertEquals("127.0.0.1", call.getString("host"));
+            assertEquals(201, call.getInt("statusCode"));
+            assertEquals("{\"name\":\"Fluffy\"}".length(), call.getLong("requestBytes"));
+            assertEquals("{\"id\":7}".length(), call.getLong("responseBytes"));
+
+            assertTrue(events.stream().anyMatch(e -> e.getEventType().getName().equals("lucee.openapi.ResponseParse")
+                && "addPet".equals(e.getString("operationId"))));
+        } finally {
+            server.stop(0);
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package org.lucee.extension.openapi.json;
+
+import io.swagger.v3.oas.models.Components;
+import io.swagger.v3.oas.models.media.ArraySchema;
+import io.swagger.v3.oas.models.media.BooleanSchema;
+import io.swagger.v3.oas.models.media.IntegerSchema;
+import io.swagger.v3.oas.models.media.NumberSchema;
+import io.swagger.v3.oas.models.media.ObjectSchema;
+import io.swagger.v3.oas.models.media.Schema;
+import io.swagger.v3.oas.models.media.StringSchema;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Unit tests for the schema-driven request body serializer
+ */
+public class SchemaSerializerTest {
+
+    private static SchemaSerializer petSerializer() {
+        Schema<?> tag = new ObjectSchema()
+            .addProperty("id", new IntegerSchema())
+            .addProperty("label", new StringSchema());
+        Schema<?> pet = new ObjectSchema()
+            .addProperty("id", new IntegerSchema())
+            .addProperty("name", new StringSchema())
+            .addProperty("price", new NumberSchema())
+            .addProperty("available", new BooleanSchema())
+            .addProperty("tags", new ArraySchema().items(new Schema<>().$ref("#/components/schemas/Tag")));
+        Components components = new Components().addSchemas("Tag", tag).addSchemas("Pet", pet);
+        return SchemaCompiler.compile(new Schema<>().$ref("#/components/schemas/Pet"), components);
+    }
+
+    private static String serialize(SchemaSerializer serializer, Object value) throws Exception {
+        return new String(serializer.serialize(value), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testCoercesToDeclaredTypes() throws Exception {
+        Map<String, Object> tag = new LinkedHashMap<>();
+        tag.put("ID", 7.0);
+        tag.put("LABEL", 12.0);
+
+        // CFML style: upper-cased keys, numbers as doubles or strings, booleans as "yes"
+        Map<String, Object> pet = new LinkedHashMap<>();
+        pet.put("ID", "42");
+        pet.put("NAME", 123.0);
+        pet.put("PRICE", "9.95");
+        pet.put("AVAILABLE", "yes");
+        pet.put("TAGS", Arrays.asList(tag));
+        pet.put("extra", 1.5);
+
+        assertEquals("{\"id\":42,\"name\":\"123\",\"price\":9.95,\"available\":true,"
+            + "\"tags\":[{\"id\":7,\"label\":\"12\"}],\"extra\":1.5}", serialize(petSerializer(), pet));
+    }
+
+    @Test
+    public void testUncoercibleValuesArePassedThrough() throws Exception {
+        Map<String, Object> pet = new LinkedHashMap<>();
+        pet.put("id", "abc");
+        pet.put("tags", null);
+        assertEquals("{\"id\":\"abc\",\"tags\":null}", serialize(petSerializer(), pet));
+    }
+
+    @Test
+    public void testRecursiveSchema() throws Exception {
+        Schema<?> node = new ObjectSchema()
+            .addProperty("value", new IntegerSchema())
+            .addProperty("children", new ArraySchema().items(new Schema<>().$ref("#/components/schemas/Node")));
+        SchemaSerializer serializer = SchemaCompiler.compile(new Schema<>().$ref("#/components/schemas/Node"),
+            new Components().addSchemas("Node", node));
+
+        Map<String, Object> leaf = new LinkedHashMap<>();
+        leaf.put("VALUE", "2");
+        Map<String, Object> root = new LinkedHashMap<>();
+        root.put("VALUE", 1.0);
+        root.put("CHILDREN", new Object[] { leaf });
+        assertEquals("{\"value\":1,\"children\":[{\"value\":2}]}", serialize(serializer, root));
+    }
+
+    @Test
+    public void testGraphRoundTrip() throws Exception {
+        Schema<?> node = new ObjectSchema()
+            .addProperty("value", new IntegerSchema())
+            .addProperty("born", new StringSchema().format("date"))
+            .addProperty("children", new ArraySchema().items(new Schema<>().$ref("#/components/schemas/Node")));
+        SchemaSerializer serializer = SchemaCompiler.compile(new Schema<>().$ref("#/components/schemas/Node"),
+            new Components().addSchemas("Node", node));
+        SchemaSerializer copy = SchemaSerializer.fromGraph(serializer.toGraph());
+        assertEquals(serializer.toGraph(), copy.toGraph());
+
+        Map<String, Object> leaf = new LinkedHashMap<>();
+        leaf.put("VALUE", "2");
+        leaf.put("BORN", new java.util.Date(0));
+        Map<String, Object> root = new LinkedHashMap<>();
+        root.put("VALUE", 1.0);
+        root.put("CHILDREN", new Object[] { leaf });
+        assertEquals(serialize(serializer, root), serialize(copy, root));
+
+        // A node that contains itself without a ref cannot come from the compiler
+        Map<String, Object> array = new LinkedHashMap<>();
+        array.put("type", "array");
+        array.put("items", 0);
+        try {
+            SchemaSerializer.fromGraph(java.util.Collections.singletonList(array));
+            fail("Self-containing array must be rejected");
+        } catch (java.io.IOException e) {
+            assertTrue(e.getMessage().contains("contains itself"));
+        }
+    }
+}
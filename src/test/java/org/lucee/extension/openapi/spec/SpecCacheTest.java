@@ -0,0 +1,78 @@
+package org.lucee.extension.openapi.spec;
+
+import org.lucee.extension.openapi.OpenAPIClient;
+import org.lucee.extension.openapi.OpenAPIMethod;
+
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Unit tests for spec compilation and sharing of descriptors between clients
+ */
+public class SpecCacheTest {
+
+    private static final String SPEC = "tests/resources/test-openapi.json";
+
+    @After
+    public void tearDown() {
+        SpecCache.clear();
+    }
+
+    @Test
+    public void testCompiledOperations() throws Exception {
+        SpecDescriptor spec = SpecCache.load(SPEC);
+
+        assertEquals("https://api.test.example.com/v1", spec.getServerUrl());
+        assertEquals(5, spec.getOperations().size());
+        assertNotNull(spec.getContentHash());
+
+        OperationDescriptor getUserById = spec.getOperation("GETUSERBYID");
+        assertEquals("GET", getUserById.getHttpMethod());
+        assertEquals("/users/{id}", getUserById.getPath());
+        assertEquals(1, getUserById.getPathParameters().size());
+        assertTrue(getUserById.getParameters().get(0).isRequired());
+        assertEquals("integer", getUserById.getParameters().get(0).getType());
+        assertFalse(getUserById.hasBody());
+
+        OperationDescriptor createUser = spec.getOperation("createUser");
+        assertTrue(createUser.hasBody());
+        assertTrue(createUser.isBodyRequired());
+    }
+
+    @Test
+    public void testSameContentIsShared() throws Exception {
+        File copy = File.createTempFile("openapi-copy-", ".json");
+        try {
+            Files.copy(Paths.get(SPEC), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+            SpecDescriptor first = SpecCache.load(SPEC);
+            SpecDescriptor second = SpecCache.load(copy.getAbsolutePath());
+            assertSame(first, second);
+            assertEquals(1, SpecCache.size());
+
+            OpenAPIClient a = new OpenAPIClient(null, first, SPEC, null);
+            OpenAPIClient b = new OpenAPIClient(null, second, copy.getAbsolutePath(), null);
+            assertNotSame(a.getOperation("getUsers"), b.getOperation("getUsers"));
+            assertSame(a.getOperation("getUsers").getDescriptor(), b.getOperation("getUsers").getDescriptor());
+        } finally {
+            copy.delete();
+        }
+    }
+
+    @Test
+    public void testClientsHoldNoSwaggerModel() {
+        for (Class<?> type : new Class<?>[] { OpenAPIClient.class, OpenAPIMethod.class, SpecDescriptor.class, OperationDescriptor.class }) {
+            for (Field field : type.getDeclaredFields()) {
+                assertFalse(type.getSimpleName() + "." + field.getName(),
+                    field.getType().getName().startsWith("io.swagger."));
+            }
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package org.lucee.extension.openapi.spec;
+
+import org.lucee.extension.openapi.OpenAPIClient;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for the persisted spec index and for creating clients without loading swagger-parser
+ */
+public class SpecIndexTest {
+
+    private static final String SPEC = "tests/resources/test-openapi.json";
+
+    private File previousDirectory;
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+        previousDirectory = SpecIndex.getDirectory();
+        directory = Files.createTempDirectory("openapi-index-").toFile();
+        SpecIndex.setDirectory(directory);
+        SpecCache.clear();
+    }
+
+    @After
+    public void tearDown() {
+        SpecIndex.setDirectory(previousDirectory);
+        SpecCache.clear();
+        deleteTree(directory);
+    }
+
+    @Test
+    public void testIndexRoundTrip() throws Exception {
+        SpecDescriptor compiled = SpecCache.load(SPEC);
+        File[] files = directory.listFiles();
+        assertEquals(1, files.length);
+
+        SpecCache.clear();
+        SpecDescriptor indexed = SpecCache.load(SPEC);
+        assertNotSame(compiled, indexed);
+        assertEquals(compiled.getContentHash(), indexed.getContentHash());
+        assertEquals(compiled.getOperations().keySet(), indexed.getOperations().keySet());
+        assertEquals("https://api.test.example.com/v1", indexed.getServerUrl());
+
+        OperationDescriptor createUser = indexed.getOperation("createUser");
+        assertTrue(createUser.isBodyRequired());
+        assertNotNull(createUser.getBodySerializer());
+        // Interned again when read
+        assertSame("path", indexed.getOperation("getUserById").getPathParameters().get(0).getIn());
+    }
+
+    @Test
+    public void testCorruptIndexIsRebuilt() throws Exception {
+        SpecCache.load(SPEC);
+        File file = directory.listFiles()[0];
+        Files.write(file.toPath(), "garbage".getBytes(StandardCharsets.UTF_8));
+
+        SpecCache.clear();
+        assertEquals(5, SpecCache.load(SPEC).getOperations().size());
+        assertTrue(file.length() > "garbage".length());
+    }
+
+    @Test
+    public void testIndexIsOnlyUsedForItsSpec() throws Exception {
+        SpecCache.load(SPEC);
+        File file = directory.listFiles()[0];
+        assertTrue(file.getName().endsWith(".json"));
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(directory.toPath())));
+            assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(file.toPath())));
+        }
+
+        // An index claiming other content or another location is not used, and is replaced
+        String json = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        String planted = json.replace("https://api.test.example.com/v1", "https://attacker.example.com");
+        Files.write(file.toPath(), planted.replace("\"location\":\"" + SPEC, "\"location\":\"elsewhere.json")
+            .getBytes(StandardCharsets.UTF_8));
+        SpecCache.clear();
+        assertEquals("https://api.test.example.com/v1", SpecCache.load(SPEC).getServerUrl());
+
+        String hash = SpecCache.load(SPEC).getContentHash();
+        Files.write(file.toPath(), planted.replace("\"hash\":\"" + hash, "\"hash\":\"0" + hash.substring(1))
+            .getBytes(StandardCharsets.UTF_8));
+        SpecCache.clear();
+        assertEquals("https://api.test.example.com/v1", SpecCache.load(SPEC).getServerUrl());
+        assertEquals(json, new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testIndexedClientDoesNotLoadParser() throws Exception {
+        SpecCache.load(SPEC);
+
+        // Fresh JVMs, since this one has loaded the parser long ago
+        Activation indexed = activate(directory);
+        File empty = Files.createTempDirectory("openapi-index-empty-").toFile();
+        Activation parsed;
+        try {
+            parsed = activate(empty);
+        } finally {
+            deleteTree(empty);
+        }
+
+        assertEquals(5, indexed.operations);
+        assertEquals(5, parsed.operations);
+        assertTrue(parsed.parserClasses > 0);
+        assertEquals("swagger classes loaded from index: " + indexed.swaggerClassNames, 0, indexed.swaggerClassNames.size());
+        assertTrue(indexed.loadedClasses < parsed.loadedClasses);
+    }
+
+    private static Activation activate(File indexDirectory) throws Exception {
+        File log = File.createTempFile("openapi-classes-", ".log");
+        try {
+            String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+            Process process = new ProcessBuilder(java, "-Xlog:class+load=info:file=" + log.getAbsolutePath(),
+                "-cp", System.getProperty("java.class.path"), Activate.class.getName(), indexDirectory.getAbsolutePath(), SPEC)
+                .redirectErrorStream(true).start();
+            String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            assertEquals(output, 0, process.waitFor());
+
+            Activation activation = new Activation();
+            for (String line : output.split("\n")) {
+                if (line.startsWith("activation ")) {
+                    String[] parts = line.trim().split(" ");
+                    activation.millis = Double.parseDouble(parts[1]);
+                    activation.loadedClasses = Integer.parseInt(parts[2]);
+                    activation.operations = Integer.parseInt(parts[3]);
+                }
+            }
+            for (String line : Files.readAllLines(log.toPath(), StandardCharsets.UTF_8)) {
+                if (line.contains(" io.swagger.")) activation.swaggerClassNames.add(line);
+                if (line.contains(" io.swagger.v3.parser.") || line.contains(" org.yaml.")) activation.parserClasses++;
+            }
+            return activation;
+        } finally {
+            log.delete();
+        }
+    }
+
+    private static void deleteTree(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) deleteTree(child);
+        }
+        file.delete();
+    }
+
+    private static class Activation {
+        double millis;
+        int loadedClasses;
+        int operations;
+        int parserClasses;
+        List<String> swaggerClassNames = new ArrayList<>();
+
+        @Override
+        public String toString() {
+            return String.format("%.1f ms, %d classes loaded", millis, loadedClasses);
+        }
+    }
+
+    /**
+     * Child process: loads the spec through the cache and creates a client, then reports timing
+     */
+    public static class Activate {
+        public static void main(String[] args) throws Exception {
+            SpecIndex.setDirectory(new File(args[0]));
+            long start = System.nanoTime();
+            OpenAPIClient client = new OpenAPIClient(null, SpecCache.load(args[1]), args[1], null);
+            double millis = (System.nanoTime() - start) / 1e6;
+            System.out.println("activation " + millis + " " + ManagementFactory.getClassLoadingMXBean().getTotalLoadedClassCount()
+                + " " + client.getMethodNames().length);
+        }
+    }
+}
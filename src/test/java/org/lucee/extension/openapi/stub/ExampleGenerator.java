@@ -0,0 +1,160 @@
+package org.lucee.extension.openapi.stub;
+
+import io.swagger.v3.oas.models.OpenAPI;
+import io.swagger.v3.oas.models.examples.Example;
+import io.swagger.v3.oas.models.media.MediaType;
+import io.swagger.v3.oas.models.media.Schema;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds response payloads from the examples of a spec, or from its schemas where no example exists
+ */
+public class ExampleGenerator {
+
+	private static final int MAX_DEPTH = 8;
+	private static final String SCHEMA_REF_PREFIX = "#/components/schemas/";
+
+	private final OpenAPI openAPI;
+	private final int arrayItems;
+	private final int stringLength;
+
+	/**
+	 * @param openAPI spec used to resolve schema references
+	 * @param arrayItems number of items generated for array schemas
+	 * @param stringLength length of generated plain strings, 0 for short placeholders
+	 */
+	public ExampleGenerator(OpenAPI openAPI, int arrayItems, int stringLength) {
+		this.openAPI = openAPI;
+		this.arrayItems = arrayItems;
+		this.stringLength = stringLength;
+	}
+
+	/**
+	 * Example value for a media type: its example, the first of its examples, or a value generated from its schema
+	 */
+	public Object generate(MediaType mediaType) {
+		if (mediaType == null) return null;
+		if (mediaType.getExample() != null) {
+			return mediaType.getExample();
+		}
+		if (mediaType.getExamples() != null) {
+			for (Example example : mediaType.getExamples().values()) {
+				if (example != null && example.getValue() != null) {
+					return example.getValue();
+				}
+			}
+		}
+		return generate(mediaType.getSchema());
+	}
+
+	public Object generate(Schema<?> schema) {
+		return generate(schema, null, 0);
+	}
+
+	private Object generate(Schema<?> schema, String name, int depth) {
+		schema = resolve(schema);
+		if (schema == null || depth > MAX_DEPTH) return null;
+
+		if (schema.getExample() != null) {
+			return schema.getExample();
+		}
+		if (schema.getDefault() != null) {
+			return schema.getDefault();
+		}
+		if (schema.getEnum() != null && !schema.getEnum().isEmpty()) {
+			return schema.getEnum().get(0);
+		}
+		if (schema.getAllOf() != null && !schema.getAllOf().isEmpty()) {
+			Map<String, Object> merged = new LinkedHashMap<>();
+			for (Schema<?> part : schema.getAllOf()) {
+				Object value = generate(part, name, depth + 1);
+				if (value instanceof Map) {
+					for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+						merged.put(entry.getKey().toString(), entry.getValue());
+					}
+				}
+			}
+			return merged;
+		}
+		if (schema.getOneOf() != null && !schema.getOneOf().isEmpty()) {
+			return generate(schema.getOneOf().get(0), name, depth + 1);
+		}
+		if (schema.getAnyOf() != null && !schema.getAnyOf().isEmpty()) {
+			return generate(schema.getAnyOf().get(0), name, depth + 1);
+		}
+
+		String type = schema.getType();
+		if (type == null && schema.getTypes() != null && !schema.getTypes().isEmpty()) {
+			type = schema.getTypes().iterator().next();
+		}
+		if (type == null) {
+			type = schema.getProperties() != null ? "object" : schema.getItems() != null ? "array" : "string";
+		}
+
+		switch (type) {
+			case "object":
+				Map<String, Object> object = new LinkedHashMap<>();
+				if (schema.getProperties() != null) {
+					for (Map.Entry<String, Schema> property : schema.getProperties().entrySet()) {
+						object.put(property.getKey(), generate(property.getValue(), property.getKey(), depth + 1));
+					}
+				}
+				return object;
+			case "array":
+				List<Object> array = new ArrayList<>();
+				for (int i = 0; i < arrayItems; i++) {
+					array.add(generate(schema.getItems(), name, depth + 1));
+				}
+				return array;
+			case "integer":
+				return schema.getMinimum() != null ? schema.getMinimum().longValue() : 1;
+			case "number":
+				return schema.getMinimum() != null ? schema.getMinimum().doubleValue() : 1.5;
+			case "boolean":
+				return true;
+			default:
+				return generateString(schema.getFormat(), name);
+		}
+	}
+
+	private String generateString(String format, String name) {
+		if (format != null) {
+			switch (format) {
+				case "date-time": return "2024-01-01T00:00:00Z";
+				case "date": return "2024-01-01";
+				case "email": return "user@example.com";
+				case "uuid": return "3fa85f64-5717-4562-b3fc-2c963f66afa6";
+				case "uri":
+				case "url": return "https://example.com";
+				default: break;
+			}
+		}
+		String value = name != null ? name : "string";
+		if (stringLength <= value.length()) {
+			return value;
+		}
+		StringBuilder sb = new StringBuilder(stringLength);
+		while (sb.length() < stringLength) {
+			sb.append(value);
+		}
+		sb.setLength(stringLength);
+		return sb.toString();
+	}
+
+	private Schema<?> resolve(Schema<?> schema) {
+		int hops = 0;
+		while (schema != null && schema.get$ref() != null && hops++ < MAX_DEPTH) {
+			String ref = schema.get$ref();
+			if (!ref.startsWith(SCHEMA_REF_PREFIX) || openAPI.getComponents() == null
+					|| openAPI.getComponents().getSchemas() == null) {
+				return null;
+			}
+			schema = openAPI.getComponents().getSchemas().get(ref.substring(SCHEMA_REF_PREFIX.length()));
+		}
+		return schema;
+	}
+}
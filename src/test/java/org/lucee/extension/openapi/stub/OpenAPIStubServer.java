@@ -0,0 +1,374 @@
+package org.lucee.extension.openapi.stub;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.swagger.v3.oas.models.OpenAPI;
+import io.swagger.v3.oas.models.Operation;
+import io.swagger.v3.oas.models.PathItem;
+import io.swagger.v3.oas.models.media.Content;
+import io.swagger.v3.oas.models.media.MediaType;
+import io.swagger.v3.oas.models.responses.ApiResponse;
+
+import org.lucee.extension.openapi.spec.SpecCompiler;
+import org.lucee.extension.openapi.util.LuceeHttpUtil;
+import org.lucee.extension.openapi.util.OptionUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Embedded HTTP server answering every path and verb of a spec with example or schema-generated
+ * responses, for offline load tests and benchmarks of the client.
+ * Latency, error rate and payload size are configurable; a fixed seed keeps error injection deterministic.
+ * Test support only, it is not built into the extension bundle.
+ */
+public class OpenAPIStubServer {
+
+	private static final byte[] NOT_FOUND = "{\"error\":\"No stubbed operation for this path\"}".getBytes(StandardCharsets.UTF_8);
+	private static final byte[] INJECTED_ERROR = "{\"error\":\"Injected stub error\"}".getBytes(StandardCharsets.UTF_8);
+
+	private final OpenAPI openAPI;
+	private final List<Route> routes = new ArrayList<>();
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final AtomicLong requestCount = new AtomicLong();
+
+	private int port = 0;
+	private String host = "127.0.0.1";
+	private long latencyMillis = 0;
+	private long latencyJitterMillis = 0;
+	private double errorRate = 0;
+	private int errorStatus = 500;
+	private int arrayItems = 3;
+	private int stringLength = 0;
+	private int threads = Runtime.getRuntime().availableProcessors() * 2;
+	private long seed = 42;
+
+	private HttpServer server;
+	private ExecutorService executor;
+	private Random random;
+	private String basePath = "";
+
+	/**
+	 * Creates a stub for the spec at the given URL or path, parsed the same way as createOpenApiProxy does
+	 */
+	public OpenAPIStubServer(String specUrl) throws Exception {
+		this(SpecCompiler.parse(specUrl, null));
+	}
+
+	public OpenAPIStubServer(OpenAPI openAPI) {
+		this.openAPI = openAPI;
+	}
+
+	/**
+	 * Creates a stub configured from a struct with the keys port, host, latency, latencyJitter,
+	 * errorRate, errorStatus, arrayItems, stringLength, threads and seed
+	 */
+	public static OpenAPIStubServer create(String specUrl, Object options) throws Exception {
+		OpenAPIStubServer stub = new OpenAPIStubServer(specUrl);
+		stub.setPort((int) OptionUtil.getLong(options, "port", stub.port));
+		stub.setHost(OptionUtil.getString(options, "host", stub.host));
+		stub.setLatency(OptionUtil.getLong(options, "latency", stub.latencyMillis),
+			OptionUtil.getLong(options, "latencyJitter", stub.latencyJitterMillis));
+		stub.setErrorRate(OptionUtil.getDouble(options, "errorRate", stub.errorRate),
+			(int) OptionUtil.getLong(options, "errorStatus", stub.errorStatus));
+		stub.setPayloadSize((int) OptionUtil.getLong(options, "arrayItems", stub.arrayItems),
+			(int) OptionUtil.getLong(options, "stringLength", stub.stringLength));
+		stub.setThreads((int) OptionUtil.getLong(options, "threads", stub.threads));
+		stub.setSeed(OptionUtil.getLong(options, "seed", stub.seed));
+		return stub;
+	}
+
+	public OpenAPIStubServer setPort(int port) {
+		this.port = port;
+		return this;
+	}
+
+	public OpenAPIStubServer setHost(String host) {
+		this.host = host;
+		return this;
+	}
+
+	/**
+	 * Delay added to every response, plus a random jitter of up to jitterMillis
+	 */
+	public OpenAPIStubServer setLatency(long latencyMillis, long jitterMillis) {
+		this.latencyMillis = latencyMillis;
+		this.latencyJitterMillis = jitterMillis;
+		return this;
+	}
+
+	/**
+	 * Share of requests (0..1) answered with the given error status instead of the stubbed response
+	 */
+	public OpenAPIStubServer setErrorRate(double errorRate, int errorStatus) {
+		this.errorRate = errorRate;
+		this.errorStatus = errorStatus;
+		return this;
+	}
+
+	/**
+	 * Size of generated payloads: items per array and length of plain strings
+	 */
+	public OpenAPIStubServer setPayloadSize(int arrayItems, int stringLength) {
+		this.arrayItems = arrayItems;
+		this.stringLength = stringLength;
+		return this;
+	}
+
+	public OpenAPIStubServer setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+		return this;
+	}
+
+	public OpenAPIStubServer setSeed(long seed) {
+		this.seed = seed;
+		return this;
+	}
+
+	/**
+	 * Builds the stubbed responses and starts listening
+	 */
+	public synchronized OpenAPIStubServer start() throws Exception {
+		if (server != null) return this;
+
+		random = new Random(seed);
+		basePath = serverBasePath();
+		buildRoutes();
+
+		server = HttpServer.create(new InetSocketAddress(host, port), 0);
+		executor = Executors.newFixedThreadPool(threads, r -> {
+			Thread thread = new Thread(r, "openapi-stub");
+			thread.setDaemon(true);
+			return thread;
+		});
+		server.setExecutor(executor);
+		server.createContext("/", this::handle);
+		server.start();
+		return this;
+	}
+
+	public synchronized void stop() {
+		if (server == null) return;
+		server.stop(0);
+		executor.shutdownNow();
+		server = null;
+		executor = null;
+	}
+
+	public int getPort() {
+		return server != null ? server.getAddress().getPort() : port;
+	}
+
+	/**
+	 * URL to pass as baseUrl option to createOpenApiProxy
+	 */
+	public String getBaseUrl() {
+		return "http://" + host + ":" + getPort() + basePath;
+	}
+
+	public long getRequestCount() {
+		return requestCount.get();
+	}
+
+	private String serverBasePath() {
+		if (openAPI.getServers() == null || openAPI.getServers().isEmpty()) return "";
+		try {
+			String path = URI.create(openAPI.getServers().get(0).getUrl()).getPath();
+			if (path == null || "/".equals(path)) return "";
+			return path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+		} catch (Exception e) {
+			return "";
+		}
+	}
+
+	private void buildRoutes() throws Exception {
+		routes.clear();
+		if (openAPI.getPaths() == null) return;
+
+		ExampleGenerator generator = new ExampleGenerator(openAPI, arrayItems, stringLength);
+		// Routes match first come first served, so /pet/findByStatus must be tried before /pet/{petId}
+		List<Map.Entry<String, PathItem>> paths = new ArrayList<>(openAPI.getPaths().entrySet());
+		paths.sort((a, b) -> compareTemplates(a.getKey(), b.getKey()));
+		for (Map.Entry<String, PathItem> entry : paths) {
+			Pattern pattern = compilePath(basePath + entry.getKey());
+			for (Map.Entry<PathItem.HttpMethod, Operation> op : entry.getValue().readOperationsMap().entrySet()) {
+				routes.add(buildRoute(op.getKey().name(), pattern, op.getValue(), generator));
+			}
+		}
+	}
+
+	/**
+	 * Orders path templates so that at the first segment where they differ in kind, a literal segment
+	 * comes before a templated one. Templates of the same shape keep the order of the spec.
+	 */
+	static int compareTemplates(String a, String b) {
+		String[] left = a.split("/");
+		String[] right = b.split("/");
+		for (int i = 0; i < Math.min(left.length, right.length); i++) {
+			boolean leftTemplated = left[i].contains("{");
+			if (leftTemplated != right[i].contains("{")) {
+				return leftTemplated ? 1 : -1;
+			}
+		}
+		return Integer.compare(left.length, right.length);
+	}
+
+	private static Pattern compilePath(String path) {
+		StringBuilder regex = new StringBuilder("^");
+		Matcher matcher = Pattern.compile("\\{[^}]+\\}").matcher(path);
+		int last = 0;
+		while (matcher.find()) {
+			regex.append(Pattern.quote(path.substring(last, matcher.start()))).append("[^/]+");
+			last = matcher.end();
+		}
+		regex.append(Pattern.quote(path.substring(last))).append("/?$");
+		return Pattern.compile(regex.toString());
+	}
+
+	private Route buildRoute(String method, Pattern pattern, Operation operation, ExampleGenerator generator) throws Exception {
+		int status = 200;
+		ApiResponse response = null;
+		if (operation.getResponses() != null) {
+			for (Map.Entry<String, ApiResponse> entry : operation.getResponses().entrySet()) {
+				if (entry.getKey().startsWith("2")) {
+					// Ranges like 2XX are answered with 200
+					status = entry.getKey().matches("\\d{3}") ? Integer.parseInt(entry.getKey()) : 200;
+					response = entry.getValue();
+					break;
+				}
+			}
+			if (response == null && operation.getResponses().getDefault() != null) {
+				response = operation.getResponses().getDefault();
+			}
+		}
+
+		String contentType = null;
+		byte[] body = null;
+		Content content = response != null ? response.getContent() : null;
+		if (content != null && !content.isEmpty()) {
+			contentType = content.containsKey("application/json") ? "application/json" : content.keySet().iterator().next();
+			MediaType mediaType = content.get(contentType);
+			if (LuceeHttpUtil.isBinaryContentType(contentType)) {
+				body = new byte[Math.max(1, arrayItems) * Math.max(1024, stringLength)];
+				new Random(seed).nextBytes(body);
+			} else {
+				Object example = generator.generate(mediaType);
+				if (example instanceof String && !contentType.contains("json")) {
+					body = ((String) example).getBytes(StandardCharsets.UTF_8);
+				} else {
+					body = objectMapper.writeValueAsBytes(example);
+				}
+			}
+		}
+		return new Route(method, pattern, status, contentType, body);
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		requestCount.incrementAndGet();
+		try (InputStream in = exchange.getRequestBody()) {
+			in.readAllBytes();
+		}
+
+		String method = exchange.getRequestMethod().toUpperCase();
+		String path = exchange.getRequestURI().getPath();
+		Route route = null;
+		for (Route candidate : routes) {
+			if (candidate.method.equals(method) && candidate.pattern.matcher(path).matches()) {
+				route = candidate;
+				break;
+			}
+		}
+
+		delay();
+
+		if (route == null) {
+			send(exchange, 404, "application/json", NOT_FOUND);
+		} else if (errorRate > 0 && nextDouble() < errorRate) {
+			send(exchange, errorStatus, "application/json", INJECTED_ERROR);
+		} else {
+			send(exchange, route.status, route.contentType, route.body);
+		}
+	}
+
+	private void delay() {
+		long millis = latencyMillis;
+		if (latencyJitterMillis > 0) {
+			synchronized (random) {
+				millis += (long) (random.nextDouble() * latencyJitterMillis);
+			}
+		}
+		if (millis <= 0) return;
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private double nextDouble() {
+		synchronized (random) {
+			return random.nextDouble();
+		}
+	}
+
+	private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+		if (contentType != null) {
+			exchange.getResponseHeaders().set("Content-Type", contentType);
+		}
+		boolean noBody = body == null || status == 204 || status == 304 || "HEAD".equalsIgnoreCase(exchange.getRequestMethod());
+		exchange.sendResponseHeaders(status, noBody ? -1 : body.length);
+		if (!noBody) {
+			try (OutputStream os = exchange.getResponseBody()) {
+				os.write(body);
+			}
+		}
+		exchange.close();
+	}
+
+	/**
+	 * Starts a stub from the command line: OpenAPIStubServer specUrl [port] [latencyMillis] [errorRate]
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.err.println("Usage: OpenAPIStubServer specUrl [port] [latencyMillis] [errorRate]");
+			System.exit(1);
+		}
+		OpenAPIStubServer stub = new OpenAPIStubServer(args[0]);
+		if (args.length > 1) stub.setPort(Integer.parseInt(args[1]));
+		if (args.length > 2) stub.setLatency(Long.parseLong(args[2]), 0);
+		if (args.length > 3) stub.setErrorRate(Double.parseDouble(args[3]), 500);
+		stub.start();
+		System.out.println("OpenAPI stub server listening on " + stub.getBaseUrl());
+	}
+
+	private static class Route {
+		final String method;
+		final Pattern pattern;
+		final int status;
+		final String contentType;
+		final byte[] body;
+
+		Route(String method, Pattern pattern, int status, String contentType, byte[] body) {
+			this.method = method;
+			this.pattern = pattern;
+			this.status = status;
+			this.contentType = contentType;
+			this.body = body;
+		}
+	}
+}
@@ -0,0 +1,156 @@
+package org.lucee.extension.openapi.stub;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import org.lucee.extension.openapi.OpenAPIClient;
+import org.lucee.extension.openapi.spec.SpecCompiler;
+
+import io.swagger.v3.oas.models.OpenAPI;
+import io.swagger.v3.oas.models.Operation;
+import io.swagger.v3.oas.models.PathItem;
+import io.swagger.v3.oas.models.Paths;
+import io.swagger.v3.oas.models.responses.ApiResponse;
+import io.swagger.v3.oas.models.responses.ApiResponses;
+
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the client against the stub server built from the test spec
+ */
+public class OpenAPIStubServerTest {
+
+    private static final String SPEC = "tests/resources/test-openapi.json";
+
+    private OpenAPIStubServer stub;
+
+    @Before
+    public void setUp() throws Exception {
+        stub = new OpenAPIStubServer(SPEC).setPayloadSize(5, 0).start();
+    }
+
+    @After
+    public void tearDown() {
+        stub.stop();
+    }
+
+    private OpenAPIClient createClient() throws Exception {
+        Map<String, Object> options = new HashMap<>();
+        options.put("baseUrl", stub.getBaseUrl());
+        return new OpenAPIClient(null, SpecCompiler.parseAndCompile(SPEC, null, null), SPEC, options);
+    }
+
+    @Test
+    public void testGeneratedResponses() throws Exception {
+        OpenAPIClient client = createClient();
+        assertTrue(stub.getBaseUrl().endsWith("/v1"));
+
+        Map<?, ?> users = (Map<?, ?>) client.callMethodWithNamedArgs("getUsers", new HashMap<>());
+        assertEquals(200, users.get("statusCode"));
+        List<?> data = (List<?>) users.get("data");
+        assertEquals(5, data.size());
+        Map<?, ?> user = (Map<?, ?>) data.get(0);
+        assertEquals("user@example.com", user.get("email"));
+        assertEquals(Boolean.TRUE, user.get("active"));
+
+        Map<String, Object> args = new HashMap<>();
+        args.put("id", 12);
+        Map<?, ?> single = (Map<?, ?>) client.callMethodWithNamedArgs("getUserById", args);
+        assertEquals(200, single.get("statusCode"));
+        assertTrue(single.get("data") instanceof Map);
+
+        Map<?, ?> deleted = (Map<?, ?>) client.callMethodWithNamedArgs("deleteUser", args);
+        assertEquals(204, deleted.get("statusCode"));
+        assertEquals(3, stub.getRequestCount());
+    }
+
+    @Test
+    public void testResponseProjection() throws Exception {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("GETUSERS", "email");
+        Map<String, Object> options = new HashMap<>();
+        options.put("baseUrl", stub.getBaseUrl());
+        options.put("fields", fields);
+        OpenAPIClient client = new OpenAPIClient(null, SpecCompiler.parseAndCompile(SPEC, null, null), SPEC, options);
+
+        // Configured for the operation
+        List<?> data = (List<?>) ((Map<?, ?>) client.callMethodWithNamedArgs("getUsers", new HashMap<>())).get("data");
+        assertEquals(5, data.size());
+        assertEquals(Collections.singleton("email"), ((Map<?, ?>) data.get(0)).keySet());
+
+        // Overridden per call
+        Map<String, Object> args = new HashMap<>();
+        args.put("_FIELDS", new String[] { "id", "name" });
+        data = (List<?>) ((Map<?, ?>) client.callMethodWithNamedArgs("getUsers", args)).get("data");
+        assertEquals(new HashSet<>(Arrays.asList("id", "name")), ((Map<?, ?>) data.get(0)).keySet());
+
+        // Empty means the whole response
+        args.put("_FIELDS", "");
+        data = (List<?>) ((Map<?, ?>) client.callMethodWithNamedArgs("getUsers", args)).get("data");
+        assertTrue(((Map<?, ?>) data.get(0)).size() > 2);
+    }
+
+    @Test
+    public void testErrorInjection() throws Exception {
+        stub.stop();
+        stub = new OpenAPIStubServer(SPEC).setErrorRate(1, 503).start();
+        OpenAPIClient client = createClient();
+
+        Map<?, ?> result = (Map<?, ?>) client.callMethodWithNamedArgs("getUsers", new HashMap<>());
+        assertEquals(503, result.get("statusCode"));
+        assertNotNull(result.get("error"));
+    }
+
+    @Test
+    public void testLatency() throws Exception {
+        stub.stop();
+        stub = new OpenAPIStubServer(SPEC).setLatency(50, 0).start();
+        OpenAPIClient client = createClient();
+
+        long start = System.nanoTime();
+        client.callMethodWithNamedArgs("getUsers", new HashMap<>());
+        assertTrue(System.nanoTime() - start >= 50_000_000L);
+    }
+
+    @Test
+    public void testLiteralPathsBeforeTemplates() throws Exception {
+        stub.stop();
+        OpenAPI openAPI = new OpenAPI().paths(new Paths()
+            .addPathItem("/pet/{petId}", pathItem("200"))
+            .addPathItem("/pet/findByStatus", pathItem("202"))
+            .addPathItem("/{kind}/{id}/tags", pathItem("203"))
+            .addPathItem("/pet/{petId}/tags", pathItem("206")));
+        stub = new OpenAPIStubServer(openAPI).start();
+
+        assertEquals(202, status("/pet/findByStatus"));
+        assertEquals(200, status("/pet/7"));
+        assertEquals(206, status("/pet/7/tags"));
+        assertEquals(203, status("/store/7/tags"));
+
+        assertTrue(OpenAPIStubServer.compareTemplates("/pet/findByStatus", "/pet/{petId}") < 0);
+        assertTrue(OpenAPIStubServer.compareTemplates("/{a}/b", "/a/{b}") > 0);
+        assertEquals(0, OpenAPIStubServer.compareTemplates("/pet/{petId}", "/user/{id}"));
+    }
+
+    private static PathItem pathItem(String status) {
+        return new PathItem().get(new Operation().responses(new ApiResponses().addApiResponse(status, new ApiResponse())));
+    }
+
+    private int status(String path) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL(stub.getBaseUrl() + path).openConnection();
+        try {
+            return connection.getResponseCode();
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
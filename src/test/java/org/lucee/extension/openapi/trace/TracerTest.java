@@ -0,0 +1,163 @@
+package org.lucee.extension.openapi.trace;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import org.lucee.extension.openapi.util.LuceeHttpUtil;
+import org.lucee.extension.openapi.util.RequestOptions;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Unit tests for trace context propagation and span export
+ */
+public class TracerTest {
+
+    @Test
+    public void testParseAndFormatTraceparent() {
+        String header = "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01";
+        TraceContext context = TraceContext.parse(header, "vendor=value");
+
+        assertNotNull(context);
+        assertEquals("4bf92f3577b34da6a3ce929d0e0e4736", context.getTraceId());
+        assertEquals("00f067aa0ba902b7", context.getSpanId());
+        assertTrue(context.isSampled());
+        assertEquals(header, context.toTraceparent());
+        assertEquals("vendor=value", context.getTraceState());
+
+        TraceContext child = context.newChild();
+        assertEquals(context.getTraceId(), child.getTraceId());
+        assertNotEquals(context.getSpanId(), child.getSpanId());
+    }
+
+    @Test
+    public void testRejectInvalidTraceparent() {
+        assertNull(TraceContext.parse(null, null));
+        assertNull(TraceContext.parse("", null));
+        assertNull(TraceContext.parse("00-00000000000000000000000000000000-00f067aa0ba902b7-01", null));
+        assertNull(TraceContext.parse("00-4bf92f3577b34da6a3ce929d0e0e4736-0000000000000000-01", null));
+        assertNull(TraceContext.parse("ff-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01", null));
+        assertNull(TraceContext.parse("00-4BF92F3577B34DA6A3CE929D0E0E4736-00f067aa0ba902b7-01", null));
+    }
+
+    @Test
+    public void testTracerFromOptions() throws Exception {
+        assertNull(Tracer.fromOptions(null));
+        Map<String, Object> options = new HashMap<>();
+        options.put("TRACING", "memory");
+        assertSame(InMemorySpanExporter.getInstance(), Tracer.fromOptions(options).getExporter());
+        options.put("tracing", false);
+        options.remove("TRACING");
+        assertNull(Tracer.fromOptions(options));
+        options.put("tracing", LogSpanExporter.class.getName());
+        assertTrue(Tracer.fromOptions(options).getExporter() instanceof LogSpanExporter);
+
+        for (String invalid : new String[] { "otlp", String.class.getName() }) {
+            options.put("tracing", invalid);
+            try {
+                Tracer.fromOptions(options);
+                fail("Expected " + invalid + " to be rejected");
+            } catch (Exception e) {
+                // expected; the application exception needs a running engine
+            }
+        }
+    }
+
+    @Test
+    public void testHttpSpanWithPhasesAndPropagation() throws Exception {
+        AtomicReference<String> received = new AtomicReference<>();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/traced", exchange -> {
+            received.set(exchange.getRequestHeaders().getFirst("traceparent"));
+            byte[] json = "{\"ok\":true}".getBytes("UTF-8");
+            exchange.sendResponseHeaders(200, json.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(json);
+            }
+        });
+        server.start();
+        try {
+            InMemorySpanExporter exporter = new InMemorySpanExporter(10);
+            Tracer tracer = new Tracer(exporter);
+            TraceContext incoming = TraceContext.parse("00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01", null);
+            Span parent = tracer.startSpan("openapi test", incoming);
+
+            String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/traced";
+            new LuceeHttpUtil().makeRequest("GET", url, null, null, null, new RequestOptions().setSpan(parent));
+            parent.end();
+
+            List<Span> spans = exporter.getSpans();
+            assertEquals(2, spans.size());
+            Span http = spans.get(0);
+            assertEquals("HTTP GET", http.getName());
+            assertEquals(incoming.getTraceId(), http.getTraceId());
+            assertEquals(parent.getSpanId(), http.getParentSpanId());
+            assertEquals(incoming.getSpanId(), spans.get(1).getParentSpanId());
+            assertEquals(http.getContext().toTraceparent(), received.get());
+            assertEquals(200, http.getAttributes().get("http.status_code"));
+            for (String phase : new String[] { "dns", "connect", "ttfb", "download" }) {
+                assertTrue("missing phase " + phase, http.getPhases().containsKey(phase));
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testTracedRequestWithBody() throws Exception {
+        AtomicReference<String> received = new AtomicReference<>();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/pets", exchange -> {
+            received.set(new String(exchange.getRequestBody().readAllBytes(), "UTF-8"));
+            byte[] json = "{\"id\":1}".getBytes("UTF-8");
+            exchange.sendResponseHeaders(201, json.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(json);
+            }
+        });
+        server.start();
+        try {
+            InMemorySpanExporter exporter = new InMemorySpanExporter(10);
+            Span parent = new Tracer(exporter).startSpan("openapi test", null);
+
+            String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/pets";
+            Map<?, ?> result = (Map<?, ?>) new LuceeHttpUtil().makeRequest("POST", url, null, null, Map.of("name", "Rex"),
+                new RequestOptions().setSpan(parent));
+            parent.end();
+
+            assertEquals(201, result.get("statusCode"));
+            assertEquals("{\"name\":\"Rex\"}", received.get());
+            Span http = exporter.getSpans().get(0);
+            assertEquals("HTTP POST", http.getName());
+            for (String phase : new String[] { "connect", "send", "ttfb" }) {
+                assertTrue("missing phase " + phase, http.getPhases().containsKey(phase));
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testTimingSSLSocketFactoryFollowsDelegate() throws Exception {
+        SSLSocketFactory first = SSLContext.getDefault().getSocketFactory();
+        SSLContext other = SSLContext.getInstance("TLS");
+        other.init(null, null, null);
+        SSLSocketFactory second = other.getSocketFactory();
+
+        // One wrapper per factory keeps pooled connections reusable, a new default gets its own
+        SSLSocketFactory wrapped = TimingSSLSocketFactory.wrap(first);
+        assertSame(wrapped, TimingSSLSocketFactory.wrap(first));
+        assertSame(wrapped, TimingSSLSocketFactory.wrap(wrapped));
+        assertNotSame(wrapped, TimingSSLSocketFactory.wrap(second));
+    }
+}
@@ -0,0 +1,300 @@
+package org.lucee.extension.openapi.transport;
+
+import org.lucee.extension.openapi.util.LazyResponse;
+import org.lucee.extension.openapi.util.LuceeHttpUtil;
+import org.lucee.extension.openapi.util.OptionUtil;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for custom transports and HTTP over a Unix domain socket
+ */
+public class TransportTest {
+
+    private static final AtomicBoolean INITIALIZED = new AtomicBoolean();
+
+    private ServerSocketChannel server;
+    private File socketDir;
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger dropped = new AtomicInteger();
+
+    @After
+    public void tearDown() throws Exception {
+        if (server != null) {
+            server.close();
+        }
+        if (socketDir != null) {
+            for (File file : socketDir.listFiles()) file.delete();
+            socketDir.delete();
+        }
+    }
+
+    @Test
+    public void testInMemoryTransport() throws Exception {
+        List<TransportRequest> sent = new ArrayList<>();
+        Transport memory = request -> {
+            sent.add(request);
+            return TransportResponse.of(201, "Created", Map.of("Content-Type", List.of("application/json")),
+                "{\"id\":7}".getBytes(StandardCharsets.UTF_8));
+        };
+        Map<String, String> headers = new HashMap<>();
+        headers.put("accept", "application/vnd.test+json");
+
+        LazyResponse result = (LazyResponse) new LuceeHttpUtil(memory).makeRequest("post", "http://memory/pets", headers,
+            Map.of("q", "a b"), Map.of("name", "Rex"));
+
+        assertEquals(201, result.get("statusCode"));
+        assertEquals(7, ((Map<?, ?>) result.get("data")).get("id"));
+        TransportRequest request = sent.get(0);
+        assertEquals("POST", request.getMethod());
+        assertEquals("http://memory/pets?q=a+b", request.getUrl().toString());
+        // Custom headers replace the defaults whatever their case
+        assertEquals("application/vnd.test+json", request.getHeaders().get("Accept"));
+        assertEquals("application/json", request.getHeaders().get("Content-Type"));
+        assertEquals("{\"name\":\"Rex\"}", new String(request.getBody(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testTransportOptionNames() throws Exception {
+        Map<String, Object> options = new HashMap<>();
+        options.put("transport", "url");
+        assertSame(UrlConnectionTransport.getInstance(), Transport.fromOptions(options));
+        options.put("transport", MemoryTransport.class.getName());
+        assertTrue(Transport.fromOptions(options) instanceof MemoryTransport);
+
+        for (String invalid : new String[] { "https", String.class.getName(), Initialized.class.getName() }) {
+            options.put("transport", invalid);
+            try {
+                Transport.fromOptions(options);
+                fail("Expected " + invalid + " to be rejected");
+            } catch (Exception e) {
+                // expected; the application exception needs a running engine
+            }
+        }
+        assertNull(OptionUtil.getClass("https", Transport.class));
+        assertNull(OptionUtil.getClass(Initialized.class.getName(), Transport.class));
+        assertFalse("Rejected classes must not be initialized", INITIALIZED.get());
+    }
+
+    @Test
+    public void testUnixSocketTransport() throws Exception {
+        Assume.assumeTrue("Unix domain sockets require Java 16+", UnixSocketTransport.isSupported());
+        String path = startSidecar();
+
+        Map<String, Object> options = new HashMap<>();
+        options.put("transport", "unix");
+        options.put("socketPath", path);
+        Transport transport = Transport.fromOptions(options);
+        assertTrue(transport instanceof UnixSocketTransport);
+        LuceeHttpUtil http = new LuceeHttpUtil(transport);
+        try {
+            LazyResponse json = (LazyResponse) http.makeRequest("GET", "http://sidecar/json", null, null, null);
+            assertEquals(200, json.get("statusCode"));
+            assertEquals("Fluffy", ((Map<?, ?>) json.get("data")).get("name"));
+
+            LazyResponse chunked = (LazyResponse) http.makeRequest("GET", "http://sidecar/chunked", null, null, null);
+            assertEquals(3, ((List<?>) ((Map<?, ?>) chunked.get("data")).get("items")).size());
+
+            LazyResponse echo = (LazyResponse) http.makeRequest("POST", "http://sidecar:8080/echo", null, null,
+                Map.of("name", "Rex"));
+            assertEquals("Rex", ((Map<?, ?>) echo.get("data")).get("name"));
+            assertEquals("sidecar:8080", ((Map<?, ?>) echo.get("headers")).get("X-Host").toString().replaceAll("[\\[\\]]", ""));
+
+            LazyResponse missing = (LazyResponse) http.makeRequest("GET", "http://sidecar/missing", null, null, null);
+            assertEquals(404, missing.get("statusCode"));
+            assertEquals("Not Found", missing.get("statusText"));
+
+            // All calls share one keep-alive connection
+            assertEquals(1, connections.get());
+
+            // A connection the server closes is replaced
+            http.makeRequest("GET", "http://sidecar/close", null, null, null);
+            http.makeRequest("GET", "http://sidecar/json", null, null, null);
+            assertEquals(2, connections.get());
+        } finally {
+            http.close();
+        }
+    }
+
+    @Test
+    public void testHeaderInjectionRejected() throws Exception {
+        Assume.assumeTrue("Unix domain sockets require Java 16+", UnixSocketTransport.isSupported());
+        LuceeHttpUtil http = new LuceeHttpUtil(new UnixSocketTransport(startSidecar()));
+        try {
+            List<Map<String, String>> invalid = List.of(
+                Map.of("X-Test", "a\r\nX-Injected: 1"),
+                Map.of("X-Test", "a\n\nGET /json HTTP/1.1"),
+                Map.of("X Test", "a"),
+                Map.of("X-Test:", "a"));
+            for (Map<String, String> headers : invalid) {
+                try {
+                    http.makeRequest("GET", "http://sidecar/json", new HashMap<>(headers), null, null);
+                    fail("Expected headers " + headers + " to be rejected");
+                } catch (Exception e) {
+                    // expected
+                }
+            }
+            // Nothing reached the socket
+            assertEquals(0, connections.get());
+
+            LazyResponse valid = (LazyResponse) http.makeRequest("GET", "http://sidecar/json",
+                new HashMap<>(Map.of("X-Test", "a b\tc")), null, null);
+            assertEquals(200, valid.get("statusCode"));
+        } finally {
+            http.close();
+        }
+    }
+
+    @Test
+    public void testOnlyIdempotentRequestsAreResent() throws Exception {
+        Assume.assumeTrue("Unix domain sockets require Java 16+", UnixSocketTransport.isSupported());
+        LuceeHttpUtil http = new LuceeHttpUtil(new UnixSocketTransport(startSidecar()));
+        try {
+            // A POST the server received on a pooled connection is not sent again
+            http.makeRequest("GET", "http://sidecar/json", null, null, null);
+            try {
+                http.makeRequest("POST", "http://sidecar/drop", null, null, Map.of("name", "Rex"));
+                fail("Expected the dropped connection to fail the call");
+            } catch (Exception e) {
+                // expected
+            }
+            assertEquals(1, dropped.get());
+
+            // A GET is resent once on a new connection
+            http.makeRequest("GET", "http://sidecar/json", null, null, null);
+            try {
+                http.makeRequest("GET", "http://sidecar/drop", null, null, null);
+                fail("Expected the dropped connection to fail the call");
+            } catch (Exception e) {
+                // expected
+            }
+            assertEquals(3, dropped.get());
+        } finally {
+            http.close();
+        }
+    }
+
+    /**
+     * Minimal HTTP/1.1 server on a Unix domain socket, set up reflectively as the tests compile for Java 11
+     */
+    private String startSidecar() throws Exception {
+        socketDir = Files.createTempDirectory("openapi-uds-").toFile();
+        String path = new File(socketDir, "sidecar.sock").getAbsolutePath();
+        Object address = Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", String.class).invoke(null, path);
+        server = (ServerSocketChannel) ServerSocketChannel.class.getMethod("open", ProtocolFamily.class)
+            .invoke(null, StandardProtocolFamily.valueOf("UNIX"));
+        server.bind((SocketAddress) address);
+
+        Thread acceptor = new Thread(() -> {
+            try {
+                while (true) {
+                    SocketChannel channel = server.accept();
+                    connections.incrementAndGet();
+                    Thread handler = new Thread(() -> serve(channel));
+                    handler.setDaemon(true);
+                    handler.start();
+                }
+            } catch (IOException e) {
+                // server closed
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return path;
+    }
+
+    private void serve(SocketChannel channel) {
+        try (SocketChannel ch = channel) {
+            InputStream in = Channels.newInputStream(ch);
+            OutputStream out = Channels.newOutputStream(ch);
+            String head;
+            while ((head = readHead(in)) != null) {
+                String[] lines = head.split("\r\n");
+                String target = lines[0].split(" ")[1];
+                Map<String, String> headers = new HashMap<>();
+                for (int i = 1; i < lines.length; i++) {
+                    int colon = lines[i].indexOf(':');
+                    headers.put(lines[i].substring(0, colon).toLowerCase(), lines[i].substring(colon + 1).trim());
+                }
+                byte[] body = in.readNBytes(Integer.parseInt(headers.getOrDefault("content-length", "0")));
+
+                if (target.equals("/drop")) {
+                    // Closes without a response, like a server that goes away after reading the request
+                    dropped.incrementAndGet();
+                    return;
+                } else if (target.equals("/chunked")) {
+                    out.write(("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nTransfer-Encoding: chunked\r\n\r\n"
+                        + "b\r\n{\"items\":[1\r\n" + "5;ext=1\r\n,2,3]\r\n" + "1\r\n}\r\n" + "0\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+                } else if (target.equals("/echo")) {
+                    respond(out, "200 OK", "X-Host: " + headers.get("host") + "\r\n", body);
+                } else if (target.equals("/json") || target.equals("/close")) {
+                    boolean close = target.equals("/close");
+                    respond(out, "200 OK", close ? "Connection: close\r\n" : "",
+                        "{\"id\":1,\"name\":\"Fluffy\"}".getBytes(StandardCharsets.UTF_8));
+                    if (close) return;
+                } else {
+                    respond(out, "404 Not Found", "", "{\"error\":\"not found\"}".getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        } catch (IOException e) {
+            // client went away
+        }
+    }
+
+    private static void respond(OutputStream out, String status, String extraHeaders, byte[] body) throws IOException {
+        out.write(("HTTP/1.1 " + status + "\r\nContent-Type: application/json\r\n" + extraHeaders
+            + "Content-Length: " + body.length + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+        out.write(body);
+        out.flush();
+    }
+
+    private static String readHead(InputStream in) throws IOException {
+        ByteArrayOutputStream head = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1) {
+            head.write(b);
+            byte[] bytes = head.toByteArray();
+            int n = bytes.length;
+            if (n >= 4 && bytes[n - 4] == '\r' && bytes[n - 3] == '\n' && bytes[n - 2] == '\r' && bytes[n - 1] == '\n') {
+                return new String(bytes, 0, n - 4, StandardCharsets.ISO_8859_1);
+            }
+        }
+        return null;
+    }
+
+    public static class MemoryTransport implements Transport {
+        @Override
+        public TransportResponse send(TransportRequest request) {
+            return TransportResponse.of(204, "No Content", Map.of(), new byte[0]);
+        }
+    }
+
+    public static class Initialized {
+        static {
+            INITIALIZED.set(true);
+        }
+    }
+}
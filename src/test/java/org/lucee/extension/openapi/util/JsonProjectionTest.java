@@ -0,0 +1,55 @@
+package org.lucee.extension.openapi.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Unit tests for response projections
+ */
+public class JsonProjectionTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static Object parse(String fields, String json) {
+        LazyResponse response = new LazyResponse(MAPPER, 200, "OK", Collections.emptyMap(),
+            json.getBytes(StandardCharsets.UTF_8), null, JsonProjection.compile(fields));
+        return response.get("data");
+    }
+
+    private static String project(String fields, String json) throws Exception {
+        return MAPPER.writeValueAsString(parse(fields, json));
+    }
+
+    @Test
+    public void testNestedPathsAndArrays() throws Exception {
+        String json = "{\"id\":1,\"name\":\"rex\",\"owner\":{\"name\":\"ann\",\"email\":\"a@b.c\"},"
+            + "\"tags\":[{\"name\":\"t1\",\"weight\":3},{\"weight\":4}],\"history\":[{\"a\":[1,2,3]},{\"b\":\"x\"}]}";
+
+        assertEquals("{\"id\":1,\"owner\":{\"name\":\"ann\"},\"tags\":[{\"name\":\"t1\"},{}]}",
+            project("id, owner.name, tags[*].name", json));
+        // A shorter path keeps the whole subtree
+        assertEquals("{\"owner\":{\"name\":\"ann\",\"email\":\"a@b.c\"}}", project("owner.name,owner", json));
+        // Scalars where an object is expected do not match
+        assertEquals("{}", project("name.first", json));
+    }
+
+    @Test
+    public void testRootArray() throws Exception {
+        assertEquals("[{\"id\":1},{\"id\":2},{}]", project("$.id", "[{\"id\":1,\"x\":0},{\"id\":2},{\"y\":1}]"));
+        assertEquals("[]", project("id", "[1,2]"));
+    }
+
+    @Test
+    public void testCompile() throws Exception {
+        assertNull(JsonProjection.compile(null));
+        assertNull(JsonProjection.compile(" , "));
+        assertEquals("a,b.c", JsonProjection.compile(Arrays.asList("a", "b.c")).toString());
+        assertEquals("not json", parse("id", "not json"));
+    }
+}
@@ -0,0 +1,497 @@
+package org.lucee.extension.openapi.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+
+import org.lucee.extension.openapi.transport.Transport;
+import org.lucee.extension.openapi.transport.TransportResponse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for LuceeHttpUtil against a local HTTP server
+ */
+public class LuceeHttpUtilTest {
+
+    private HttpServer server;
+    private String baseUrl;
+    private byte[] binary;
+    private final List<Integer> clientPorts = new java.util.concurrent.CopyOnWriteArrayList<>();
+    private final List<String> methods = new java.util.concurrent.CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        binary = new byte[100_000];
+        for (int i = 0; i < binary.length; i++) {
+            binary[i] = (byte) (i % 251);
+        }
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/binary", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "application/octet-stream");
+            exchange.sendResponseHeaders(200, binary.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(binary);
+            }
+        });
+        server.createContext("/json", exchange -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            byte[] json = "{\"id\":1,\"name\":\"Fluffy\"}".getBytes("UTF-8");
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, json.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(json);
+            }
+        });
+        server.createContext("/events", exchange -> {
+            String lastEventId = exchange.getRequestHeaders().getFirst("Last-Event-ID");
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream os = exchange.getResponseBody();
+            if (lastEventId == null) {
+                // First connection goes silent in the middle of the stream
+                os.write(": heartbeat\n\nid: 1\nevent: tick\ndata: one\n\nid: 2\ndata: two\ndata: lines\n\n".getBytes("UTF-8"));
+                os.flush();
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                exchange.close();
+                return;
+            }
+            os.write(("retry: 10\nid: 3\ndata: resumed after " + lastEventId + "\n\n").getBytes("UTF-8"));
+            os.close();
+        });
+        server.createContext("/endless", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            // One line without an end, or data lines without the blank line that ends the event
+            String chunk = exchange.getRequestURI().getQuery().equals("line") ? "xxxxxxxxxx" : "data: xxxxxxxxxx\n";
+            try (OutputStream os = exchange.getResponseBody()) {
+                for (int i = 0; i < 1000; i++) {
+                    os.write(chunk.getBytes("UTF-8"));
+                }
+            } catch (IOException e) {
+                // client gave up
+            }
+        });
+        server.createContext("/ndjson", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "application/x-ndjson");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream os = exchange.getResponseBody()) {
+                for (int i = 1; i <= 100; i++) {
+                    os.write(("{\"n\":" + i + "}\n").getBytes("UTF-8"));
+                }
+            }
+        });
+        server.createContext("/", exchange -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            methods.add(exchange.getRequestMethod());
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                // HttpServer only keeps the connection open after a HEAD if the request was read to the end
+                exchange.getRequestBody().close();
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            byte[] json = "{\"error\":\"not found\"}".getBytes("UTF-8");
+            exchange.sendResponseHeaders(404, json.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(json);
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        ResponseBuffer.resetGlobalLimit();
+    }
+
+    @Test
+    public void testBinaryContentType() {
+        assertTrue(LuceeHttpUtil.isBinaryContentType("application/octet-stream"));
+        assertTrue(LuceeHttpUtil.isBinaryContentType("image/png"));
+        assertTrue(LuceeHttpUtil.isBinaryContentType("application/pdf; charset=binary"));
+        assertFalse(LuceeHttpUtil.isBinaryContentType("application/json"));
+        assertFalse(LuceeHttpUtil.isBinaryContentType("application/problem+json"));
+        assertFalse(LuceeHttpUtil.isBinaryContentType("text/plain"));
+        assertFalse(LuceeHttpUtil.isBinaryContentType(null));
+    }
+
+    @Test
+    public void testDownloadToFile() throws Exception {
+        File target = File.createTempFile("openapi-test-", ".bin");
+        try {
+            RequestOptions options = new RequestOptions().setSaveTo(target.getAbsolutePath());
+            Map<?, ?> result = (Map<?, ?>) new LuceeHttpUtil().makeRequest("GET", baseUrl + "/binary", null, null, null, options);
+
+            assertEquals(200, result.get("statusCode"));
+            assertEquals((long) binary.length, result.get("size"));
+            assertEquals(target.getAbsolutePath(), result.get("path"));
+            assertNotNull(result.get("hash"));
+            assertFalse(result.containsKey("data"));
+            assertArrayEquals(binary, Files.readAllBytes(target.toPath()));
+        } finally {
+            target.delete();
+        }
+    }
+
+    @Test
+    public void testFailedDownloadLeavesNoFile() throws Exception {
+        File target = new File(Files.createTempDirectory("openapi-test-").toFile(), "partial.bin");
+        try {
+            // The connection drops after part of the body
+            Transport dropping = request -> new TransportResponse(200, "OK", null) {
+                @Override
+                public InputStream getBody() {
+                    return new SequenceInputStream(new ByteArrayInputStream(new byte[1000]), new InputStream() {
+                        @Override
+                        public int read() throws IOException {
+                            throw new IOException("Connection reset");
+                        }
+                    });
+                }
+
+                @Override
+                public void release(boolean reuse) {
+                }
+            };
+            RequestOptions options = new RequestOptions().setSaveTo(target);
+            new LuceeHttpUtil(dropping).makeRequest("GET", "http://memory/report", null, null, null, options);
+            fail("Truncated download must fail");
+        } catch (IOException e) {
+            assertEquals("Connection reset", e.getMessage());
+            assertFalse(target.exists());
+        } finally {
+            target.delete();
+            target.getParentFile().delete();
+        }
+    }
+
+    @Test
+    public void testDownloadWithoutBody() throws Exception {
+        File target = new File(Files.createTempDirectory("openapi-test-").toFile(), "empty.bin");
+        try {
+            Transport noContent = request -> TransportResponse.of(204, "No Content", Map.of(), null);
+            RequestOptions options = new RequestOptions().setSaveTo(target);
+            Map<?, ?> result = (Map<?, ?>) new LuceeHttpUtil(noContent).makeRequest("GET", "http://memory/report", null, null, null, options);
+
+            assertEquals(204, result.get("statusCode"));
+            assertEquals(0L, result.get("size"));
+            // SHA-256 of no input
+            assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855", result.get("hash"));
+            assertEquals(target.getAbsolutePath(), result.get("path"));
+            assertEquals(0, target.length());
+            assertTrue(target.exists());
+        } finally {
+            target.delete();
+            target.getParentFile().delete();
+        }
+    }
+
+    @Test
+    public void testDownloadToStream() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RequestOptions options = new RequestOptions().setSaveTo(out);
+        Map<?, ?> result = (Map<?, ?>) new LuceeHttpUtil().makeRequest("GET", baseUrl + "/binary", null, null, null, options);
+
+        assertEquals((long) binary.length, result.get("size"));
+        assertFalse(result.containsKey("path"));
+        assertArrayEquals(binary, out.toByteArray());
+    }
+
+    @Test
+    public void testLazyResponse() throws Exception {
+        LazyResponse result = (LazyResponse) new LuceeHttpUtil().makeRequest("GET", baseUrl + "/json", null, null, null);
+
+        assertEquals(200, result.get("STATUSCODE"));
+        assertTrue(result.containsKey("data"));
+        assertFalse(result.isMaterialized());
+
+        Map<?, ?> data = (Map<?, ?>) result.get("data");
+        assertEquals("Fluffy", data.get("name"));
+        assertNotNull(result.get("headers"));
+        assertTrue(result.isMaterialized());
+        assertEquals(4, result.size());
+    }
+
+    @Test
+    public void testNdjsonStreamWithStop() throws Exception {
+        List<Object> received = new ArrayList<>();
+        RequestOptions options = new RequestOptions().setStreamHandler(event -> {
+            received.add(((Map<?, ?>) event.get("data")).get("n"));
+            return received.size() < 3;
+        });
+        Map<?, ?> result = (Map<?, ?>) new LuceeHttpUtil().makeRequest("GET", baseUrl + "/ndjson", null, null, null, options);
+
+        assertEquals(3, received.size());
+        assertEquals(1, received.get(0));
+        assertEquals(3L, result.get("events"));
+        assertEquals(Boolean.TRUE, result.get("stopped"));
+    }
+
+    @Test
+    public void testEventStreamReconnectsWithLastEventId() throws Exception {
+        List<Map<String, Object>> received = new ArrayList<>();
+        RequestOptions options = new RequestOptions().setReconnectDelay(0).setStreamIdleTimeout(200).setStreamHandler(event -> {
+            received.add(event);
+            return true;
+        });
+        Map<?, ?> result = (Map<?, ?>) new LuceeHttpUtil().makeRequest("GET", baseUrl + "/events", null, null, null, options);
+
+        assertEquals(3, received.size());
+        assertEquals("tick", received.get(0).get("event"));
+        assertEquals("one", received.get(0).get("data"));
+        assertEquals("two\nlines", received.get(1).get("data"));
+        assertEquals("message", received.get(1).get("event"));
+        assertEquals("resumed after 2", received.get(2).get("data"));
+        assertNull(received.get(0).get("retry"));
+        assertEquals(10L, received.get(2).get("retry"));
+        assertEquals(1, result.get("reconnects"));
+        assertEquals("3", result.get("lastEventId"));
+        assertEquals(1L, result.get("heartbeats"));
+    }
+
+    @Test
+    public void testOversizedStreamLinesAndEventsFail() throws Exception {
+        for (String mode : new String[] { "line", "event" }) {
+            List<Map<String, Object>> received = new ArrayList<>();
+            RequestOptions options = new RequestOptions().setMaxBodySize(1000).setReconnectDelay(0).setStreamHandler(event -> {
+                received.add(event);
+                return true;
+            });
+            try {
+                new LuceeHttpUtil().makeRequest("GET", baseUrl + "/endless?" + mode, null, null, null, options);
+                fail("Expected the " + mode + " to exceed the limit");
+            } catch (ResponseBuffer.LimitExceededException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("1000"));
+            }
+            assertTrue(received.isEmpty());
+        }
+    }
+
+    @Test
+    public void testFailedReconnectCountsAsAttempt() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        Transport flaky = request -> {
+            switch (attempts.incrementAndGet()) {
+                case 1:
+                    // Interrupted after the first event
+                    return new TransportResponse(200, "OK", Map.of("Content-Type", List.of("text/event-stream"))) {
+                        @Override
+                        public InputStream getBody() {
+                            return new SequenceInputStream(new ByteArrayInputStream("id: 1\ndata: one\n\n".getBytes()),
+                                new InputStream() {
+                                    @Override
+                                    public int read() throws IOException {
+                                        throw new IOException("Connection reset");
+                                    }
+                                });
+                        }
+
+                        @Override
+                        public void release(boolean reuse) {
+                        }
+                    };
+                case 2:
+                    throw new IOException("Connection refused");
+                default:
+                    return TransportResponse.of(200, "OK", Map.of("Content-Type", List.of("text/event-stream")),
+                        "id: 2\ndata: two\n\n".getBytes());
+            }
+        };
+        List<Map<String, Object>> received = new ArrayList<>();
+        RequestOptions options = new RequestOptions().setReconnectDelay(0).setMaxReconnects(2).setStreamHandler(event -> {
+            received.add(event);
+            return true;
+        });
+        Map<?, ?> result = (Map<?, ?>) new LuceeHttpUtil(flaky).makeRequest("GET", "http://memory/events", null, null, null, options);
+
+        assertEquals(3, attempts.get());
+        assertEquals(2, received.size());
+        assertEquals(2, result.get("reconnects"));
+
+        // Without attempts left, the failure is reported
+        attempts.set(0);
+        options = new RequestOptions().setReconnectDelay(0).setMaxReconnects(1).setStreamHandler(event -> true);
+        try {
+            new LuceeHttpUtil(flaky).makeRequest("GET", "http://memory/events", null, null, null, options);
+            fail("Reconnect failure must be reported");
+        } catch (IOException e) {
+            assertEquals("Connection refused", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testWarmUpConnectionIsReused() throws Exception {
+        LuceeHttpUtil http = new LuceeHttpUtil();
+        Map<String, Object> warm = http.warmUp(baseUrl + "/", 2000);
+        assertEquals(404, warm.get("statusCode"));
+        // Probing must not run a real operation of the API
+        assertEquals(List.of("HEAD"), methods);
+
+        // The first real call and the ones after it run over the pooled warm-up connection
+        http.makeRequest("GET", baseUrl + "/json", null, null, null);
+        http.makeRequest("GET", baseUrl + "/json", null, null, null);
+        assertEquals(3, clientPorts.size());
+        assertEquals(clientPorts.get(0), clientPorts.get(1));
+        assertEquals(clientPorts.get(0), clientPorts.get(2));
+    }
+
+    @Test
+    public void testDnsCacheServesCachedAddresses() throws Exception {
+        DnsCache cache = DnsCache.getInstance();
+        cache.setTtl("localhost", 60000);
+        java.net.InetAddress[] first = cache.lookup("localhost");
+        assertTrue(first.length > 0);
+        assertSame(first, cache.lookup("LOCALHOST"));
+    }
+
+    @Test
+    public void testDnsCacheOnlyHoldsConfiguredHosts() throws Exception {
+        DnsCache cache = DnsCache.getInstance();
+        cache.clear();
+        new LuceeHttpUtil().makeRequest("GET", baseUrl + "/json", null, null, null);
+        assertFalse(cache.isManaged("127.0.0.1"));
+
+        new LuceeHttpUtil().warmUp(baseUrl + "/", 2000);
+        assertTrue(cache.isManaged("127.0.0.1"));
+        cache.clear();
+    }
+
+    @Test
+    public void testLargeBodiesSpillToDisk() throws Exception {
+        LuceeHttpUtil http = new LuceeHttpUtil();
+        http.setMaxBodySize(10);
+
+        // JSON is parsed from the temp file, which is removed afterwards
+        Map<?, ?> json = (Map<?, ?>) http.makeRequest("GET", baseUrl + "/json", null, null, null, new RequestOptions());
+        assertEquals("Fluffy", ((Map<?, ?>) json.get("data")).get("name"));
+        assertNull(json.get("path"));
+
+        // Anything else is handed over as the file
+        Map<?, ?> binaryResult = (Map<?, ?>) http.makeRequest("GET", baseUrl + "/binary", null, null, null, new RequestOptions());
+        File file = new File((String) binaryResult.get("path"));
+        try {
+            assertFalse(binaryResult.containsKey("data"));
+            assertArrayEquals(binary, Files.readAllBytes(file.toPath()));
+        } finally {
+            file.delete();
+        }
+
+        // An unread spilled body is deleted once the response is released
+        int before = spilledFiles();
+        LazyResponse unread = (LazyResponse) http.makeRequest("GET", baseUrl + "/json", null, null, null, new RequestOptions());
+        assertEquals(before + 1, spilledFiles());
+        unread.release();
+        assertEquals(before, spilledFiles());
+        assertFalse(unread.containsKey("data"));
+    }
+
+    @Test
+    public void testSpilledBodyKeysMatchValues() throws Exception {
+        // Looks like JSON, so it is only known to be a path once parsed
+        byte[] invalid = "{\"name\": not json after all".getBytes("UTF-8");
+        ResponseBuffer buffer = ResponseBuffer.read(new ByteArrayInputStream(invalid), -1, 10, true, "test", null);
+        assertTrue(buffer.isSpilled() && buffer.isJson());
+
+        LazyResponse response = new LazyResponse(new ObjectMapper(), 200, "OK", null, buffer, null, null);
+        assertFalse(response.containsKey("data"));
+        assertTrue(response.containsKey("path"));
+        assertEquals(Set.of("statusCode", "statusText", "path"), response.keySet());
+        assertNull(response.get("data"));
+        File file = new File((String) response.get("path"));
+        try {
+            assertArrayEquals(invalid, Files.readAllBytes(file.toPath()));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testInFlightBytesHeldUntilReleased() throws Exception {
+        LuceeHttpUtil http = new LuceeHttpUtil();
+        http.setSpillToDisk(false);
+        http.setMaxInFlightBytes(150_000);
+
+        LazyResponse first = (LazyResponse) http.makeRequest("GET", baseUrl + "/binary", null, null, null, new RequestOptions());
+        assertEquals(binary.length, http.getInFlightBytes());
+
+        // The unread body still counts against the client limit
+        try {
+            http.makeRequest("GET", baseUrl + "/binary", null, null, null, new RequestOptions());
+            fail("Expected the body to be rejected");
+        } catch (ResponseBuffer.LimitExceededException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("client limit"));
+        }
+        assertEquals(binary.length, http.getInFlightBytes());
+
+        // Reading the body releases it
+        assertNotNull(first.get("data"));
+        assertEquals(0, http.getInFlightBytes());
+        LazyResponse second = (LazyResponse) http.makeRequest("GET", baseUrl + "/binary", null, null, null, new RequestOptions());
+        assertEquals(binary.length, http.getInFlightBytes());
+        second.release();
+        assertEquals(0, http.getInFlightBytes());
+    }
+
+    @Test
+    public void testLargeBodiesRejected() throws Exception {
+        LuceeHttpUtil http = new LuceeHttpUtil();
+        http.setSpillToDisk(false);
+
+        // Per call limit
+        try {
+            http.makeRequest("GET", baseUrl + "/binary", null, null, null, new RequestOptions().setOperationId("getBlob").setMaxBodySize(1000));
+            fail("Expected the body to be rejected");
+        } catch (ResponseBuffer.LimitExceededException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("[getBlob]") && e.getMessage().contains("1000"));
+        }
+
+        // Global limit of bytes held at the same time, on top of bodies other tests have not released yet
+        long inFlight = ResponseBuffer.getInFlightBytes();
+        ResponseBuffer.setGlobalLimit(inFlight + 50_000);
+        try {
+            http.makeRequest("GET", baseUrl + "/binary", null, null, null, new RequestOptions());
+            fail("Expected the body to be rejected");
+        } catch (ResponseBuffer.LimitExceededException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("global limit"));
+        }
+        assertEquals(inFlight, ResponseBuffer.getInFlightBytes());
+        assertEquals(200, ((Map<?, ?>) http.makeRequest("GET", baseUrl + "/json", null, null, null, new RequestOptions())).get("statusCode"));
+
+        // The admin limit is set, not tightened, and zero restores the default
+        ResponseBuffer.setGlobalLimit(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, ResponseBuffer.getGlobalLimit());
+        ResponseBuffer.setGlobalLimit(0);
+        assertEquals(Runtime.getRuntime().maxMemory() / 4, ResponseBuffer.getGlobalLimit());
+    }
+
+    private static int spilledFiles() {
+        String[] names = new File(System.getProperty("java.io.tmpdir")).list((dir, name) -> name.startsWith("openapi-response-"));
+        return names != null ? names.length : 0;
+    }
+}
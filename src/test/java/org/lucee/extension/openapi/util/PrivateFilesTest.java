@@ -0,0 +1,39 @@
+package org.lucee.extension.openapi.util;
+
+import org.junit.Assume;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+
+/**
+ * Tests for owner-only generated files
+ */
+public class PrivateFilesTest {
+
+    @Test
+    public void testOwnerOnlyDirectoryAndFiles() throws Exception {
+        File parent = Files.createTempDirectory("openapi-private-").toFile();
+        File dir = new File(parent, "proxies");
+        File file = new File(dir, "Proxy.cfc");
+        try {
+            PrivateFiles.directory(dir);
+            PrivateFiles.write(file, "one".getBytes(StandardCharsets.UTF_8));
+            PrivateFiles.write(file, "two".getBytes(StandardCharsets.UTF_8));
+
+            assertEquals("two", new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+            assertEquals(1, dir.listFiles().length);
+            Assume.assumeNotNull(Files.getFileAttributeView(dir.toPath(), PosixFileAttributeView.class));
+            assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(dir.toPath())));
+            assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(file.toPath())));
+        } finally {
+            file.delete();
+            dir.delete();
+            parent.delete();
+        }
+    }
+}